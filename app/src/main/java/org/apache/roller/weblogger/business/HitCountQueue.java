@@ -18,9 +18,11 @@
 
 package org.apache.roller.weblogger.business;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
@@ -36,7 +38,12 @@ import org.apache.roller.weblogger.pojos.Weblog;
  * an asynchronous manner at give intervals.
  *
  * We also start up a single thread which runs continously to take the queued
- * hit counts, tally them, and record them into the db.
+ * hit counts and record them into the db.
+ *
+ * Hits are tallied as they come in, with a counter per weblog handle, so
+ * recording a hit takes no lock and allocates nothing once the weblog has
+ * been seen, and the memory used depends on the number of weblogs rather
+ * than the amount of traffic.
  *
  * TODO: we may want to make this an interface that is pluggable if there is
  *   some indication that users want to override this implementation.
@@ -48,16 +55,25 @@ public final class HitCountQueue {
     private static HitCountQueue instance = null;
     
     private WorkerThread worker = null;
-    private List<String> queue = null;
+
+    // hits per weblog handle since they were last taken
+    private final AtomicReference<ConcurrentHashMap<String, LongAdder>> hits =
+            new AtomicReference<>(new ConcurrentHashMap<>());
     
     
     static {
         instance = new HitCountQueue();
+        instance.startWorker();
+    }
+    
+    
+    // non-instantiable because we are a singleton, tests aside as their
+    // queues have no worker taking the hits away
+    HitCountQueue() {
     }
     
     
-    // non-instantiable because we are a singleton
-    private HitCountQueue() {
+    private void startWorker() {
         int sleepTime = 3 * RollerConstants.MIN_IN_MS;
         String sleep = WebloggerConfig.getProperty("hitcount.queue.sleepTime", "180");
         
@@ -68,9 +84,6 @@ public final class HitCountQueue {
             log.warn("Invalid sleep time ["+sleep+"], using default");
         }
         
-        // create the hits queue
-        this.queue = Collections.synchronizedList(new ArrayList<String>());
-        
         // start up a worker to process the hits at intervals
         HitCountProcessingJob job = new HitCountProcessingJob();
         worker = new ContinuousWorkerThread("HitCountQueueProcessor", job, sleepTime);
@@ -85,24 +98,60 @@ public final class HitCountQueue {
     
     public void processHit(Weblog weblog) {
         
-        // if the weblog isn't null then just drop its handle in the queue
-        // each entry in the queue is a weblog handle and indicates a single hit
+        // if the weblog isn't null then count a hit against its handle
         if(weblog != null) {
-            this.queue.add(weblog.getHandle());
+            Map<String, LongAdder> counters = this.hits.get();
+            LongAdder counter = counters.get(weblog.getHandle());
+            if (counter == null) {
+                counter = counters.computeIfAbsent(weblog.getHandle(), k -> new LongAdder());
+            }
+            counter.increment();
         }
     }
     
     
-    public List<String> getHits() {
-        return new ArrayList<>(this.queue);
+    /**
+     * Get the hits counted so far, without resetting them.
+     *
+     * @return number of hits keyed by weblog handle
+     */
+    public Map<String, Long> getHits() {
+        return tally(this.hits.get());
+    }
+    
+    
+    /**
+     * Get the hits counted so far and start counting again from zero.
+     *
+     * @return number of hits keyed by weblog handle
+     */
+    public Map<String, Long> takeHits() {
+        // a hit racing with the swap may land in the old counters after
+        // they're read and be lost, which is good enough for hit counts as
+        // it's at most one hit per thread counting one while the swap
+        // happens, and no hit is ever taken twice
+        ConcurrentHashMap<String, LongAdder> taken = this.hits.getAndSet(new ConcurrentHashMap<>());
+        return tally(taken);
     }
     
     
     /**
      * Reset the queued hits.
      */
-    public synchronized void resetHits() {
-        this.queue = Collections.synchronizedList(new ArrayList<String>());
+    public void resetHits() {
+        this.hits.set(new ConcurrentHashMap<>());
+    }
+    
+    
+    private static Map<String, Long> tally(Map<String, LongAdder> counters) {
+        Map<String, Long> tallied = new HashMap<>(counters.size() * 4 / 3 + 1);
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            long count = entry.getValue().sum();
+            if (count > 0) {
+                tallied.put(entry.getKey(), count);
+            }
+        }
+        return tallied;
     }
     
     
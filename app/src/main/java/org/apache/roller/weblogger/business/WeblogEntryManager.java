@@ -54,6 +54,26 @@ public interface WeblogEntryManager {
      */
     WeblogEntry getWeblogEntry(String id) throws WebloggerException;
     
+    /**
+     * Get weblog entries by id, all in one query.
+     * @param ids ids of the entries
+     * @return entries in the order of the given ids, leaving out ids which
+     *         don't exist
+     */
+    List<WeblogEntry> getWeblogEntriesByIds(List<String> ids) throws WebloggerException;
+    
+    /**
+     * Get weblog entries in order of id, so that a large number of entries
+     * can be read a chunk at a time.  Each entry comes with its weblog and
+     * category, and the tags of the chunk are loaded together.
+     * @param weblog weblog of the entries, or null for all weblogs
+     * @param status status of the entries, or null for any status
+     * @param afterId id of the last entry of the previous chunk, or null to start
+     * @param max maximum number of entries to get
+     */
+    List<WeblogEntry> getWeblogEntriesAfter(Weblog weblog, WeblogEntry.PubStatus status,
+            String afterId, int max) throws WebloggerException;
+    
     /** 
      * Get weblog entry by anchor. 
      */
@@ -197,6 +217,16 @@ public interface WeblogEntryManager {
      * @return list of comments fitting search criteria
      */
     List<WeblogEntryComment> getComments(CommentSearchCriteria csc) throws WebloggerException;
+    
+    /**
+     * Get the comments of a number of entries with one query.
+     * @param entries entries to get the comments of
+     * @param status status of the comments, or null for any status
+     * @return comments in order of posting, keyed by entry id, entries
+     *         without comments are left out
+     */
+    Map<String, List<WeblogEntryComment>> getComments(List<WeblogEntry> entries,
+            ApprovalStatus status) throws WebloggerException;
 
     /**
      * Deletes comments that match paramters.
@@ -357,6 +387,20 @@ public interface WeblogEntryManager {
         throws WebloggerException;
     
     
+    /**
+     * Increment the hit counts of many weblogs at once.
+     *
+     * The counts are written in batches, each in a transaction of its own,
+     * rather than looking up and saving the count of each weblog in turn.
+     * Handles of weblogs which no longer exist are ignored.
+     *
+     * @param hits How much to increment by, keyed by weblog handle.
+     * @throws WebloggerException If there was a problem with the backend.
+     */
+    void incrementHitCounts(Map<String, Long> hits)
+        throws WebloggerException;
+    
+    
     /**
      * Reset the hit counts for all weblogs.  This sets the counts back to 0.
      *
@@ -397,5 +441,16 @@ public interface WeblogEntryManager {
      */    
     long getEntryCount(Weblog websiteData) throws WebloggerException;
 
+    
+    /**
+     * Recount published entries, approved comments, weblogs and enabled
+     * users, correcting any running counts which have drifted and creating
+     * those which are missing.
+     *
+     * @return the number of counts which were created or corrected
+     * @throws WebloggerException If there was a problem with the backend.
+     */
+    int reconcileCounts() throws WebloggerException;
+
 }
 
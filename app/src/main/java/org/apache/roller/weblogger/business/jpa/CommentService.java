@@ -22,20 +22,35 @@ import org.apache.roller.weblogger.pojos.Weblog;
 public class CommentService{
     private final JPAPersistenceStrategy strategy;
     private final Weblogger roller;
+    private final CounterService counterService;
     @Inject
-    public CommentService(Weblogger roller, JPAPersistenceStrategy strategy) {
+    public CommentService(Weblogger roller, JPAPersistenceStrategy strategy, CounterService counterService) {
         this.roller = roller;
         this.strategy = strategy;
+        this.counterService = counterService;
     }
 
     public void saveComment(WeblogEntryComment comment) throws WebloggerException {
+            boolean wasApproved = isStoredApproved(comment);
             this.strategy.store(comment);
+
+            boolean approved = ApprovalStatus.APPROVED.equals(comment.getStatus());
+            if (approved != wasApproved) {
+                updateCommentCount(comment, approved ? 1 : -1);
+            }
+
+            // only the comment's own document is touched, not its entry's
+            roller.getIndexManager().addCommentReIndexOperation(comment);
             
             // update weblog last modified date.  date updated by saveWebsite()
             roller.getWeblogManager().saveWeblog(comment.getWeblogEntry().getWebsite());
         }
     public void removeComment(WeblogEntryComment comment) throws WebloggerException {
         this.strategy.remove(comment);
+        if (ApprovalStatus.APPROVED.equals(comment.getStatus())) {
+            updateCommentCount(comment, -1);
+        }
+        roller.getIndexManager().removeCommentIndexOperation(comment);
         
         // update weblog last modified date.  date updated by saveWebsite()
         roller.getWeblogManager().saveWeblog(comment.getWeblogEntry().getWebsite());
@@ -95,6 +110,32 @@ public class CommentService{
         return query.getResultList();
         
     }
+    public Map<String, List<WeblogEntryComment>> getComments(List<WeblogEntry> entries,
+            ApprovalStatus status) throws WebloggerException {
+
+        Map<String, List<WeblogEntryComment>> byEntry = new HashMap<>();
+        if (entries.isEmpty()) {
+            return byEntry;
+        }
+
+        StringBuilder queryString = new StringBuilder(
+                "SELECT c FROM WeblogEntryComment c WHERE c.weblogEntry IN ?1");
+        if (status != null) {
+            queryString.append(" AND c.status = ?2");
+        }
+        queryString.append(" ORDER BY c.postTime ASC");
+
+        TypedQuery<WeblogEntryComment> query = strategy.getDynamicQuery(queryString.toString(), WeblogEntryComment.class);
+        query.setParameter(1, entries);
+        if (status != null) {
+            query.setParameter(2, status);
+        }
+
+        for (WeblogEntryComment comment : query.getResultList()) {
+            byEntry.computeIfAbsent(comment.getWeblogEntry().getId(), k -> new ArrayList<>()).add(comment);
+        }
+        return byEntry;
+    }
     public int removeMatchingComments(
             Weblog     weblog,
             WeblogEntry entry,
@@ -126,6 +167,20 @@ public class CommentService{
     public WeblogEntryComment getComment(String id) throws WebloggerException {
         return (WeblogEntryComment) this.strategy.load(WeblogEntryComment.class, id);
     }
+    /**
+     * True if the comment was approved as last stored, before any changes
+     * made to it since.
+     */
+    private boolean isStoredApproved(WeblogEntryComment comment) throws WebloggerException {
+        TypedQuery<ApprovalStatus> q = strategy.getNamedQuery(
+                "WeblogEntryComment.getStatusById", ApprovalStatus.class);
+        q.setParameter(1, comment.getId());
+        List<ApprovalStatus> results = q.getResultList();
+        return !results.isEmpty() && ApprovalStatus.APPROVED.equals(results.get(0));
+    }
+    private void updateCommentCount(WeblogEntryComment comment, int amount) throws WebloggerException {
+        counterService.incrementComments(comment.getWeblogEntry().getWebsite(), amount);
+    }
     private static StringBuilder appendConjuctionToWhereclause(StringBuilder whereClause,
             String expression) {
         if (whereClause.length() != 0 && expression.length() != 0) {
@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.jpa;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+
+import com.google.inject.Inject;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.pojos.Counter;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
+
+
+/**
+ * Keeps the running counts of published entries, approved comments, weblogs
+ * and enabled users, site-wide and per weblog, so that they can be read
+ * without counting rows.
+ *
+ * Counts are moved up and down in the same transaction as the change they
+ * count.  A count which has no counter yet is counted from its first change
+ * and is only right once {@link #reconcile()} corrects it, until then reads
+ * of a count which is still missing fall back to counting.
+ *
+ * The site-wide counts of entries and comments change with every post and
+ * comment anywhere, and a single row for each would have every such change
+ * waiting on the others to commit.  They are split into stripes instead,
+ * each weblog counting into one of them, which are added up when read.
+ */
+public class CounterService {
+
+    private static final Log log = LogFactory.getLog(CounterService.class);
+
+    static final String ENTRIES = "entries";
+    static final String COMMENTS = "comments";
+    static final String WEBLOGS = "weblogs";
+    static final String USERS = "users";
+
+    // how many rows the site-wide counts of entries and comments are split into
+    static final int STRIPES = 8;
+
+    private final JPAPersistenceStrategy strategy;
+
+    @Inject
+    public CounterService(JPAPersistenceStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+
+    static String entriesOf(Weblog weblog) {
+        return ENTRIES + ":" + weblog.getId();
+    }
+
+    static String commentsOf(Weblog weblog) {
+        return COMMENTS + ":" + weblog.getId();
+    }
+
+    static String stripeOf(String name, String weblogId) {
+        return name + "." + Math.floorMod(weblogId.hashCode(), STRIPES);
+    }
+
+
+    /**
+     * Get the current value of a count.
+     *
+     * @return the count, or null if there is no counter for it yet
+     */
+    public Long getCount(String name) throws WebloggerException {
+        TypedQuery<Long> q = strategy.getNamedQuery("Counter.getTotalByName", Long.class);
+        q.setParameter(1, name);
+        List<Long> results = q.getResultList();
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+
+    /**
+     * Get the current value of a site-wide count which is split into
+     * stripes.
+     *
+     * @return the count, or null if its stripes haven't all been created yet
+     */
+    public Long getStripedCount(String name) throws WebloggerException {
+        TypedQuery<Object[]> q = strategy.getNamedQuery("Counter.getStripedTotalByName", Object[].class);
+        q.setParameter(1, name + ".%");
+        Object[] result = q.getSingleResult();
+        if (((Number) result[0]).intValue() != STRIPES) {
+            return null;
+        }
+        return ((Number) result[1]).longValue();
+    }
+
+
+    /**
+     * Move the counts of a weblog's published entries up or down, along with
+     * the site-wide count.
+     */
+    public void incrementEntries(Weblog weblog, long amount) throws WebloggerException {
+        increment(stripeOf(ENTRIES, weblog.getId()), amount);
+        increment(entriesOf(weblog), amount);
+    }
+
+
+    /**
+     * Move the counts of a weblog's approved comments up or down, along with
+     * the site-wide count.
+     */
+    public void incrementComments(Weblog weblog, long amount) throws WebloggerException {
+        increment(stripeOf(COMMENTS, weblog.getId()), amount);
+        increment(commentsOf(weblog), amount);
+    }
+
+
+    /**
+     * Move a count up or down by the given amount, creating its counter if
+     * there isn't one.
+     */
+    public void increment(String name, long amount) throws WebloggerException {
+        if (amount == 0) {
+            return;
+        }
+        Query q = strategy.getNamedUpdate("Counter.updateTotalByName");
+        q.setParameter(1, amount);
+        q.setParameter(2, name);
+        if (q.executeUpdate() == 0) {
+            strategy.store(new Counter(name, amount));
+        }
+    }
+
+
+    /**
+     * Start counting the entries and comments of a new weblog.
+     */
+    public void addWeblog(Weblog weblog) throws WebloggerException {
+        strategy.store(new Counter(entriesOf(weblog), 0));
+        strategy.store(new Counter(commentsOf(weblog), 0));
+        increment(WEBLOGS, 1);
+    }
+
+
+    /**
+     * Stop counting for a removed weblog.  Its entries and comments have
+     * already been taken off the site-wide counts as they were removed.
+     */
+    public void removeWeblog(Weblog weblog) throws WebloggerException {
+        for (String name : new String[] {entriesOf(weblog), commentsOf(weblog)}) {
+            Query q = strategy.getNamedUpdate("Counter.removeByName");
+            q.setParameter(1, name);
+            q.executeUpdate();
+        }
+        increment(WEBLOGS, -1);
+    }
+
+
+    /**
+     * Count everything afresh and correct any counts which have drifted,
+     * creating those which are missing and removing those of weblogs which
+     * are gone.
+     *
+     * The counters are locked before anything is counted, so changes made
+     * meanwhile wait to move their counts until the corrections are done
+     * and are then added to them, rather than being counted twice or lost.
+     *
+     * @return the number of counters which were created or corrected
+     */
+    public int reconcile() throws WebloggerException {
+
+        TypedQuery<Counter> all = strategy.getNamedQueryCommitFirst("Counter.getAll", Counter.class);
+        all.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+        Map<String, Long> observed = new HashMap<>();
+        for (Counter counter : all.getResultList()) {
+            observed.put(counter.getName(), counter.getTotal());
+        }
+
+        Map<String, Long> expected = new HashMap<>();
+
+        TypedQuery<Long> q = strategy.getNamedQuery("User.getCountEnabledDistinct", Long.class);
+        q.setParameter(1, Boolean.TRUE);
+        expected.put(USERS, q.getSingleResult());
+
+        List<String> weblogIds = strategy.getDynamicQuery(
+                "SELECT w.id FROM Weblog w", String.class).getResultList();
+        expected.put(WEBLOGS, (long) weblogIds.size());
+        for (String id : weblogIds) {
+            expected.put(ENTRIES + ":" + id, 0L);
+            expected.put(COMMENTS + ":" + id, 0L);
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            expected.put(ENTRIES + "." + i, 0L);
+            expected.put(COMMENTS + "." + i, 0L);
+        }
+
+        // the site-wide counts are those of the weblogs counting into each stripe
+        TypedQuery<Object[]> byWeblog = strategy.getDynamicQuery(
+                "SELECT e.website.id, COUNT(e) FROM WeblogEntry e WHERE e.status = ?1 GROUP BY e.website.id",
+                Object[].class);
+        byWeblog.setParameter(1, PubStatus.PUBLISHED);
+        for (Object[] row : byWeblog.getResultList()) {
+            expected.put(ENTRIES + ":" + row[0], (Long) row[1]);
+            expected.merge(stripeOf(ENTRIES, (String) row[0]), (Long) row[1], Long::sum);
+        }
+
+        byWeblog = strategy.getDynamicQuery(
+                "SELECT c.weblogEntry.website.id, COUNT(c) FROM WeblogEntryComment c "
+                + "WHERE c.status = ?1 GROUP BY c.weblogEntry.website.id", Object[].class);
+        byWeblog.setParameter(1, ApprovalStatus.APPROVED);
+        for (Object[] row : byWeblog.getResultList()) {
+            expected.put(COMMENTS + ":" + row[0], (Long) row[1]);
+            expected.merge(stripeOf(COMMENTS, (String) row[0]), (Long) row[1], Long::sum);
+        }
+
+        // counts are corrected by how far they were off, and missing ones
+        // are created the same way as by any other change
+        int corrected = 0;
+        for (Map.Entry<String, Long> counter : observed.entrySet()) {
+            String name = counter.getKey();
+            Long total = expected.remove(name);
+            if (total == null) {
+                if (isGone(name)) {
+                    Query remove = strategy.getNamedUpdate("Counter.removeByName");
+                    remove.setParameter(1, name);
+                    remove.executeUpdate();
+                    corrected++;
+                }
+            } else if (!total.equals(counter.getValue())) {
+                log.debug("Count " + name + " was " + counter.getValue() + ", should be " + total);
+                increment(name, total - counter.getValue());
+                corrected++;
+            }
+        }
+        for (Map.Entry<String, Long> missing : expected.entrySet()) {
+            if (missing.getValue() != 0) {
+                increment(missing.getKey(), missing.getValue());
+            } else {
+                strategy.store(new Counter(missing.getKey(), 0));
+            }
+            corrected++;
+        }
+        return corrected;
+    }
+
+
+    /**
+     * Whether a counter which wasn't expected is no longer needed, which for
+     * the counts of a weblog is only once the weblog is gone.
+     */
+    private boolean isGone(String name) throws WebloggerException {
+        int colon = name.indexOf(':');
+        if (colon < 0) {
+            return true;
+        }
+        TypedQuery<Long> q = strategy.getDynamicQuery(
+                "SELECT COUNT(w) FROM Weblog w WHERE w.id = ?1", Long.class);
+        q.setParameter(1, name.substring(colon + 1));
+        return q.getSingleResult() == 0;
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.jpa;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
+
+
+/**
+ * Passes cache invalidations on to the JPA shared cache.
+ *
+ * Changes made through JPA on this machine already update the shared cache
+ * when they are committed, but changes made on other machines of a cluster
+ * or behind JPA's back do not.  Whatever tells the CacheManager about those,
+ * such as a custom handler listening to the other machines, now also drops
+ * the stale weblogs, categories, templates and users, along with the cached
+ * results of the query which looks categories up by name.
+ */
+class JPACacheHandler implements CacheHandler {
+
+    private static final Log log = LogFactory.getLog(JPACacheHandler.class);
+
+    private final JPAPersistenceStrategy strategy;
+
+
+    JPACacheHandler(JPAPersistenceStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+
+    @Override
+    public void invalidate(Weblog website) {
+        log.debug("evicting weblog " + website.getHandle());
+        // handles never change, and a cached Weblog.getByHandle result is
+        // read again once the weblog in it has been evicted, so the results
+        // of other weblogs are kept
+        strategy.evict(Weblog.class, website.getId());
+    }
+
+    @Override
+    public void invalidate(WeblogCategory category) {
+        strategy.evict(WeblogCategory.class, category.getId());
+        strategy.clearQueryCache("WeblogCategory.getByWeblog&Name");
+    }
+
+    @Override
+    public void invalidate(WeblogTemplate template) {
+        strategy.evict(WeblogTemplate.class, template.getId());
+    }
+
+    @Override
+    public void invalidate(User user) {
+        strategy.evict(User.class, user.getId());
+    }
+
+}
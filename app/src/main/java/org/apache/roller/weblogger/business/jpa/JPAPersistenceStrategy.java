@@ -18,6 +18,8 @@
 
 package org.apache.roller.weblogger.business.jpa;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Properties;
@@ -34,6 +36,7 @@ import jakarta.persistence.Query;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import jakarta.persistence.TypedQuery;
+import org.eclipse.persistence.jpa.JpaHelper;
 
 import org.apache.roller.weblogger.business.DatabaseProvider;
 
@@ -56,6 +59,11 @@ public class JPAPersistenceStrategy {
      * The EntityManagerFactory for this Roller instance.
      */
     private EntityManagerFactory emf = null;
+
+    /**
+     * Where connections for work done outside of JPA come from.
+     */
+    private final DatabaseProvider dbProvider;
     
             
     /**
@@ -65,6 +73,7 @@ public class JPAPersistenceStrategy {
      */
     @com.google.inject.Inject
     protected JPAPersistenceStrategy(DatabaseProvider dbProvider) throws WebloggerException {
+        this.dbProvider = dbProvider;
         String jpaConfigurationType = WebloggerConfig.getProperty("jpa.configurationType");
         if ("jndi".equals(jpaConfigurationType)) {
             // Lookup EMF via JNDI: added for Geronimo
@@ -349,6 +358,50 @@ public class JPAPersistenceStrategy {
         return em.createNamedQuery(queryName);
     }
 
+    /**
+     * Get a database connection of its own, outside of any JPA transaction,
+     * for bulk work which is better done in plain JDBC.  The caller must
+     * close it.
+     * @throws java.sql.SQLException if no connection can be had
+     */
+    public Connection getConnection() throws SQLException {
+        return dbProvider.getConnection();
+    }
+
+    /**
+     * Drop all objects of a class from the shared cache, after changing
+     * their rows other than through JPA.
+     * @param clazz the class of objects to drop
+     */
+    public void evict(Class<?> clazz) {
+        if (emf != null) {
+            emf.getCache().evict(clazz);
+        }
+    }
+
+    /**
+     * Drop one object from the shared cache, so that it is read afresh from
+     * the database the next time it is wanted.
+     * @param clazz the class of the object
+     * @param id the id of the object
+     */
+    public void evict(Class<?> clazz, Object id) {
+        if (emf != null) {
+            emf.getCache().evict(clazz, id);
+        }
+    }
+
+    /**
+     * Forget the cached results of a named query, where the JPA provider
+     * caches query results (only EclipseLink does so here).
+     * @param queryName the name of the query
+     */
+    public void clearQueryCache(String queryName) {
+        if (emf != null && JpaHelper.isEclipseLink(emf)) {
+            JpaHelper.getDatabaseSession(emf).getIdentityMapAccessor().clearQueryCache(queryName);
+        }
+    }
+
     public void shutdown() {
         if (emf != null) {
             emf.close();
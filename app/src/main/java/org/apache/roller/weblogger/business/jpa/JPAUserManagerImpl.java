@@ -48,15 +48,17 @@ public class JPAUserManagerImpl implements UserManager {
     private static final Log log = LogFactory.getLog(JPAUserManagerImpl.class);
 
     private final JPAPersistenceStrategy strategy;
+    private final CounterService counterService;
     
     // cached mapping of userNames -> userIds
     private final Map<String, String> userNameToIdMap = Collections.synchronizedMap(new HashMap<>());
     
 
     @com.google.inject.Inject
-    protected JPAUserManagerImpl(JPAPersistenceStrategy strat) {
+    protected JPAUserManagerImpl(JPAPersistenceStrategy strat, CounterService counterService) {
         log.debug("Instantiating JPA User Manager");
         this.strategy = strat;
+        this.counterService = counterService;
     }
 
 
@@ -68,7 +70,17 @@ public class JPAUserManagerImpl implements UserManager {
  
     @Override
     public void saveUser(User user) throws WebloggerException {
+        TypedQuery<Boolean> q = strategy.getNamedQuery("User.getEnabledById", Boolean.class);
+        q.setParameter(1, user.getId());
+        List<Boolean> results = q.getResultList();
+        boolean wasEnabled = !results.isEmpty() && Boolean.TRUE.equals(results.get(0));
+
         this.strategy.store(user);
+
+        boolean enabled = Boolean.TRUE.equals(user.getEnabled());
+        if (enabled != wasEnabled) {
+            counterService.increment(CounterService.USERS, enabled ? 1 : -1);
+        }
     }
 
     @Override
@@ -81,6 +93,9 @@ public class JPAUserManagerImpl implements UserManager {
             this.strategy.remove(perm);
         }
         this.strategy.remove(user);
+        if (Boolean.TRUE.equals(user.getEnabled())) {
+            counterService.increment(CounterService.USERS, -1);
+        }
 
         // remove entry from cache mapping
         this.userNameToIdMap.remove(userName);
@@ -113,6 +128,9 @@ public class JPAUserManagerImpl implements UserManager {
         }
 
         this.strategy.store(newUser);
+        if (Boolean.TRUE.equals(newUser.getEnabled())) {
+            counterService.increment(CounterService.USERS, 1);
+        }
 
         grantRole("editor", newUser);
         if (adminUser) {
@@ -319,6 +337,10 @@ public class JPAUserManagerImpl implements UserManager {
      */
     @Override
     public long getUserCount() throws WebloggerException {
+        Long count = counterService.getCount(CounterService.USERS);
+        if (count != null) {
+            return count;
+        }
         TypedQuery<Long> q = strategy.getNamedQuery("User.getCountEnabledDistinct", Long.class);
         q.setParameter(1, Boolean.TRUE);
         List<Long> results = q.getResultList();
@@ -20,6 +20,10 @@ package org.apache.roller.weblogger.business.jpa;
 
 import java.util.*;
 import java.text.SimpleDateFormat;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.Query;
@@ -30,8 +34,10 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.apache.roller.util.RollerConstants;
+import org.apache.roller.util.UUIDGenerator;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.Weblogger;
+import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
@@ -72,6 +78,7 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     private final CategoryService categoryService;
     private final CommentService commentService;
     private final TagService tagService;
+    private final CounterService counterService;
     private final WeblogEntryRepository entryRepository;
     
     // cached mapping of entryAnchors -> entryIds
@@ -82,13 +89,14 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     
     
     @com.google.inject.Inject
-    protected JPAWeblogEntryManagerImpl(Weblogger roller, JPAPersistenceStrategy strategy,CategoryService categoryService, CommentService commentService, TagService tagService,WeblogEntryRepository entryRepository ) {
+    protected JPAWeblogEntryManagerImpl(Weblogger roller, JPAPersistenceStrategy strategy,CategoryService categoryService, CommentService commentService, TagService tagService, CounterService counterService, WeblogEntryRepository entryRepository ) {
         LOG.debug("Instantiating JPA Weblog Manager");
         this.roller = roller;
         this.strategy = strategy;
         this.categoryService = categoryService;
         this.commentService = commentService;
         this.tagService = tagService;
+        this.counterService = counterService;
         this.entryRepository = entryRepository;
     }
     
@@ -161,32 +169,40 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             entry.setAnchor(this.createAnchor(entry));
         }
         
+        // net change of each tag's aggregates, applied together below
+        Map<String, Integer> tagAmounts = new HashMap<>();
         if (entry.isPublished()) {
             // tag aggregates are updated only when entry published in order for
             // tag cloud counts to match published articles
             if (entry.getRefreshAggregates()) {
                 // blog entry wasn't published before, so all tags need to be incremented
                 for (WeblogEntryTag tag : entry.getTags()) {
-                    updateTagCount(tag.getName(), entry.getWebsite(), 1);
+                    tagAmounts.merge(tag.getName(), 1, Integer::sum);
                 }
             } else {
                 // only new tags need to be incremented
                 for (WeblogEntryTag tag : entry.getAddedTags()) {
-                    updateTagCount(tag.getName(), entry.getWebsite(), 1);
+                    tagAmounts.merge(tag.getName(), 1, Integer::sum);
                 }
             }
         } else {
             if (entry.getRefreshAggregates()) {
                 // blog entry no longer published so need to reduce aggregate count
                 for (WeblogEntryTag tag : entry.getTags()) {
-                    updateTagCount(tag.getName(), entry.getWebsite(), -1);
+                    tagAmounts.merge(tag.getName(), -1, Integer::sum);
                 }
             }
         }
 
+        // removed tags were counted if the entry was published before this save
+        boolean wasCounted = entry.isPublished() != Boolean.TRUE.equals(entry.getRefreshAggregates());
         for (WeblogEntryTag tag : entry.getRemovedTags()) {
-            removeWeblogEntryTag(tag);
+            if (wasCounted) {
+                tagAmounts.merge(tag.getName(), -1, Integer::sum);
+            }
+            this.strategy.remove(tag);
         }
+        tagService.updateTagCounts(tagAmounts, entry.getWebsite());
 
         // if the entry was published to future, set status as SCHEDULED
         // we only consider an entry future published if it is scheduled
@@ -198,8 +214,14 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         // Store value object (creates new or updates existing)
         entry.setUpdateTime(nowTimestamp());
         
+        boolean wasPublished = isStoredPublished(entry);
         this.strategy.store(entry);
         
+        if (entry.isPublished() != wasPublished) {
+            int amount = entry.isPublished() ? 1 : -1;
+            counterService.incrementEntries(entry.getWebsite(), amount);
+        }
+        
         // update weblog last modified date.  date updated by saveWebsite()
         if(entry.isPublished()) {
             roller.getWeblogManager().saveWeblog(entry.getWebsite());
@@ -223,15 +245,18 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
 
         // remove comments
         List<WeblogEntryComment> comments = getComments(csc);
+        int approved = 0;
         for (WeblogEntryComment comment : comments) {
+            if (ApprovalStatus.APPROVED.equals(comment.getStatus())) {
+                approved++;
+            }
             this.strategy.remove(comment);
         }
+        counterService.incrementComments(weblog, -approved);
         
         // remove tag & tag aggregates
         if (entry.getTags() != null) {
-            for (WeblogEntryTag tag : entry.getTags()) {
-                removeWeblogEntryTag(tag);
-            }
+            tagService.removeWeblogEntryTags(entry, entry.getTags());
         }
         
         // remove attributes
@@ -245,6 +270,9 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
 
         // remove entry
         this.strategy.remove(entry);
+        if (entry.isPublished()) {
+            counterService.incrementEntries(weblog, -1);
+        }
         
         // update weblog last modified date.  date updated by saveWebsite()
         if (entry.isPublished()) {
@@ -262,6 +290,17 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             current, catName, locale, maxEntries, next);
     }
 
+    /**
+     * True if the entry was published as last stored, before any changes
+     * made to it since.
+     */
+    private boolean isStoredPublished(WeblogEntry entry) throws WebloggerException {
+        TypedQuery<PubStatus> q = strategy.getNamedQuery("WeblogEntry.getStatusById", PubStatus.class);
+        q.setParameter(1, entry.getId());
+        List<PubStatus> results = q.getResultList();
+        return !results.isEmpty() && PubStatus.PUBLISHED.equals(results.get(0));
+    }
+
     private boolean isScheduledForFuturePublish(WeblogEntry entry) {
         return PubStatus.PUBLISHED.equals(entry.getStatus()) &&
                 entry.getPubTime().after(new Date(System.currentTimeMillis() + RollerConstants.MIN_IN_MS));
@@ -326,10 +365,6 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         }
     }
     
-    private void removeWeblogEntryTag(WeblogEntryTag tag) throws WebloggerException {
-        tagService.removeWeblogEntryTag(tag);
-    }
-
     /**
      * @inheritDoc
      */
@@ -440,6 +475,15 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         return commentService.getComments(csc);
         
     }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<String, List<WeblogEntryComment>> getComments(List<WeblogEntry> entries,
+            ApprovalStatus status) throws WebloggerException {
+        return commentService.getComments(entries, status);
+    }
     
     
     /**
@@ -522,6 +566,23 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         return (WeblogEntry)strategy.load(WeblogEntry.class, id);
     }
     
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<WeblogEntry> getWeblogEntriesByIds(List<String> ids) throws WebloggerException {
+        return entryRepository.getWeblogEntriesByIds(ids);
+    }
+    
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<WeblogEntry> getWeblogEntriesAfter(Weblog weblog, PubStatus status,
+            String afterId, int max) throws WebloggerException {
+        return entryRepository.getWeblogEntriesAfter(weblog, status, afterId, max);
+    }
+    
     /**
      * @inheritDoc
      */
@@ -713,22 +774,6 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         return tagService.getTagComboExists(tags, weblog);
     }
 
-    /**
-     * This method maintains the tag aggregate table up-to-date with total counts. More
-     * specifically every time this method is called it will act upon exactly two rows
-     * in the database (tag,website,count), one with website matching the argument passed
-     * and one where website is null. If the count ever reaches zero, the row must be deleted.
-     *
-     * @param name      The tag name
-     * @param website   The website to used when updating the stats.
-     * @param amount    The amount to increment the tag count (it can be positive or negative).
-     * @throws WebloggerException
-     */
-    private void updateTagCount(String name, Weblog website, int amount)
-    throws WebloggerException {
-       tagService.updateTagCount(name, website, amount);
-    }
-
     /**
      * @inheritDoc
      */
@@ -846,6 +891,102 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         }
     }
     
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void incrementHitCounts(Map<String, Long> hits)
+    throws WebloggerException {
+
+        if (hits.isEmpty()) {
+            return;
+        }
+
+        int batchSize = Math.max(1, WebloggerConfig.getIntProperty("hitcount.queue.batchSize", 500));
+        List<String> handles = new ArrayList<>(hits.keySet());
+
+        try (Connection con = strategy.getConnection()) {
+            con.setAutoCommit(false);
+            for (int i = 0; i < handles.size(); i += batchSize) {
+                List<String> batch = handles.subList(i, Math.min(i + batchSize, handles.size()));
+                try {
+                    incrementHitCounts(con, batch, hits);
+                    con.commit();
+                } catch (SQLException e) {
+                    // the hits of this batch are lost, but not those of the
+                    // batches after it, which were taken from the queue too
+                    con.rollback();
+                    LOG.error("Error recording hit counts of " + batch.size()
+                            + " weblogs, from " + batch.get(0), e);
+                }
+            }
+        } catch (SQLException e) {
+            throw new WebloggerException("Error recording hit counts", e);
+        } finally {
+            // the counts were changed without going through JPA
+            strategy.evict(WeblogHitCount.class);
+        }
+    }
+
+    /**
+     * Add the hits of a batch of weblogs to their counts, with one query to
+     * look up the weblogs and their counts and one batch each of updates
+     * and inserts.
+     */
+    private static void incrementHitCounts(Connection con, List<String> handles,
+            Map<String, Long> hits) throws SQLException {
+
+        String params = String.join(",", Collections.nCopies(handles.size(), "?"));
+
+        // weblog id and the id of its hit count, if it has one, by handle
+        Map<String, String[]> weblogs = new HashMap<>();
+        try (PreparedStatement select = con.prepareStatement(
+                "select w.handle, w.id, h.id from weblog w"
+                + " left outer join roller_hitcounts h on h.websiteid = w.id"
+                + " where w.handle in (" + params + ")")) {
+            for (int i = 0; i < handles.size(); i++) {
+                select.setString(i + 1, handles.get(i));
+            }
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    weblogs.putIfAbsent(rs.getString(1), new String[] { rs.getString(2), rs.getString(3) });
+                }
+            }
+        }
+
+        try (PreparedStatement update = con.prepareStatement(
+                "update roller_hitcounts set dailyhits = dailyhits + ? where id = ?");
+             PreparedStatement insert = con.prepareStatement(
+                "insert into roller_hitcounts (id, websiteid, dailyhits) values (?, ?, ?)")) {
+
+            boolean updates = false;
+            boolean inserts = false;
+            for (Map.Entry<String, String[]> weblog : weblogs.entrySet()) {
+                int amount = (int) Math.min(Integer.MAX_VALUE, hits.get(weblog.getKey()));
+                String weblogId = weblog.getValue()[0];
+                String hitCountId = weblog.getValue()[1];
+                if (hitCountId != null) {
+                    update.setInt(1, amount);
+                    update.setString(2, hitCountId);
+                    update.addBatch();
+                    updates = true;
+                } else if (amount > 0) {
+                    insert.setString(1, UUIDGenerator.generateUUID());
+                    insert.setString(2, weblogId);
+                    insert.setInt(3, amount);
+                    insert.addBatch();
+                    inserts = true;
+                }
+            }
+            if (updates) {
+                update.executeBatch();
+            }
+            if (inserts) {
+                insert.executeBatch();
+            }
+        }
+    }
+    
     /**
      * @inheritDoc
      */
@@ -878,6 +1019,10 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
      */
     @Override
     public long getCommentCount() throws WebloggerException {
+        Long count = counterService.getStripedCount(CounterService.COMMENTS);
+        if (count != null) {
+            return count;
+        }
         TypedQuery<Long> q = strategy.getNamedQuery(
                 "WeblogEntryComment.getCountAllDistinctByStatus", Long.class);
         q.setParameter(1, ApprovalStatus.APPROVED);
@@ -889,6 +1034,10 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
      */
     @Override
     public long getCommentCount(Weblog website) throws WebloggerException {
+        Long count = counterService.getCount(CounterService.commentsOf(website));
+        if (count != null) {
+            return count;
+        }
         TypedQuery<Long> q = strategy.getNamedQuery(
                 "WeblogEntryComment.getCountDistinctByWebsite&Status", Long.class);
         q.setParameter(1, website);
@@ -901,6 +1050,10 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
      */
     @Override
     public long getEntryCount() throws WebloggerException {
+        Long count = counterService.getStripedCount(CounterService.ENTRIES);
+        if (count != null) {
+            return count;
+        }
         TypedQuery<Long> q = strategy.getNamedQuery(
                 "WeblogEntry.getCountDistinctByStatus", Long.class);
         q.setParameter(1, PubStatus.PUBLISHED);
@@ -912,6 +1065,10 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
      */
     @Override
     public long getEntryCount(Weblog website) throws WebloggerException {
+        Long count = counterService.getCount(CounterService.entriesOf(website));
+        if (count != null) {
+            return count;
+        }
         TypedQuery<Long> q = strategy.getNamedQuery(
                 "WeblogEntry.getCountDistinctByStatus&Website", Long.class);
         q.setParameter(1, PubStatus.PUBLISHED);
@@ -919,6 +1076,14 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         return q.getResultList().get(0);
     }
 
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int reconcileCounts() throws WebloggerException {
+        return counterService.reconcile();
+    }
+
     /**
      * Appends given expression to given whereClause. If whereClause already
      * has other conditions, an " AND " is also appended before appending
@@ -63,6 +63,7 @@ import org.apache.roller.weblogger.pojos.WeblogEntryTag;
 import org.apache.roller.weblogger.pojos.WeblogEntryTagAggregate;
 import org.apache.roller.weblogger.pojos.WeblogPermission;
 import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.util.cache.CacheManager;
 
 
 /*
@@ -79,15 +80,18 @@ public class JPAWeblogManagerImpl implements WeblogManager {
     
     private final Weblogger roller;
     private final JPAPersistenceStrategy strategy;
+    private final CounterService counterService;
     
     // cached mapping of weblogHandles -> weblogIds
     private final Map<String, String> weblogHandleToIdMap = Collections.synchronizedMap(new HashMap<>());
 
     @com.google.inject.Inject
-    protected JPAWeblogManagerImpl(Weblogger roller, JPAPersistenceStrategy strat) {
+    protected JPAWeblogManagerImpl(Weblogger roller, JPAPersistenceStrategy strat,
+            CounterService counterService) {
         log.debug("Instantiating JPA Weblog Manager");
         this.roller = roller;
         this.strategy = strat;
+        this.counterService = counterService;
     }
     
     
@@ -111,6 +115,7 @@ public class JPAWeblogManagerImpl implements WeblogManager {
         // remove contents first, then remove weblog
         this.removeWeblogContents(weblog);
         this.strategy.remove(weblog);
+        counterService.removeWeblog(weblog);
         
         // remove entry from cache mapping
         this.weblogHandleToIdMap.remove(weblog.getHandle());
@@ -246,14 +251,24 @@ public class JPAWeblogManagerImpl implements WeblogManager {
         
         // update weblog last modified date.  date updated by saveWeblog()
         roller.getWeblogManager().saveWeblog(template.getWeblog());
+
+        // drop any compiled copies of the template
+        CacheManager.invalidate(template);
     }
 
     @Override
     public void saveTemplateRendition(CustomTemplateRendition rendition) throws WebloggerException {
         this.strategy.store(rendition);
 
+        // renditions share the last modified date of their template
+        WeblogTemplate template = rendition.getWeblogTemplate();
+        template.setLastModified(new Date());
+
         // update weblog last modified date.  date updated by saveWeblog()
-        roller.getWeblogManager().saveWeblog(rendition.getWeblogTemplate().getWeblog());
+        roller.getWeblogManager().saveWeblog(template.getWeblog());
+
+        // drop any compiled copies of the template
+        CacheManager.invalidate(template);
     }
     
     @Override
@@ -261,12 +276,16 @@ public class JPAWeblogManagerImpl implements WeblogManager {
         this.strategy.remove(template);
         // update weblog last modified date.  date updated by saveWeblog()
         roller.getWeblogManager().saveWeblog(template.getWeblog());
+
+        // drop any compiled copies of the template
+        CacheManager.invalidate(template);
     }
     
     @Override
     public void addWeblog(Weblog newWeblog) throws WebloggerException {
         this.strategy.store(newWeblog);
         this.strategy.flush();
+        counterService.addWeblog(newWeblog);
         this.addWeblogContents(newWeblog);
     }
     
@@ -700,6 +719,10 @@ public class JPAWeblogManagerImpl implements WeblogManager {
      */
     @Override
     public long getWeblogCount() throws WebloggerException {
+        Long count = counterService.getCount(CounterService.WEBLOGS);
+        if (count != null) {
+            return count;
+        }
         List<Long> results = strategy.getNamedQuery(
                 "Weblog.getCountAllDistinct", Long.class).getResultList();
         return results.get(0);
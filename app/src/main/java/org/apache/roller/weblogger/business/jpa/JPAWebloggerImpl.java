@@ -22,6 +22,7 @@ import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.*;
 
 import org.apache.roller.weblogger.business.jpa.JPAPersistenceStrategy;
+import org.apache.roller.weblogger.util.cache.CacheManager;
 
 /**
  * A JPA specific implementation of the Weblogger business layer.
@@ -49,6 +50,9 @@ public class JPAWebloggerImpl extends WebloggerImpl {
 
         // Very important: initialize the final field
         this.strategy = strategy;
+
+        // keep the JPA shared cache in step with cache invalidations
+        CacheManager.registerHandler(new JPACacheHandler(strategy));
     }
 
     @Override
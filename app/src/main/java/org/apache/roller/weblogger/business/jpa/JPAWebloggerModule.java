@@ -68,6 +68,7 @@ public class JPAWebloggerModule implements Module {
         binder.bind(CommentService.class);
         binder.bind(CategoryService.class);
         binder.bind(TagService.class);
+        binder.bind(CounterService.class);
         binder.bind(WeblogEntryRepository.class);
         binder.bind(AutoPingManager.class).to(     JPAAutoPingManagerImpl.class);   
         binder.bind(BookmarkManager.class).to(     JPABookmarkManagerImpl.class);  
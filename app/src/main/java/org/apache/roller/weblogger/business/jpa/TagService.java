@@ -29,80 +29,109 @@ public class TagService {
 
 
 
-    public void updateTagCount(String name, Weblog website, int amount)
+    /**
+     * Move the weblog and site-wide aggregates of many tags at once.
+     *
+     * The aggregates of all the tags are looked up with one query for each
+     * scope and their new totals are written together when the transaction
+     * is flushed.  Aggregates left with no uses are then removed with one
+     * statement, and only if some tag went down.
+     *
+     * @param amounts how much to move each tag by, keyed by tag name
+     * @param website the weblog the tags were used in
+     */
+    public void updateTagCounts(Map<String, Integer> amounts, Weblog website)
             throws WebloggerException {
-        if (amount == 0) {
-            throw new WebloggerException("Tag increment amount cannot be zero.");
-        }
 
         if (website == null) {
             throw new WebloggerException("Website cannot be NULL.");
         }
 
+        Map<String, Integer> changed = new HashMap<>();
+        boolean decremented = false;
+        for (Map.Entry<String, Integer> amount : amounts.entrySet()) {
+            if (amount.getValue() != 0) {
+                changed.put(amount.getKey(), amount.getValue());
+                decremented |= amount.getValue() < 0;
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+
         // The reason why add order lastUsed desc is to make sure we keep picking the most recent
         // one in the case where we have multiple rows (clustered environment)
         // eventually that second entry will have a very low total (most likely 1) and
         // won't matter
         TypedQuery<WeblogEntryTagAggregate> weblogQuery = strategy.getNamedQuery(
-                "WeblogEntryTagAggregate.getByName&WebsiteOrderByLastUsedDesc", WeblogEntryTagAggregate.class);
-        weblogQuery.setParameter(1, name);
+                "WeblogEntryTagAggregate.getByNames&WebsiteOrderByLastUsedDesc", WeblogEntryTagAggregate.class);
+        weblogQuery.setParameter(1, changed.keySet());
         weblogQuery.setParameter(2, website);
-        WeblogEntryTagAggregate weblogTagData;
-        try {
-            weblogTagData = weblogQuery.getSingleResult();
-        } catch (NoResultException e) {
-            weblogTagData = null;
-        }
+        Map<String, WeblogEntryTagAggregate> weblogTagData = latestByName(weblogQuery.getResultList());
 
         TypedQuery<WeblogEntryTagAggregate> siteQuery = strategy.getNamedQuery(
-                "WeblogEntryTagAggregate.getByName&WebsiteNullOrderByLastUsedDesc", WeblogEntryTagAggregate.class);
-        siteQuery.setParameter(1, name);
-        WeblogEntryTagAggregate siteTagData;
-        try {
-            siteTagData = siteQuery.getSingleResult();
-        } catch (NoResultException e) {
-            siteTagData = null;
-        }
+                "WeblogEntryTagAggregate.getByNames&WebsiteNullOrderByLastUsedDesc", WeblogEntryTagAggregate.class);
+        siteQuery.setParameter(1, changed.keySet());
+        Map<String, WeblogEntryTagAggregate> siteTagData = latestByName(siteQuery.getResultList());
+
         Timestamp lastUsed = new Timestamp((new Date()).getTime());
+        for (Map.Entry<String, Integer> amount : changed.entrySet()) {
+            String name = amount.getKey();
+            updateAggregate(weblogTagData.get(name), website, name, amount.getValue(), lastUsed);
+            updateAggregate(siteTagData.get(name), null, name, amount.getValue(), lastUsed);
+        }
 
-        // create it only if we are going to need it.
-        if (weblogTagData == null && amount > 0) {
-            weblogTagData = new WeblogEntryTagAggregate(null, website, name, amount);
-            weblogTagData.setLastUsed(lastUsed);
-            strategy.store(weblogTagData);
-
-        } else if (weblogTagData != null) {
-            weblogTagData.setTotal(weblogTagData.getTotal() + amount);
-            weblogTagData.setLastUsed(lastUsed);
-            strategy.store(weblogTagData);
+        // delete bad counts of the tags which went down
+        if (decremented) {
+            Query removeq = strategy.getNamedUpdate(
+                    "WeblogEntryTagAggregate.removeByNames&TotalLessEqual");
+            removeq.setParameter(1, changed.keySet());
+            removeq.setParameter(2, 0);
+            removeq.executeUpdate();
         }
+    }
 
-        // create it only if we are going to need it.
-        if (siteTagData == null && amount > 0) {
-            siteTagData = new WeblogEntryTagAggregate(null, null, name, amount);
-            siteTagData.setLastUsed(lastUsed);
-            strategy.store(siteTagData);
-
-        } else if (siteTagData != null) {
-            siteTagData.setTotal(siteTagData.getTotal() + amount);
-            siteTagData.setLastUsed(lastUsed);
-            strategy.store(siteTagData);
+
+    private static Map<String, WeblogEntryTagAggregate> latestByName(List<WeblogEntryTagAggregate> aggregates) {
+        Map<String, WeblogEntryTagAggregate> latest = new HashMap<>();
+        for (WeblogEntryTagAggregate aggregate : aggregates) {
+            latest.putIfAbsent(aggregate.getName(), aggregate);
         }
+        return latest;
+    }
+
 
-        // delete all bad counts
-        Query removeq = strategy.getNamedUpdate(
-                "WeblogEntryTagAggregate.removeByTotalLessEqual");
-        removeq.setParameter(1, 0);
-        removeq.executeUpdate();
+    private void updateAggregate(WeblogEntryTagAggregate tagData, Weblog website, String name,
+            int amount, Timestamp lastUsed) throws WebloggerException {
+
+        // create it only if we are going to need it.
+        if (tagData == null && amount > 0) {
+            tagData = new WeblogEntryTagAggregate(null, website, name, amount);
+            tagData.setLastUsed(lastUsed);
+            strategy.store(tagData);
+
+        } else if (tagData != null) {
+            tagData.setTotal(tagData.getTotal() + amount);
+            tagData.setLastUsed(lastUsed);
+            strategy.store(tagData);
+        }
     }
 
 
 
-    public void removeWeblogEntryTag(WeblogEntryTag tag) throws WebloggerException {
-        if (tag.getWeblogEntry().isPublished()) {
-            updateTagCount(tag.getName(), tag.getWeblogEntry().getWebsite(), -1);
+    /**
+     * Remove tags of one entry, taking them off the aggregates together.
+     */
+    public void removeWeblogEntryTags(WeblogEntry entry, Collection<WeblogEntryTag> tags)
+            throws WebloggerException {
+        Map<String, Integer> amounts = new HashMap<>();
+        for (WeblogEntryTag tag : tags) {
+            if (entry.isPublished()) {
+                amounts.merge(tag.getName(), -1, Integer::sum);
+            }
+            this.strategy.remove(tag);
         }
-        this.strategy.remove(tag);
+        updateTagCounts(amounts, entry.getWebsite());
     }
 
 
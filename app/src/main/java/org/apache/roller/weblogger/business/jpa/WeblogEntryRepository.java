@@ -2,7 +2,9 @@ package org.apache.roller.weblogger.business.jpa;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import jakarta.persistence.TypedQuery;
 
@@ -143,6 +145,85 @@ public class WeblogEntryRepository{
 
         return query.getResultList();
     }
+
+    /**
+     * Load entries along with their weblogs, categories and tags in a single
+     * query, returned in the order of the given ids.
+     */
+    public List<WeblogEntry> getWeblogEntriesByIds(List<String> ids)
+            throws WebloggerException {
+
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        TypedQuery<WeblogEntry> query = strategy.getNamedQuery(
+                "WeblogEntry.getByIdsFetchAll", WeblogEntry.class);
+        query.setParameter(1, ids);
+
+        // fetching tags repeats an entry for each of its tags
+        Map<String, WeblogEntry> byId = new HashMap<>();
+        for (WeblogEntry entry : query.getResultList()) {
+            byId.put(entry.getId(), entry);
+        }
+
+        List<WeblogEntry> entries = new ArrayList<>(byId.size());
+        for (String id : ids) {
+            WeblogEntry entry = byId.get(id);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Load a chunk of entries in order of id, along with their weblogs and
+     * categories.
+     */
+    public List<WeblogEntry> getWeblogEntriesAfter(org.apache.roller.weblogger.pojos.Weblog weblog,
+            PubStatus status, String afterId, int max) throws WebloggerException {
+
+        List<Object> params = new ArrayList<>();
+        int size = 0;
+        List<String> conditions = new ArrayList<>();
+
+        if (weblog != null) {
+            params.add(size++, weblog.getId());
+            conditions.add("e.website.id = ?" + size);
+        }
+
+        if (status != null) {
+            params.add(size++, status);
+            conditions.add("e.status = ?" + size);
+        }
+
+        if (afterId != null) {
+            params.add(size++, afterId);
+            conditions.add("e.id > ?" + size);
+        }
+
+        StringBuilder queryString = new StringBuilder(
+                "SELECT e FROM WeblogEntry e JOIN FETCH e.website JOIN FETCH e.category");
+        if (!conditions.isEmpty()) {
+            queryString.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        queryString.append(" ORDER BY e.id ASC");
+
+        TypedQuery<WeblogEntry> query =
+                strategy.getDynamicQuery(queryString.toString(), WeblogEntry.class);
+        for (int i = 0; i < params.size(); i++) {
+            query.setParameter(i + 1, params.get(i));
+        }
+        query.setMaxResults(max);
+
+        // tags are loaded for all of the entries at once, when first used
+        query.setHint("eclipselink.batch", "e.tags");
+        query.setHint("eclipselink.batch.type", "IN");
+
+        return query.getResultList();
+    }
+
     public List<WeblogEntry> getNextPrevEntries(WeblogEntry current, String catName,
             String locale, int maxEntries, boolean next)
             throws WebloggerException {
@@ -18,8 +18,11 @@
 
 package org.apache.roller.weblogger.business.runnable;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.config.WebloggerConfig;
@@ -35,6 +38,9 @@ import org.apache.roller.util.DateUtil;
 public abstract class RollerTask implements Runnable {
     private String taskName = null;
     protected static final int DEFAULT_INTERVAL_MINS = 1440;
+    
+    // metrics of the last run
+    private volatile Map<String, Object> stats = Collections.emptyMap();
 
     
     /**
@@ -55,6 +61,20 @@ public abstract class RollerTask implements Runnable {
     }
     
     
+    /**
+     * Get metrics of the last run of this task, such as when it started and
+     * how long it took, along with anything the task itself reported.
+     */
+    public Map<String, Object> getStats() {
+        return stats;
+    }
+    
+    
+    protected void setStats(Map<String, Object> stats) {
+        this.stats = Collections.unmodifiableMap(new HashMap<>(stats));
+    }
+    
+    
     /**
      * Get the unique id representing a specific instance of a task.  This is
      * important for tasks being run in a clustered environment so that a 
@@ -18,6 +18,10 @@
 
 package org.apache.roller.weblogger.business.runnable;
 
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.WebloggerException;
@@ -38,6 +42,16 @@ public abstract class RollerTaskWithLeasing extends RollerTask {
     public abstract void runTask() throws WebloggerException;
     
     
+    /**
+     * Metrics of the last call to runTask(), which are recorded along with
+     * the start time and duration of the run.  Tasks which track their
+     * progress override this.
+     */
+    protected Map<String, Object> getRunStats() {
+        return Collections.emptyMap();
+    }
+    
+    
     /**
      * The run() method as called by our thread manager.
      *
@@ -62,7 +76,15 @@ public abstract class RollerTaskWithLeasing extends RollerTask {
             // now if we have a lock then run the task
             if(lockAcquired) {
                 log.debug(getName()+": Lease acquired, running task");
+                Date start = new Date();
                 this.runTask();
+                
+                long duration = System.currentTimeMillis() - start.getTime();
+                Map<String, Object> runStats = new HashMap<>(getRunStats());
+                runStats.put("startTime", start);
+                runStats.put("duration", duration);
+                setStats(runStats);
+                log.debug(getName()+": Task finished in "+duration+" ms "+runStats);
             } else {
                 log.debug(getName()+": Lease NOT acquired, cannot continue");
                 return;
@@ -18,6 +18,7 @@
 
 package org.apache.roller.weblogger.business.runnable;
 
+import java.util.Map;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.InitializationException;
 import org.apache.roller.weblogger.pojos.TaskLock;
@@ -49,7 +50,8 @@ public interface ThreadManager {
     
     
     /**
-     * Execute runnable in foreground (synchronously).
+     * Execute runnable in foreground (synchronously), returning once it is
+     * done or once the threads.foreground.timeout has passed.
      */
     void executeInForeground(Runnable runnable)
         throws InterruptedException;
@@ -92,6 +94,14 @@ public interface ThreadManager {
     boolean unregisterLease(RollerTask task);
     
     
+    /**
+     * Get metrics of the last run of each scheduled task on this node.
+     *
+     * @return the stats of each task which has run, by task name
+     */
+    Map<String, Map<String, Object>> getTaskStats();
+    
+    
     /**
      * Shutdown.
      */
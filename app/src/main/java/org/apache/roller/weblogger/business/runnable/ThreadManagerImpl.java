@@ -19,17 +19,21 @@
 package org.apache.roller.weblogger.business.runnable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.InitializationException;
 import org.apache.roller.weblogger.config.WebloggerConfig;
@@ -53,12 +57,19 @@ public abstract class ThreadManagerImpl implements ThreadManager {
     // a simple thread executor
     private final ExecutorService serviceScheduler;
     
+    // how long, in seconds, to wait for foreground work before giving up
+    private final int foregroundTimeout;
+    
+    // the scheduled tasks
+    private List<RollerTask> tasks = Collections.emptyList();
+    
     
     public ThreadManagerImpl() {
         
         LOG.info("Instantiating Thread Manager");
         
         serviceScheduler = Executors.newCachedThreadPool();
+        foregroundTimeout = WebloggerConfig.getIntProperty("threads.foreground.timeout", 60);
     }
     
     
@@ -108,6 +119,8 @@ public abstract class ThreadManagerImpl implements ThreadManager {
             }
         }
         
+        this.tasks = webloggerTasks;
+        
         // create scheduler
         TaskScheduler scheduler = new TaskScheduler(webloggerTasks);
         
@@ -134,12 +147,32 @@ public abstract class ThreadManagerImpl implements ThreadManager {
             throws InterruptedException {
         Future<?> task = serviceScheduler.submit(runnable);
         
-        // since this task is really meant to be executed within this calling 
-        // thread, here we can add a little code here to loop until it realizes 
-        // the task is done
-        while(!task.isDone()) {
-            Thread.sleep(RollerConstants.HALF_SEC_IN_MS);
+        // wait for the task itself rather than polling, so the caller gets
+        // control back as soon as the work is done
+        try {
+            task.get(foregroundTimeout, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            LOG.warn("Gave up on " + runnable.getClass().getName()
+                    + " after " + foregroundTimeout + " seconds");
+        } catch (ExecutionException e) {
+            LOG.error("Error executing " + runnable.getClass().getName(), e.getCause());
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            throw e;
+        }
+    }
+    
+    
+    @Override
+    public Map<String, Map<String, Object>> getTaskStats() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        for (RollerTask task : tasks) {
+            if (!task.getStats().isEmpty()) {
+                stats.put(task.getName(), task.getStats());
+            }
         }
+        return stats;
     }
     
     
@@ -17,11 +17,13 @@
 */
 package org.apache.roller.weblogger.business.search;
 
+import java.util.Map;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.InitializationException;
 import org.apache.roller.weblogger.business.URLStrategy;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 
 /**
  * Interface to Roller's full-text search facility.
@@ -62,6 +64,22 @@ public interface IndexManager {
     /** Remove entry from index, returns immediately and operates in background */
     void removeEntryIndexOperation(WeblogEntry entry) throws WebloggerException;
 
+    /** Re-index comment alone, returns immediately and operates in background */
+    void addCommentReIndexOperation(WeblogEntryComment comment) throws WebloggerException;
+
+    /** Remove comment from index, returns immediately and operates in background */
+    void removeCommentIndexOperation(WeblogEntryComment comment) throws WebloggerException;
+
+    /**
+     * Search weblog entries, a page at a time.
+     *
+     * @param pageNum page to show, counting from 0
+     * @param entryCount number of entries on a page
+     * @param after cursor returned with the previous page, so deep pages
+     *              don't need every result before them, may be null
+     * @param before cursor returned with the next page, for going back to
+     *              pages too deep to find otherwise, may be null
+     */
     SearchResultList search(
         String term,
         String weblogHandle,
@@ -69,8 +87,30 @@ public interface IndexManager {
         String locale,
         int pageNum,
         int entryCount,
+        String after,
+        String before,
         URLStrategy urlStrategy
     ) throws WebloggerException;
+
+    /**
+     * How long index operations have been taking, keyed by operation, each
+     * with a count and percentiles in milliseconds.
+     */
+    Map<String, Map<String, Object>> getLatencyStats();
+
+    /**
+     * State of the queue of index updates waiting to be written, with the
+     * "depth" of the queue and how long the "oldest" update has waited, in
+     * milliseconds, along with running counts.
+     */
+    Map<String, Object> getQueueStats();
+
+    /**
+     * Progress of a rebuild of the given weblog's index, or of the whole
+     * site's, with the number of "entries" indexed so far and when it was
+     * "started".  Empty if no rebuild is running.
+     */
+    Map<String, Object> getRebuildProgress(Weblog weblog);
 }
 
 
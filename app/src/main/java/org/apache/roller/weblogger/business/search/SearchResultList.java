@@ -21,6 +21,7 @@
 package org.apache.roller.weblogger.business.search;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
 
@@ -29,12 +30,24 @@ public class SearchResultList {
     int offset;
     Set<String> categories;
     List<WeblogEntryWrapper> results;
+    long totalHits;
+    String nextCursor;
+    String prevCursor;
+    Map<String, Map<String, Integer>> facets;
+    Map<String, List<String>> matchingComments;
     public SearchResultList(
-        List<WeblogEntryWrapper> results, Set<String> categories, int limit, int offset) {
+        List<WeblogEntryWrapper> results, Set<String> categories, int limit, int offset,
+        long totalHits, String nextCursor, String prevCursor,
+        Map<String, Map<String, Integer>> facets, Map<String, List<String>> matchingComments) {
         this.results = results;
         this.categories = categories;
         this.limit = limit;
         this.offset = offset;
+        this.totalHits = totalHits;
+        this.nextCursor = nextCursor;
+        this.prevCursor = prevCursor;
+        this.facets = facets;
+        this.matchingComments = matchingComments;
     }
     public int getLimit() {
         return limit;
@@ -48,4 +61,24 @@ public class SearchResultList {
     public Set<String> getCategories() {
         return categories;
     }
+    /** Number of entries matching the search, -1 if unknown */
+    public long getTotalHits() {
+        return totalHits;
+    }
+    /** Where to carry on from for the next page, null if this is the last */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    /** Where to go back from for the previous page, null if this is the first */
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+    /** Hits per category, tag and weblog handle, most common first */
+    public Map<String, Map<String, Integer>> getFacets() {
+        return facets;
+    }
+    /** Ids of the comments which matched, keyed by the id of their entry */
+    public Map<String, List<String>> getMatchingComments() {
+        return matchingComments;
+    }
 }
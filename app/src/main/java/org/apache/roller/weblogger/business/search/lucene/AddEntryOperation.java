@@ -73,8 +73,9 @@ public class AddEntryOperation extends WriteToIndexOperation {
         }
         
         try {
-            if (writer != null) {
-                writer.addDocument(getDocument(data));
+            // the entry may have been removed while waiting
+            if (writer != null && data != null) {
+                writer.addDocuments(getDocuments(data));
             }
         } catch (IOException e) {
             logger.error("Problems adding doc to index", e);
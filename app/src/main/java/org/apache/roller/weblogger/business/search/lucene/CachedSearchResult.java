@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.business.URLStrategy;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.search.SearchResultList;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
+
+
+/**
+ * A page of search results as read from the index, holding the ids of the
+ * entries found rather than the entries themselves so that it can be cached
+ * and handed out to any number of requests.
+ *
+ * The results are only good for the generation of the index they were read
+ * from, after which the index may have changed.
+ */
+class CachedSearchResult {
+
+    private final List<String> ids;
+    private final Set<String> categories;
+    private final Map<String, Map<String, Integer>> facets;
+    private final Map<String, List<String>> matchingComments;
+    private final int limit;
+    private final int offset;
+    private final long totalHits;
+    private final String nextCursor;
+    private final String prevCursor;
+    private final long generation;
+
+
+    CachedSearchResult(List<String> ids, Set<String> categories,
+            Map<String, Map<String, Integer>> facets, Map<String, List<String>> matchingComments,
+            int limit, int offset, long totalHits, String nextCursor, String prevCursor,
+            long generation) {
+        this.ids = Collections.unmodifiableList(ids);
+        this.categories = Collections.unmodifiableSet(categories);
+        this.facets = Collections.unmodifiableMap(facets);
+        this.matchingComments = Collections.unmodifiableMap(matchingComments);
+        this.limit = limit;
+        this.offset = offset;
+        this.totalHits = totalHits;
+        this.nextCursor = nextCursor;
+        this.prevCursor = prevCursor;
+        this.generation = generation;
+    }
+
+
+    List<String> getIds() {
+        return ids;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+
+    /**
+     * Load the entries found, skipping any which are gone or not yet
+     * published.
+     */
+    SearchResultList toResultList(URLStrategy urlStrategy) throws WebloggerException {
+
+        List<WeblogEntryWrapper> results = new ArrayList<>(ids.size());
+
+        // entries may be missing if search result returned inactive user
+        // or entry's user is not the requested user.
+        // but don't return future posts
+        Timestamp now = new Timestamp(new Date().getTime());
+        for (WeblogEntry entry : WebloggerFactory.getWeblogger()
+                .getWeblogEntryManager().getWeblogEntriesByIds(ids)) {
+            if (entry.getPubTime().before(now)) {
+                results.add(WeblogEntryWrapper.wrap(entry, urlStrategy));
+            }
+        }
+
+        return new SearchResultList(results, categories, limit, offset, totalHits, nextCursor,
+                prevCursor, facets, matchingComments);
+    }
+
+}
@@ -43,4 +43,17 @@ public final class FieldConstants {
     public static final String CONSTANT_V = "v";
     public static final String WEBSITE_HANDLE = "handle";
     public static final String LOCALE = "locale";
+
+    // entries and their comments are indexed as separate documents, a
+    // comment document holds the id of its entry
+    public static final String TYPE = "type";
+    public static final String TYPE_ENTRY = "entry";
+    public static final String TYPE_COMMENT = "comment";
+    public static final String COMMENT_ID = "comment_id";
+    public static final String ENTRY_ID = "entry_id";
+
+    // facet dimensions, which are counted over all the hits of a search
+    public static final String FACET_CATEGORY = "category";
+    public static final String FACET_TAG = "tag";
+    public static final String FACET_HANDLE = "handle";
 }
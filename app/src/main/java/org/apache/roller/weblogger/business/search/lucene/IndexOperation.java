@@ -21,23 +21,29 @@
 package org.apache.roller.weblogger.business.search.lucene;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.lucene.analysis.miscellaneous.LimitTokenCountAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
 import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.util.BytesRef;
 import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogEntryTag;
 
 /**
  * This is the base class for all index operation. These operations include:<br>
@@ -53,6 +59,12 @@ public abstract class IndexOperation implements Runnable {
     private static Log logger = LogFactory.getFactory().getInstance(
             IndexOperation.class);
 
+    // how the facets of a document are indexed, an entry can have many tags
+    static final FacetsConfig FACETS_CONFIG = new FacetsConfig();
+    static {
+        FACETS_CONFIG.setMultiValued(FieldConstants.FACET_TAG, true);
+    }
+
     // ~ Instance fields
     // ========================================================
     protected LuceneIndexManager manager;
@@ -66,45 +78,72 @@ public abstract class IndexOperation implements Runnable {
 
     // ~ Methods
     // ================================================================
-    protected Document getDocument(WeblogEntry data) {
-
-        // Actual comment content is indexed only if search.index.comments
-        // is true or absent from the (static) configuration properties.
-        // If false in the configuration, comments are treated as if empty.
-        boolean indexComments = WebloggerConfig.getBooleanProperty(
-                "search.index.comments", true);
-
-        String commentContent = "";
-        String commentEmail = "";
-        String commentName = "";
-        if (indexComments) {
-            List<WeblogEntryComment> comments = data.getComments();
-            if (comments != null) {
-                StringBuilder commentEmailBld = new StringBuilder();
-                StringBuilder commentContentBld = new StringBuilder();
-                StringBuilder commentNameBld = new StringBuilder();
-                for (WeblogEntryComment comment : comments) {
-                    if (comment.getContent() != null) {
-                        commentContentBld.append(comment.getContent());
-                        commentContentBld.append(",");
-                    }
-                    if (comment.getEmail() != null) {
-                        commentEmailBld.append(comment.getEmail());
-                        commentEmailBld.append(",");
-                    }
-                    if (comment.getName() != null) {
-                        commentNameBld.append(comment.getName());
-                        commentNameBld.append(",");
-                    }
-                }
-                commentEmail = commentEmailBld.toString();
-                commentContent = commentContentBld.toString();
-                commentName = commentNameBld.toString();
+
+    /**
+     * Build the documents for an entry, the entry's own document followed
+     * by one for each of its approved comments.
+     */
+    protected List<Document> getDocuments(WeblogEntry data) throws IOException {
+
+        List<WeblogEntryComment> comments = null;
+        if (isIndexComments()) {
+            comments = data.getComments();
+        }
+
+        // don't index deleted/disabled users of a group blog
+        User creator = data.getCreator();
+
+        return getDocuments(data, creator != null ? creator.getUserName() : null, comments);
+    }
+
+    /**
+     * Actual comment content is indexed only if search.index.comments is true
+     * or absent from the (static) configuration properties.  If false in the
+     * configuration, comments are not indexed at all.
+     */
+    protected static boolean isIndexComments() {
+        return WebloggerConfig.getBooleanProperty("search.index.comments", true);
+    }
+
+    /**
+     * Build the documents for an entry whose creator and comments have
+     * already been looked up, so it can be done without the database.
+     *
+     * @param creatorUserName
+     *            user name of the entry's creator, or null if the user is
+     *            disabled or deleted
+     * @param comments
+     *            approved comments to index along with the entry, may be null
+     */
+    protected static List<Document> getDocuments(WeblogEntry data, String creatorUserName,
+            List<WeblogEntryComment> comments) throws IOException {
+
+        List<Document> docs = new ArrayList<>(1 + (comments != null ? comments.size() : 0));
+        docs.add(getDocument(data, creatorUserName));
+        if (comments != null) {
+            for (WeblogEntryComment comment : comments) {
+                docs.add(getCommentDocument(data, comment));
             }
         }
+        return docs;
+    }
+
+    /**
+     * Build the document for an entry alone, without its comments.
+     *
+     * @param creatorUserName
+     *            user name of the entry's creator, or null if the user is
+     *            disabled or deleted
+     */
+    protected static Document getDocument(WeblogEntry data, String creatorUserName)
+            throws IOException {
 
         Document doc = new Document();
 
+        // keyword
+        doc.add(new StringField(FieldConstants.TYPE, FieldConstants.TYPE_ENTRY,
+                Field.Store.NO));
+
         // keyword
         doc.add(new StringField(FieldConstants.ID, data.getId(),
                 Field.Store.YES));
@@ -114,9 +153,9 @@ public abstract class IndexOperation implements Runnable {
                 .getWebsite().getHandle(), Field.Store.YES));
 
         // text, don't index deleted/disabled users of a group blog
-        if (data.getCreator() != null) {
-            doc.add(new TextField(FieldConstants.USERNAME, data.getCreator()
-                    .getUserName().toLowerCase(), Field.Store.YES));
+        if (creatorUserName != null) {
+            doc.add(new TextField(FieldConstants.USERNAME,
+                    creatorUserName.toLowerCase(), Field.Store.YES));
         }
 
         // text
@@ -131,14 +170,17 @@ public abstract class IndexOperation implements Runnable {
         doc.add(new TextField(FieldConstants.CONTENT, data.getText(),
                 Field.Store.NO));
 
-        // keyword
-        doc.add(new StringField(FieldConstants.UPDATED, data.getUpdateTime()
-                .toString(), Field.Store.YES));
+        // dates, which can be searched by range and sorted on
+        long updated = data.getUpdateTime().getTime();
+        doc.add(new LongPoint(FieldConstants.UPDATED, updated));
+        doc.add(new NumericDocValuesField(FieldConstants.UPDATED, updated));
+        doc.add(new StoredField(FieldConstants.UPDATED, updated));
 
-        // keyword
         if (data.getPubTime() != null) {
             // SearchOperation sorts results by date
-            doc.add(new SortedDocValuesField(FieldConstants.PUBLISHED, new BytesRef(data.getPubTime().toString())));
+            long published = data.getPubTime().getTime();
+            doc.add(new LongPoint(FieldConstants.PUBLISHED, published));
+            doc.add(new NumericDocValuesField(FieldConstants.PUBLISHED, published));
         }
 
         // index Category, needs to be in lower case as it is used in a term
@@ -146,19 +188,66 @@ public abstract class IndexOperation implements Runnable {
         if (categorydata != null) {
             doc.add(new StringField(FieldConstants.CATEGORY, categorydata
                     .getName().toLowerCase(), Field.Store.YES));
+            doc.add(new SortedSetDocValuesFacetField(FieldConstants.FACET_CATEGORY,
+                    categorydata.getName()));
         }
 
-        // index Comments, unstored
-        doc.add(new TextField(FieldConstants.C_CONTENT, commentContent,
-                Field.Store.NO));
+        // facets
+        doc.add(new SortedSetDocValuesFacetField(FieldConstants.FACET_HANDLE,
+                data.getWebsite().getHandle()));
+        if (data.getTags() != null) {
+            for (WeblogEntryTag tag : data.getTags()) {
+                doc.add(new SortedSetDocValuesFacetField(FieldConstants.FACET_TAG, tag.getName()));
+            }
+        }
+
+        return FACETS_CONFIG.build(doc);
+    }
+
+    /**
+     * Build the document for a comment, which can be added and removed
+     * without touching the document of its entry.
+     */
+    protected static Document getCommentDocument(WeblogEntry entry, WeblogEntryComment comment) {
+
+        Document doc = new Document();
 
         // keyword
-        doc.add(new StringField(FieldConstants.C_EMAIL, commentEmail,
+        doc.add(new StringField(FieldConstants.TYPE, FieldConstants.TYPE_COMMENT,
+                Field.Store.NO));
+
+        // keywords, searches read them from doc values to find the entries
+        // of matching comments
+        doc.add(new StringField(FieldConstants.COMMENT_ID, comment.getId(),
+                Field.Store.YES));
+        doc.add(new SortedDocValuesField(FieldConstants.COMMENT_ID,
+                new BytesRef(comment.getId())));
+        doc.add(new StringField(FieldConstants.ENTRY_ID, entry.getId(),
                 Field.Store.YES));
+        doc.add(new SortedDocValuesField(FieldConstants.ENTRY_ID,
+                new BytesRef(entry.getId())));
+
+        // keyword, so a weblog's comments go along with its entries
+        doc.add(new StringField(FieldConstants.WEBSITE_HANDLE, entry
+                .getWebsite().getHandle(), Field.Store.YES));
+
+        // index the comment text, but don't store it
+        if (comment.getContent() != null) {
+            doc.add(new TextField(FieldConstants.C_CONTENT, comment.getContent(),
+                    Field.Store.NO));
+        }
 
         // keyword
-        doc.add(new StringField(FieldConstants.C_NAME, commentName,
-                Field.Store.YES));
+        if (comment.getEmail() != null) {
+            doc.add(new StringField(FieldConstants.C_EMAIL, comment.getEmail(),
+                    Field.Store.YES));
+        }
+
+        // keyword
+        if (comment.getName() != null) {
+            doc.add(new StringField(FieldConstants.C_NAME, comment.getName(),
+                    Field.Store.YES));
+        }
 
         return doc;
     }
@@ -166,37 +255,22 @@ public abstract class IndexOperation implements Runnable {
     /**
      * Begin writing.
      * 
-     * @return the index writer
+     * @return the index writer shared by all operations
      */
     protected IndexWriter beginWriting() {
-        try {
-
-            LimitTokenCountAnalyzer analyzer = new LimitTokenCountAnalyzer(
-                    LuceneIndexManager.getAnalyzer(),
-                    WebloggerConfig.getIntProperty("lucene.analyzer.maxTokenCount"));
-
-            IndexWriterConfig config = new IndexWriterConfig(analyzer);
-
-            writer = new IndexWriter(manager.getIndexDirectory(), config);
-
-        } catch (IOException e) {
-            logger.error("ERROR creating writer", e);
+        writer = manager.getSharedIndexWriter();
+        if (writer == null) {
+            logger.error("ERROR index writer is not open");
         }
-
         return writer;
     }
 
     /**
-     * End writing.
+     * End writing.  The shared writer stays open, its changes are committed
+     * at intervals by the index manager.
      */
     protected void endWriting() {
-        if (writer != null) {
-            try {
-                writer.close();
-            } catch (IOException e) {
-                logger.error("ERROR closing writer", e);
-            }
-        }
+        writer = null;
     }
 
     /**
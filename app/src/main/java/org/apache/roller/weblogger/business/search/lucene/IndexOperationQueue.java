@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * Index operations waiting to be written, applied in batches by a single
+ * thread.
+ *
+ * Operations are queued under a key, such as the id of the entry or the
+ * handle of the weblog they are for.  Operations reload what they index
+ * when they run, so an operation queued under a key which is already
+ * waiting replaces the waiting one and only the latest is applied.  Each
+ * batch is written under one hold of the write lock and made searchable
+ * with one refresh.
+ */
+class IndexOperationQueue implements Runnable {
+
+    private static final Log logger = LogFactory.getLog(IndexOperationQueue.class);
+
+    private final LuceneIndexManager manager;
+
+    // how long operations wait for others to join them, in milliseconds
+    private final long delay;
+
+    // most operations applied in one batch
+    private final int batchSize;
+
+    // waiting operations in the order they were first queued, guarded by this
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder removed = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    // how long the operations of the last batch waited, in milliseconds
+    private volatile long lastLag = 0;
+
+    private Thread thread;
+    private volatile boolean running = false;
+
+
+    private static class Pending {
+        final WriteToIndexOperation op;
+        final long queuedTime;
+
+        Pending(WriteToIndexOperation op, long queuedTime) {
+            this.op = op;
+            this.queuedTime = queuedTime;
+        }
+    }
+
+
+    IndexOperationQueue(LuceneIndexManager manager, long delay, int batchSize) {
+        this.manager = manager;
+        this.delay = Math.max(0, delay);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+
+    /**
+     * Start applying queued operations.
+     */
+    synchronized void start() {
+        if (thread == null) {
+            running = true;
+            thread = new Thread(this, "LuceneIndexQueue");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+
+    /**
+     * Stop the queue's thread, then apply whatever is still waiting on the
+     * calling thread so that no changes are lost.
+     *
+     * @param timeout how long to wait for the batch being applied, in
+     *        milliseconds
+     * @return false if operations were left waiting because the batch being
+     *         applied took too long
+     */
+    boolean shutdown(long timeout) {
+        Thread stopping;
+        synchronized (this) {
+            running = false;
+            stopping = thread;
+            thread = null;
+            notifyAll();
+        }
+        if (stopping != null) {
+            try {
+                stopping.join(timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (stopping.isAlive()) {
+                logger.warn("Gave up waiting for index operations, "
+                        + getStats().get("depth") + " left waiting");
+                return false;
+            }
+        }
+
+        List<WriteToIndexOperation> remaining = take(Integer.MAX_VALUE);
+        if (!remaining.isEmpty()) {
+            logger.info("Applying " + remaining.size() + " queued index operations");
+            apply(remaining);
+        }
+        return true;
+    }
+
+
+    /**
+     * Queue an operation, replacing any waiting under the same key.
+     */
+    synchronized void add(String key, WriteToIndexOperation op) {
+        Pending previous = pending.get(key);
+        if (previous != null) {
+            // the key keeps its place and how long it has waited
+            pending.put(key, new Pending(op, previous.queuedTime));
+            coalesced.increment();
+        } else {
+            pending.put(key, new Pending(op, System.currentTimeMillis()));
+        }
+        queued.increment();
+        notifyAll();
+    }
+
+
+    /**
+     * Forget the operation waiting under the given key, if there is one.
+     */
+    synchronized void remove(String key) {
+        if (pending.remove(key) != null) {
+            removed.increment();
+        }
+    }
+
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                List<WriteToIndexOperation> batch = awaitBatch();
+                if (!batch.isEmpty()) {
+                    apply(batch);
+                }
+            } catch (InterruptedException e) {
+                // stopping
+                return;
+            } catch (Exception e) {
+                logger.error("Unexpected error applying index operations", e);
+            }
+        }
+    }
+
+
+    /**
+     * Wait until the oldest waiting operation has waited long enough for
+     * others to join it, then take a batch.
+     */
+    private synchronized List<WriteToIndexOperation> awaitBatch() throws InterruptedException {
+        while (running) {
+            if (pending.isEmpty()) {
+                wait();
+                continue;
+            }
+            long oldest = pending.values().iterator().next().queuedTime;
+            long remaining = oldest + delay - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return take(batchSize);
+            }
+            wait(remaining);
+        }
+        return new ArrayList<>();
+    }
+
+
+    private synchronized List<WriteToIndexOperation> take(int max) {
+        List<WriteToIndexOperation> batch = new ArrayList<>(Math.min(max, pending.size()));
+        long now = System.currentTimeMillis();
+        Iterator<Pending> it = pending.values().iterator();
+        while (it.hasNext() && batch.size() < max) {
+            Pending next = it.next();
+            if (batch.isEmpty()) {
+                lastLag = now - next.queuedTime;
+            }
+            batch.add(next.op);
+            it.remove();
+        }
+        return batch;
+    }
+
+
+    /**
+     * Apply a batch of operations under one hold of the write lock.
+     */
+    private void apply(List<WriteToIndexOperation> batch) {
+        manager.getWriteLock().lock();
+        try {
+            for (WriteToIndexOperation op : batch) {
+                long start = System.nanoTime();
+                try {
+                    op.doRun();
+                } catch (Exception e) {
+                    logger.error("Error applying index operation " + op.getClass().getSimpleName(), e);
+                } finally {
+                    manager.recordLatency(op.getClass().getSimpleName(), System.nanoTime() - start);
+                }
+                applied.increment();
+            }
+            batches.increment();
+        } finally {
+            manager.getWriteLock().unlock();
+        }
+        manager.refreshSearcher();
+    }
+
+
+    /**
+     * How many operations are waiting and for how long, along with counts
+     * of the operations queued, replaced by later ones, removed and applied.
+     */
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("depth", pending.size());
+            stats.put("oldest", pending.isEmpty() ? 0
+                    : System.currentTimeMillis() - pending.values().iterator().next().queuedTime);
+        }
+        stats.put("lastLag", lastLag);
+        stats.put("queued", queued.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("removed", removed.sum());
+        stats.put("applied", applied.sum());
+        stats.put("batches", batches.sum());
+        return stats;
+    }
+
+}
@@ -23,42 +23,66 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import org.apache.commons.beanutils.ConstructorUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.miscellaneous.LimitTokenCountAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfos;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ReferenceManager;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.InitializationException;
 import org.apache.roller.weblogger.business.URLStrategy;
-import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.business.Weblogger;
-import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.search.IndexManager;
 import org.apache.roller.weblogger.business.search.SearchResultList;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
-import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.util.LatencyHistogram;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheManager;
 
 /**
  * Lucene implementation of IndexManager. This is the central entry point into
@@ -70,11 +94,24 @@ import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
 @com.google.inject.Singleton
 public class LuceneIndexManager implements IndexManager {
 
-    private IndexReader reader;
     private final Weblogger roller;
 
+    // a single writer is kept open for all index operations, searches use
+    // near-real-time searchers opened from it
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private ScheduledExecutorService committer;
+
     private final static Log logger = LogFactory.getFactory().getInstance(LuceneIndexManager.class);
 
+    // version of the layout of index documents, an index with another
+    // version is rebuilt at startup
+    static final String INDEX_VERSION = "3";
+    private static final String INDEX_VERSION_KEY = "roller.index.version";
+
+    private static final Set<String> ID_FIELD = Set.of(FieldConstants.ID);
+
     private boolean searchEnabled = true;
 
     private final String indexDir;
@@ -83,7 +120,40 @@ public class LuceneIndexManager implements IndexManager {
 
     private boolean inconsistentAtStartup = false;
 
-    private final ReadWriteLock rwl = new ReentrantReadWriteLock();
+    // index operations which write take turns, searches never wait for them
+    private final Lock writeLock = new ReentrantLock();
+
+    // guards what searchers see, so a swapped in index shows up all at once
+    private final Object refreshLock = new Object();
+
+    // how often, in seconds, changes are committed to disk
+    private final int commitInterval;
+
+    // how long each kind of index operation takes
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    // progress of running rebuilds, keyed by weblog handle or "" for the site
+    private final Map<String, Map<String, Object>> rebuilds = new ConcurrentHashMap<>();
+
+    // goes up each time searchers see a changed index
+    private final AtomicLong generation = new AtomicLong();
+
+    // parsed search terms, and pages of hits valid for one generation
+    private final Cache queryCache;
+    private final Cache resultCache;
+
+    // the analyzer is thread safe, so one is shared by everything
+    private static volatile Analyzer analyzer;
+
+    // index updates waiting to be written
+    private final IndexOperationQueue indexQueue;
+
+    // how long shutdown waits for index updates being written, in milliseconds
+    private static final long QUEUE_SHUTDOWN_TIMEOUT = 30000;
+
+    // ordinals of the facet values of the current searcher, worked out
+    // whenever it is refreshed
+    private volatile SortedSetDocValuesReaderState facetState;
 
 
     /**
@@ -115,6 +185,37 @@ public class LuceneIndexManager implements IndexManager {
 
         String test = indexDir + File.separator + ".index-inconsistent";
         indexConsistencyMarker = new File(test);
+
+        this.commitInterval = WebloggerConfig.getIntProperty("search.index.commitInterval", 30);
+
+        this.indexQueue = new IndexOperationQueue(this,
+                WebloggerConfig.getIntProperty("search.index.queue.delay", 500),
+                WebloggerConfig.getIntProperty("search.index.queue.batchSize", 100));
+
+        this.queryCache = constructCache("cache.searchquery");
+        this.resultCache = constructCache("cache.searchresults");
+    }
+
+    private static Cache constructCache(String cacheId) {
+        if (!WebloggerConfig.getBooleanProperty(cacheId + ".enabled")) {
+            logger.info("Caching is DISABLED for " + cacheId);
+            return null;
+        }
+
+        Map<String, String> cacheProps = new HashMap<>();
+        cacheProps.put("id", cacheId);
+        Enumeration<Object> allProps = WebloggerConfig.keys();
+        String prop;
+        while (allProps.hasMoreElements()) {
+            prop = (String) allProps.nextElement();
+
+            // we are only interested in props for this cache
+            if (prop.startsWith(cacheId + ".")) {
+                cacheProps.put(prop.substring(cacheId.length() + 1),
+                        WebloggerConfig.getProperty(prop));
+            }
+        }
+        return CacheManager.constructCache(null, cacheProps);
     }
 
     /**
@@ -148,12 +249,19 @@ public class LuceneIndexManager implements IndexManager {
             if (indexExists()) {
 
                 // test if the index is readable, if the version is outdated or it fails we rebuild.
-                try {
-                    synchronized(this) {
-                        reader = DirectoryReader.open(getIndexDirectory());
+                boolean outdated = false;
+                try (DirectoryReader reader = DirectoryReader.open(getIndexDirectory())) {
+                    logger.debug("Index contains " + reader.numDocs() + " documents");
+                    String version = reader.getIndexCommit().getUserData().get(INDEX_VERSION_KEY);
+                    if (!INDEX_VERSION.equals(version)) {
+                        logger.info("Search index version " + version + " is outdated, scheduling rebuild.");
+                        outdated = true;
                     }
                 } catch (IOException | IllegalArgumentException ex) {  // IAE for incompatible codecs
                     logger.warn("Failed to open search index, scheduling rebuild.", ex);
+                    outdated = true;
+                }
+                if (outdated) {
                     inconsistentAtStartup = true;
                     deleteIndex();
                 }
@@ -161,9 +269,15 @@ public class LuceneIndexManager implements IndexManager {
                 logger.debug("Creating index");
                 inconsistentAtStartup = true;
                 deleteIndex();
-                createIndex(getIndexDirectory());
             }
 
+            try {
+                openWriter();
+            } catch (IOException ex) {
+                throw new InitializationException("Unable to open search index", ex);
+            }
+            indexQueue.start();
+
             if (inconsistentAtStartup) {
                 logger.info("Index was inconsistent. Rebuilding index in the background...");
                 try {
@@ -180,34 +294,75 @@ public class LuceneIndexManager implements IndexManager {
 
     @Override
     public void rebuildWeblogIndex() throws WebloggerException {
-        scheduleIndexOperation(new RebuildWebsiteIndexOperation(roller, this, null));
+        scheduleIndexOperation(queueKey((Weblog) null),
+                new RebuildWebsiteIndexOperation(roller, this, null));
     }
 
     @Override
     public void rebuildWeblogIndex(Weblog website) throws WebloggerException {
-        scheduleIndexOperation(new RebuildWebsiteIndexOperation(roller, this, website));
+        scheduleIndexOperation(queueKey(website),
+                new RebuildWebsiteIndexOperation(roller, this, website));
     }
 
     @Override
     public void removeWeblogIndex(Weblog website) throws WebloggerException {
-        scheduleIndexOperation(new RemoveWebsiteIndexOperation(roller, this, website));
+        scheduleIndexOperation(queueKey(website),
+                new RemoveWebsiteIndexOperation(roller, this, website));
     }
 
     @Override
     public void addEntryIndexOperation(WeblogEntry entry) throws WebloggerException {
-        scheduleIndexOperation(new AddEntryOperation(roller, this, entry));
+        scheduleIndexOperation(queueKey(entry), new AddEntryOperation(roller, this, entry));
     }
 
     @Override
     public void addEntryReIndexOperation(WeblogEntry entry) throws WebloggerException {
-        scheduleIndexOperation(new ReIndexEntryOperation(roller, this, entry));
+        scheduleIndexOperation(queueKey(entry), new ReIndexEntryOperation(roller, this, entry));
     }
 
     @Override
     public void removeEntryIndexOperation(WeblogEntry entry) throws WebloggerException {
+        // whatever was waiting to be written for the entry is moot now
+        indexQueue.remove(queueKey(entry));
         executeIndexOperationNow(new RemoveEntryOperation(roller, this, entry));
     }
 
+    @Override
+    public void addCommentReIndexOperation(WeblogEntryComment comment) throws WebloggerException {
+        // the operation builds its document up front, so only if it's wanted
+        if (searchEnabled) {
+            scheduleIndexOperation(queueKey(comment), new ReIndexCommentOperation(this, comment));
+        }
+    }
+
+    @Override
+    public void removeCommentIndexOperation(WeblogEntryComment comment) throws WebloggerException {
+        scheduleIndexOperation(queueKey(comment), new RemoveCommentOperation(this, comment));
+    }
+
+    /**
+     * Key which index updates of an entry are queued under, so that
+     * only the latest waiting one is written.
+     */
+    private static String queueKey(WeblogEntry entry) {
+        return "entry:" + entry.getId();
+    }
+
+    /**
+     * Key which index updates of a comment are queued under.
+     */
+    private static String queueKey(WeblogEntryComment comment) {
+        return "comment:" + comment.getId();
+    }
+
+    /**
+     * Key which index updates of a weblog, or of the whole site if null,
+     * are queued under.
+     */
+    private static String queueKey(Weblog weblog) {
+        return "weblog:" + (weblog != null ? weblog.getHandle() : "");
+    }
+
     @Override
     public SearchResultList search(
         String term,
@@ -216,39 +371,194 @@ public class LuceneIndexManager implements IndexManager {
         String locale,
         int pageNum,
         int entryCount,
+        String after,
+        String before,
         URLStrategy urlStrategy) throws WebloggerException {
 
-        SearchOperation search = new SearchOperation(this);
-        search.setTerm(term);
+        long start = System.nanoTime();
         boolean weblogSpecific = !WebloggerRuntimeConfig.isSiteWideWeblog(weblogHandle);
-        if (weblogSpecific) {
-            search.setWeblogHandle(weblogHandle);
+
+        // the same search against the same index gives the same hits, so
+        // they are reused until the index changes
+        String key = resultKey(term, weblogSpecific ? weblogHandle : null,
+                category, locale, pageNum, entryCount, after, before);
+        long searchedGeneration = generation.get();
+        try {
+            if (resultCache != null && key != null) {
+                CachedSearchResult cached = (CachedSearchResult) resultCache.get(key);
+                if (cached != null && cached.getGeneration() == searchedGeneration) {
+                    return cached.toResultList(urlStrategy);
+                }
+            }
+
+            SearchOperation search = new SearchOperation(this);
+            search.setTerm(term);
+            search.setPage(pageNum * entryCount, entryCount);
+            search.setAfter(after);
+            search.setBefore(before);
+            search.setCountFacets(true);
+            if (weblogSpecific) {
+                search.setWeblogHandle(weblogHandle);
+            }
+            if (category != null) {
+                search.setCategory(category);
+            }
+            if (locale != null) {
+                search.setLocale(locale);
+            }
+
+            executeIndexOperationNow(search);
+            CachedSearchResult result;
+            try {
+                if (search.getResultsCount() < 0) {
+                    throw new WebloggerException("Error executing search");
+                }
+                TopFieldDocs docs = search.getResults();
+                result = convertHitsToEntryList(
+                    docs.scoreDocs,
+                    search,
+                    pageNum,
+                    entryCount,
+                    weblogSpecific,
+                    searchedGeneration);
+            } finally {
+                search.release();
+            }
+
+            if (resultCache != null && key != null) {
+                resultCache.put(key, result);
+            }
+            return result.toResultList(urlStrategy);
+
+        } finally {
+            recordLatency("search", System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Key of a page of search results in the result cache, or null if the
+     * search can't be cached.
+     */
+    private static String resultKey(String term, String weblogHandle, String category,
+            String locale, int pageNum, int entryCount, String after, String before) {
+        String normalized = normalizeTerm(term);
+        if (normalized == null) {
+            return null;
+        }
+        // the term goes last, so nothing in it can be mistaken for another part
+        return weblogHandle + "\n" + category + "\n" + locale + "\n" + pageNum
+                + "\n" + entryCount + "\n" + after + "\n" + before + "\n" + normalized;
+    }
+
+    /**
+     * Search terms which only differ in whitespace are the same search.  Case
+     * is kept, as it matters for operators such as AND and OR.
+     */
+    static String normalizeTerm(String term) {
+        return StringUtils.normalizeSpace(term);
+    }
+
+    /**
+     * Parse a search term into a query over the searched fields.  Queries
+     * can be shared by any number of searches, so each term is only parsed
+     * once for as long as it stays in the query cache.
+     */
+    Query parseQuery(String term) throws ParseException {
+        String normalized = normalizeTerm(term);
+        Query query = null;
+        if (queryCache != null && normalized != null) {
+            query = (Query) queryCache.get(normalized);
         }
-        if (category != null) {
-            search.setCategory(category);
+        if (query == null) {
+            // parsers can't be shared between threads
+            MultiFieldQueryParser multiParser = new MultiFieldQueryParser(
+                    SearchOperation.SEARCH_FIELDS, getAnalyzer());
+
+            // Make it an AND by default. Comment this out for an or (default)
+            multiParser.setDefaultOperator(MultiFieldQueryParser.Operator.AND);
+
+            // Create a query object out of our term
+            query = multiParser.parse(normalized);
+            if (queryCache != null && normalized != null) {
+                queryCache.put(normalized, query);
+            }
         }
-        if (locale != null) {
-            search.setLocale(locale);
+        return query;
+    }
+
+    /**
+     * Generation of the index searches currently see, which goes up each
+     * time changes to the index become visible.
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Wrap an index operation so that how long it runs is recorded, including
+     * any time spent waiting to write.
+     */
+    private Runnable timed(final IndexOperation op) {
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                op.run();
+            } finally {
+                recordLatency(op.getClass().getSimpleName(), System.nanoTime() - start);
+            }
+        };
+    }
+
+    /**
+     * Record how long an index operation took.
+     */
+    void recordLatency(String operation, long nanos) {
+        latencies.computeIfAbsent(operation, k -> new LatencyHistogram()).record(nanos);
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> getLatencyStats() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().getStats());
         }
+        return stats;
+    }
+
+    @Override
+    public Map<String, Object> getQueueStats() {
+        return indexQueue.getStats();
+    }
 
-        executeIndexOperationNow(search);
-        if (search.getResultsCount() >= 0) {
-            TopFieldDocs docs = search.getResults();
-            ScoreDoc[] hitsArr = docs.scoreDocs;
-            return convertHitsToEntryList(
-                hitsArr,
-                search,
-                pageNum,
-                entryCount,
-                weblogHandle,
-                weblogSpecific,
-                urlStrategy);
+    @Override
+    public Map<String, Object> getRebuildProgress(Weblog weblog) {
+        Map<String, Object> progress = rebuilds.get(rebuildKey(weblog));
+        if (progress == null && weblog != null) {
+            progress = rebuilds.get(rebuildKey(null));
         }
-        throw new WebloggerException("Error executing search");
+        return progress != null ? progress : Collections.emptyMap();
+    }
+
+    /**
+     * Record how far a rebuild has got.
+     */
+    void rebuildProgress(Weblog weblog, int entries, Date started) {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("entries", entries);
+        progress.put("started", started);
+        rebuilds.put(rebuildKey(weblog), progress);
+    }
+
+    void rebuildDone(Weblog weblog) {
+        rebuilds.remove(rebuildKey(weblog));
     }
 
-    public ReadWriteLock getReadWriteLock() {
-        return rwl;
+    private static String rebuildKey(Weblog weblog) {
+        return weblog != null ? weblog.getHandle() : "";
+    }
+
+    public Lock getWriteLock() {
+        return writeLock;
     }
 
     @Override
@@ -262,7 +572,17 @@ public class LuceneIndexManager implements IndexManager {
      * @return Analyzer to be used in manipulating the database.
      */
     public static final Analyzer getAnalyzer() {
-        return instantiateAnalyzer();
+        Analyzer shared = analyzer;
+        if (shared == null) {
+            synchronized (LuceneIndexManager.class) {
+                shared = analyzer;
+                if (shared == null) {
+                    shared = instantiateAnalyzer();
+                    analyzer = shared;
+                }
+            }
+        }
+        return shared;
     }
 
     private static Analyzer instantiateAnalyzer() {
@@ -283,16 +603,11 @@ public class LuceneIndexManager implements IndexManager {
         return new StandardAnalyzer();
     }
 
-    private void scheduleIndexOperation(final IndexOperation op) {
-        try {
-            // only if search is enabled
-            if (this.searchEnabled) {
-                logger.debug("Starting scheduled index operation: "
-                        + op.getClass().getName());
-                roller.getThreadManager().executeInBackground(op);
-            }
-        } catch (InterruptedException e) {
-            logger.error("Error executing operation", e);
+    private void scheduleIndexOperation(String key, final WriteToIndexOperation op) {
+        // only if search is enabled
+        if (this.searchEnabled) {
+            logger.debug("Queueing index operation: " + op.getClass().getName());
+            indexQueue.add(key, op);
         }
     }
 
@@ -304,27 +619,193 @@ public class LuceneIndexManager implements IndexManager {
             // only if search is enabled
             if (this.searchEnabled) {
                 logger.debug("Executing index operation now: " + op.getClass().getName());
-                roller.getThreadManager().executeInForeground(op);
+                roller.getThreadManager().executeInForeground(timed(op));
             }
         } catch (InterruptedException e) {
             logger.error("Error executing operation", e);
         }
     }
 
-    public synchronized void resetSharedReader() {
-        reader = null;
+    /**
+     * Open the writer shared by all index operations, creating the index if
+     * there is none, and start committing its changes at intervals.
+     */
+    private void openWriter() throws IOException {
+
+        writer = new IndexWriter(getIndexDirectory(), newIndexWriterConfig());
+        writer.setLiveCommitData(Map.of(INDEX_VERSION_KEY, INDEX_VERSION).entrySet());
+        writer.commit();
+        searcherManager = new SearcherManager(writer, null);
+        searcherManager.addListener(new ReferenceManager.RefreshListener() {
+            @Override
+            public void beforeRefresh() {
+                // nothing to do
+            }
+
+            @Override
+            public void afterRefresh(boolean didRefresh) throws IOException {
+                if (didRefresh) {
+                    generation.incrementAndGet();
+                    updateFacetState();
+                }
+            }
+        });
+        updateFacetState();
+
+        committer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "LuceneIndexCommitter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        committer.scheduleWithFixedDelay(this::commit,
+                commitInterval, commitInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Configuration for writers of this index.
+     */
+    IndexWriterConfig newIndexWriterConfig() {
+        IndexWriterConfig config = new IndexWriterConfig(
+                new LimitTokenCountAnalyzer(
+                        LuceneIndexManager.getAnalyzer(),
+                        WebloggerConfig.getIntProperty("lucene.analyzer.maxTokenCount")));
+        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        return config;
+    }
+
+    /**
+     * Commit changes made since the last commit, which is done at intervals
+     * rather than by each index operation.
+     */
+    public void commit() {
+        synchronized (refreshLock) {
+            try {
+                if (writer != null && writer.hasUncommittedChanges()) {
+                    writer.commit();
+                    logger.debug("Committed changes to index");
+                }
+                if (searcherManager != null) {
+                    searcherManager.maybeRefresh();
+                }
+            } catch (IOException | AlreadyClosedException ex) {
+                logger.error("Error committing changes to index", ex);
+            }
+        }
     }
 
-    public synchronized IndexReader getSharedIndexReader() {
-        if (reader == null) {
+    /**
+     * Make changes written to the index visible to searches.  Searchers see
+     * the changes of the shared writer without waiting for them to be
+     * committed.
+     */
+    public void refreshSearcher() {
+        synchronized (refreshLock) {
             try {
-                reader = DirectoryReader.open(getIndexDirectory());
-            } catch (IOException ex) {
-                logger.error("Error opening DirectoryReader", ex);
-                throw new RuntimeException(ex);
+                if (searcherManager != null) {
+                    searcherManager.maybeRefresh();
+                }
+            } catch (IOException | AlreadyClosedException ex) {
+                logger.error("Error refreshing index searcher", ex);
             }
         }
-        return reader;
+    }
+
+    /**
+     * Replace part of the index, or all of it, with the documents of an index
+     * which was built on the side.  Searches see either the old or the new
+     * documents, never a mix of both.
+     *
+     * @param side the index to copy documents from, which must not be open
+     *        for writing
+     * @param replaced term matching the documents to replace, or null to
+     *        replace all documents
+     */
+    public void swapIn(Directory side, Term replaced) throws IOException {
+        synchronized (refreshLock) {
+            if (replaced == null) {
+                writer.deleteAll();
+            } else {
+                writer.deleteDocuments(replaced);
+            }
+            writer.addIndexes(side);
+            writer.commit();
+            searcherManager.maybeRefreshBlocking();
+        }
+    }
+
+    /**
+     * Create an empty directory next to the index to build a side index in.
+     */
+    Path createSideIndexPath() throws IOException {
+        Path index = Path.of(indexDir).toAbsolutePath();
+        return Files.createTempDirectory(index.getParent(), index.getFileName() + "-rebuild");
+    }
+
+    /**
+     * Get the writer shared by all index operations, which must not be
+     * closed by them.
+     */
+    public IndexWriter getSharedIndexWriter() {
+        return writer;
+    }
+
+    /**
+     * Get a searcher for the current state of the index, which must be
+     * handed back to releaseSearcher() once done with.
+     */
+    public IndexSearcher acquireSearcher() throws IOException {
+        if (searcherManager == null) {
+            throw new IOException("Search index is not open");
+        }
+        return searcherManager.acquire();
+    }
+
+    /**
+     * Get the ordinals of the facet values of the given searcher's index,
+     * which are worked out each time the searcher is refreshed.
+     *
+     * @return the ordinals, or null if nothing in the index has facets
+     */
+    SortedSetDocValuesReaderState getFacetState(IndexSearcher searcher) throws IOException {
+        SortedSetDocValuesReaderState state = facetState;
+        if (state != null && state.getReader() == searcher.getIndexReader()) {
+            return state;
+        }
+        // the searcher was acquired around a refresh, which is rare enough
+        // that its ordinals are not kept
+        return newFacetState(searcher.getIndexReader());
+    }
+
+    /**
+     * Work out the ordinals of the facet values of the current searcher, so
+     * that searches up to the next refresh can share them.
+     */
+    private void updateFacetState() throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            facetState = newFacetState(searcher.getIndexReader());
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    private static SortedSetDocValuesReaderState newFacetState(IndexReader reader)
+            throws IOException {
+        // an index with no facets at all, such as an empty one, has none
+        // to count
+        if (FieldInfos.getMergedFieldInfos(reader)
+                .fieldInfo(FacetsConfig.DEFAULT_INDEX_FIELD_NAME) == null) {
+            return null;
+        }
+        return new DefaultSortedSetDocValuesReaderState(reader, IndexOperation.FACETS_CONFIG);
+    }
+
+    public void releaseSearcher(IndexSearcher searcher) {
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException ex) {
+            logger.error("Error releasing index searcher", ex);
+        }
     }
 
     /**
@@ -333,14 +814,16 @@ public class LuceneIndexManager implements IndexManager {
      * 
      * @return Directory The directory containing the index, or null if error.
      */
-    public Directory getIndexDirectory() {
+    public synchronized Directory getIndexDirectory() {
 
-        try {
-            return FSDirectory.open(Path.of(indexDir));
-        } catch (IOException e) {
-            logger.error("Problem accessing index directory", e);
+        if (directory == null) {
+            try {
+                directory = FSDirectory.open(Path.of(indexDir));
+            } catch (IOException e) {
+                logger.error("Problem accessing index directory", e);
+            }
         }
-        return null;
+        return directory;
     }
 
     private boolean indexExists() {
@@ -355,9 +838,9 @@ public class LuceneIndexManager implements IndexManager {
     
     private void deleteIndex() {
         
-        try(FSDirectory directory = FSDirectory.open(Path.of(indexDir))) {
+        try(FSDirectory dir = FSDirectory.open(Path.of(indexDir))) {
             
-            String[] files = directory.listAll();
+            String[] files = dir.listAll();
             for (String file : files) {
                 Files.delete(Path.of(indexDir, file));
             }
@@ -367,30 +850,6 @@ public class LuceneIndexManager implements IndexManager {
 
     }
 
-    private void createIndex(Directory dir) {
-        IndexWriter writer = null;
-
-        try {
-
-            IndexWriterConfig config = new IndexWriterConfig(
-                    new LimitTokenCountAnalyzer(
-                            LuceneIndexManager.getAnalyzer(), 128));
-
-            writer = new IndexWriter(dir, config);
-
-        } catch (IOException e) {
-            logger.error("Error creating index", e);
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException ex) {
-                    logger.warn("Unable to close IndexWriter.", ex);
-                }
-            }
-        }
-    }
-
     @Override
     public void release() {
         // no-op
@@ -398,85 +857,109 @@ public class LuceneIndexManager implements IndexManager {
 
     @Override
     public void shutdown() {
-        
-        indexConsistencyMarker.delete();
 
-        if (reader != null) {
-            try {
-                reader.close();
-            } catch (IOException ex) {
-                logger.error("Unable to close reader.", ex);
+        // write out what is waiting before the writer is closed
+        boolean complete = indexQueue.shutdown(QUEUE_SHUTDOWN_TIMEOUT);
+
+        if (committer != null) {
+            committer.shutdownNow();
+        }
+
+        try {
+            if (searcherManager != null) {
+                searcherManager.close();
+            }
+            // closing the writer commits any pending changes
+            if (writer != null) {
+                writer.close();
             }
+            if (directory != null) {
+                directory.close();
+            }
+        } catch (IOException ex) {
+            logger.error("Unable to close index.", ex);
+        }
+
+        // an index missing some updates is rebuilt at the next startup
+        if (complete) {
+            indexConsistencyMarker.delete();
         }
     }
 
     /**
-     * Convert hits to entries.
+     * Read the ids of the entries on the requested page of hits, along with
+     * the categories of all hits.
      *
      * @param hits
      *            the hits
      * @param search
      *            the search
+     * @param searchedGeneration
+     *            generation of the index at the time of the search
      * @throws WebloggerException
      *             the weblogger exception
      */
-    static SearchResultList convertHitsToEntryList(
+    static CachedSearchResult convertHitsToEntryList(
         ScoreDoc[] hits,
         SearchOperation search,
         int pageNum,
         int entryCount,
-        String weblogHandle,
         boolean websiteSpecificSearch,
-        URLStrategy urlStrategy)
+        long searchedGeneration)
         throws WebloggerException {
 
-        List<WeblogEntryWrapper> results = new ArrayList<>();
-
-        // determine offset
-        int offset = pageNum * entryCount;
-        if (offset >= hits.length) {
-            offset = 0;
-        }
+        // determine where the page starts within the hits, which only hold
+        // the page itself when carrying on from the next or previous page
+        int start = search.getPageStart();
+        int offset = search.isFromCursor() ? pageNum * entryCount : start;
 
-        // determine limit
+        // determine limit, a page past the hits that could be searched by
+        // offset is empty rather than some other page
         int limit = entryCount;
-        if (offset + limit > hits.length) {
-            limit = hits.length - offset;
+        if (start + limit > hits.length) {
+            limit = Math.max(0, hits.length - start);
         }
 
         try {
-            Set<String> categories = new TreeSet<>();
-            TreeSet<String> categorySet = new TreeSet<>();
-            Weblogger roller = WebloggerFactory.getWeblogger();
-            WeblogEntryManager weblogMgr = roller.getWeblogEntryManager();
-
-            WeblogEntry entry;
-            Document doc;
-            String handle;
-            Timestamp now = new Timestamp(new Date().getTime());
-            for (int i = offset; i < offset + limit; i++) {
-                doc = search.getSearcher().doc(hits[i].doc);
-                handle = doc.getField(FieldConstants.WEBSITE_HANDLE).stringValue();
-                entry = weblogMgr.getWeblogEntry(doc.getField(FieldConstants.ID).stringValue());
-
-                if (!(websiteSpecificSearch && handle.equals(weblogHandle))
-                    && doc.getField(FieldConstants.CATEGORY) != null) {
-                    categorySet.add(doc.getField(FieldConstants.CATEGORY).stringValue());
-                }
+            // read the page of hits from the index, their entries are loaded
+            // all at once rather than one query per hit
+            List<String> ids = new ArrayList<>(limit);
+            StoredFields storedFields = search.getSearcher().storedFields();
+            for (int i = start; i < start + limit; i++) {
+                Document doc = storedFields.document(hits[i].doc, ID_FIELD);
+                ids.add(doc.get(FieldConstants.ID));
+            }
 
-                // maybe null if search result returned inactive user
-                // or entry's user is not the requested user.
-                // but don't return future posts
-                if (entry != null && entry.getPubTime().before(now)) {
-                    results.add(WeblogEntryWrapper.wrap(entry, urlStrategy));
-                }
+            // categories of all the hits, when searching more than one weblog
+            Map<String, Map<String, Integer>> facets = search.getFacets();
+            Set<String> categorySet = new TreeSet<>();
+            if (!websiteSpecificSearch && facets.containsKey(FieldConstants.FACET_CATEGORY)) {
+                categorySet.addAll(facets.get(FieldConstants.FACET_CATEGORY).keySet());
             }
 
-            if (!categorySet.isEmpty()) {
-                categories = categorySet;
+            // the next page carries on after the last hit of this one, and
+            // the previous page before the first
+            String nextCursor = null;
+            String prevCursor = null;
+            if (limit > 0 && search.getTotalHits() > offset + limit) {
+                nextCursor = SearchOperation.getCursor(hits[start + limit - 1]);
+            }
+            if (limit > 0 && offset > 0) {
+                prevCursor = SearchOperation.getCursor(hits[start]);
+            }
+
+            // the comments which matched, of the entries on the page
+            Map<String, List<String>> matchingComments = new HashMap<>();
+            for (String id : ids) {
+                List<String> comments = search.getMatchingComments().get(id);
+                if (comments != null) {
+                    matchingComments.put(id, comments);
+                }
             }
 
-            return new SearchResultList(results, categories, limit, offset);
+            return new CachedSearchResult(ids, categorySet, facets, matchingComments,
+                    limit, offset, search.getTotalHits(), nextCursor, prevCursor,
+                    searchedGeneration);
 
         } catch (IOException e) {
             throw new WebloggerException(e);
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
+
+/**
+ * An operation that replaces the document of a single comment, leaving its
+ * entry and the entry's other comments alone.  The comment is removed from
+ * the index if it isn't approved or its entry isn't published.
+ */
+public class ReIndexCommentOperation extends WriteToIndexOperation {
+
+    // ~ Static fields/initializers
+    // =============================================
+
+    private static Log logger = LogFactory.getFactory().getInstance(
+            ReIndexCommentOperation.class);
+
+    // ~ Instance fields
+    // ========================================================
+
+    private final String id;
+    private final Document document;
+
+    // ~ Constructors
+    // ===========================================================
+
+    /**
+     * Re-index a comment.  The document is built right away, as a comment
+     * is small and its entry may be gone from the persistence session by
+     * the time the operation runs.
+     */
+    public ReIndexCommentOperation(LuceneIndexManager mgr, WeblogEntryComment comment) {
+        super(mgr);
+        this.id = comment.getId();
+
+        WeblogEntry entry = comment.getWeblogEntry();
+        if (isIndexComments() && ApprovalStatus.APPROVED.equals(comment.getStatus())
+                && entry != null && entry.isPublished()) {
+            this.document = getCommentDocument(entry, comment);
+        } else {
+            this.document = null;
+        }
+    }
+
+    // ~ Methods
+    // ================================================================
+
+    @Override
+    public void doRun() {
+        IndexWriter writer = beginWriting();
+        try {
+            if (writer != null) {
+                writer.deleteDocuments(new Term(FieldConstants.COMMENT_ID, id));
+                if (document != null) {
+                    writer.addDocument(document);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Problems adding/deleting comment doc to index", e);
+        } finally {
+            endWriting();
+        }
+    }
+}
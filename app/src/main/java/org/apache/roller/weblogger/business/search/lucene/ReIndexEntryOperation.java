@@ -70,9 +70,10 @@ public class ReIndexEntryOperation extends WriteToIndexOperation {
         // since this operation can be run on a separate thread we must treat
         // the weblog object passed in as a detached object which is prone to
         // lazy initialization problems, so requery for the object now
+        String id = this.data.getId();
         try {
             WeblogEntryManager wMgr = roller.getWeblogEntryManager();
-            this.data = wMgr.getWeblogEntry(this.data.getId());
+            this.data = wMgr.getWeblogEntry(id);
         } catch (WebloggerException ex) {
             logger.error("Error getting weblogentry object", ex);
             return;
@@ -82,12 +83,14 @@ public class ReIndexEntryOperation extends WriteToIndexOperation {
         try {
             if (writer != null) {
 
-                // Delete Doc
-                Term term = new Term(FieldConstants.ID, data.getId());
-                writer.deleteDocuments(term);
+                // Delete the entry's doc and those of its comments
+                writer.deleteDocuments(new Term(FieldConstants.ID, id),
+                        new Term(FieldConstants.ENTRY_ID, id));
 
-                // Add Doc
-                writer.addDocument(getDocument(data));
+                // Add Docs, unless the entry was removed while waiting
+                if (data != null) {
+                    writer.addDocuments(getDocuments(data));
+                }
             }
         } catch (IOException e) {
             logger.error("Problems adding/deleting doc to index", e);
@@ -31,16 +31,16 @@ public abstract class ReadFromIndexOperation extends IndexOperation {
     private static Log logger = LogFactory.getFactory().getInstance(
             ReadFromIndexOperation.class);
     
+    /**
+     * Reads don't take any lock, they see the index as it was when their
+     * searcher was acquired.
+     */
     @Override
     public final void run() {
         try {
-            manager.getReadWriteLock().readLock().lock();
             doRun();
-
         } catch (Exception e) {
-            logger.error("Error acquiring read lock on index", e);
-        } finally {
-            manager.getReadWriteLock().readLock().unlock();
+            logger.error("Error reading from index", e);
         }
     }
     
@@ -18,25 +18,50 @@
 /* Created on Jul 16, 2003 */
 package org.apache.roller.weblogger.business.search.lucene;
 
-import java.text.MessageFormat;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.business.Weblogger;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
-import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
 
 /**
  * An index operation that rebuilds a given users index (or all indexes).
+ *
+ * The documents are built into a side index which then replaces the old
+ * documents at once, so searches carry on while the index is rebuilt.
+ *
+ * Entries are read a chunk at a time, along with their comments, and the
+ * persistence context is released after each chunk so that rebuilding a
+ * large site doesn't hold every entry in memory.  The documents of a chunk
+ * are built on a pool of threads.
  * 
  * @author Mindaugas Idzelis (min@idzelis.com)
  */
@@ -94,49 +119,35 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
             logger.debug("Reindexining entire site");
         }
 
-        IndexWriter writer = beginWriting();
-
+        // build the new documents into a side index, so searches keep
+        // using the current index until the new one is complete
+        Path sidePath = null;
         try {
-            if (writer != null) {
+            sidePath = manager.createSideIndexPath();
+
+            try (Directory side = FSDirectory.open(sidePath)) {
+                IndexWriterConfig config = manager.newIndexWriterConfig();
+                config.setRAMBufferSizeMB(WebloggerConfig.getIntProperty(
+                        "search.index.rebuild.ramBufferMB", 64));
+
+                try (IndexWriter writer = new IndexWriter(side, config)) {
+                    int count = indexEntries(writer, start);
+                    logger.debug("Entries indexed: " + count);
+                }
 
-                // Delete Doc
+                // replace the documents of the website, or all of them
                 Term tWebsite = null;
                 if (website != null) {
                     tWebsite = IndexUtil.getTerm(FieldConstants.WEBSITE_HANDLE,
                             website.getHandle());
                 }
-                if (tWebsite != null) {
-                    writer.deleteDocuments(tWebsite);
-                } else {
-                    Term all = IndexUtil.getTerm(FieldConstants.CONSTANT,
-                            FieldConstants.CONSTANT_V);
-                    writer.deleteDocuments(all);
-                }
-
-                // Add Doc
-                WeblogEntryManager weblogManager = roller
-                        .getWeblogEntryManager();
-                WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
-                wesc.setWeblog(website);
-                wesc.setStatus(PubStatus.PUBLISHED);
-                List<WeblogEntry> entries = weblogManager.getWeblogEntries(wesc);
-
-                logger.debug("Entries to index: " + entries.size());
-
-                for (WeblogEntry entry : entries) {
-                    writer.addDocument(getDocument(entry));
-                    logger.debug(MessageFormat.format(
-                            "Indexed entry {0}: {1}",
-                            entry.getPubTime(), entry.getAnchor()));
-                }
-
-                // release the database connection
-                roller.release();
+                manager.swapIn(side, tWebsite);
             }
         } catch (Exception e) {
             logger.error("ERROR adding/deleting doc to index", e);
         } finally {
-            endWriting();
+            manager.rebuildDone(website);
+            deleteSideIndex(sidePath);
             if (roller != null) {
                 roller.release();
             }
@@ -153,4 +164,101 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
                     + website.getHandle() + "' in '" + length + "' seconds");
         }
     }
+
+    /**
+     * Add the documents of all published entries to the writer.
+     *
+     * @return number of entries indexed
+     */
+    private int indexEntries(IndexWriter writer, Date start) throws Exception {
+
+        int chunkSize = WebloggerConfig.getIntProperty("search.index.rebuild.chunkSize", 500);
+        int threads = WebloggerConfig.getIntProperty("search.index.rebuild.threads",
+                Runtime.getRuntime().availableProcessors());
+        boolean indexComments = isIndexComments();
+
+        WeblogEntryManager weblogManager = roller.getWeblogEntryManager();
+
+        // user names of creators which are enabled, looked up once per user
+        Map<String, Boolean> enabledUsers = new HashMap<>();
+
+        ExecutorService builders = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            int count = 0;
+            String lastId = null;
+            while (true) {
+                List<WeblogEntry> entries = weblogManager.getWeblogEntriesAfter(
+                        website, PubStatus.PUBLISHED, lastId, chunkSize);
+                if (entries.isEmpty()) {
+                    break;
+                }
+
+                Map<String, List<WeblogEntryComment>> comments = indexComments
+                        ? weblogManager.getComments(entries, ApprovalStatus.APPROVED)
+                        : Collections.emptyMap();
+
+                List<Future<?>> built = new ArrayList<>(entries.size());
+                for (WeblogEntry entry : entries) {
+                    String userName = entry.getCreatorUserName();
+                    boolean enabled = userName != null && enabledUsers.computeIfAbsent(
+                            userName, this::isUserEnabled);
+                    List<WeblogEntryComment> entryComments = indexComments
+                            ? comments.getOrDefault(entry.getId(), Collections.emptyList())
+                            : null;
+
+                    // load the tags here rather than on a builder thread
+                    entry.getTags().size();
+
+                    built.add(builders.submit(() -> {
+                        writer.addDocuments(getDocuments(entry, enabled ? userName : null, entryComments));
+                        return null;
+                    }));
+                }
+
+                // all of the chunk must be written before its entries are let go
+                for (Future<?> future : built) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        throw new IOException("Error indexing entry", e.getCause());
+                    }
+                }
+
+                count += entries.size();
+                lastId = entries.get(entries.size() - 1).getId();
+                manager.rebuildProgress(website, count, start);
+
+                // release the database connection and the chunk's entries
+                roller.release();
+            }
+            return count;
+
+        } finally {
+            builders.shutdownNow();
+        }
+    }
+
+    private boolean isUserEnabled(String userName) {
+        try {
+            User user = roller.getUserManager().getUserByUserName(userName);
+            return user != null;
+        } catch (WebloggerException e) {
+            logger.error("Error getting user " + userName, e);
+            return false;
+        }
+    }
+
+    private void deleteSideIndex(Path sidePath) {
+        if (sidePath == null) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(sidePath)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+            Files.delete(sidePath);
+        } catch (IOException e) {
+            logger.warn("Unable to delete side index " + sidePath, e);
+        }
+    }
 }
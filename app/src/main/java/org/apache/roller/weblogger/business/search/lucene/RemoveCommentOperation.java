@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+
+/**
+ * An operation that removes a single comment from the index.
+ */
+public class RemoveCommentOperation extends WriteToIndexOperation {
+
+    // ~ Static fields/initializers
+    // =============================================
+
+    private static Log logger = LogFactory.getFactory().getInstance(
+            RemoveCommentOperation.class);
+
+    // ~ Instance fields
+    // ========================================================
+
+    private final String id;
+
+    // ~ Constructors
+    // ===========================================================
+
+    public RemoveCommentOperation(LuceneIndexManager mgr, WeblogEntryComment comment) {
+        super(mgr);
+        this.id = comment.getId();
+    }
+
+    // ~ Methods
+    // ================================================================
+
+    @Override
+    public void doRun() {
+        IndexWriter writer = beginWriting();
+        try {
+            if (writer != null) {
+                writer.deleteDocuments(new Term(FieldConstants.COMMENT_ID, id));
+            }
+        } catch (IOException e) {
+            logger.error("Error deleting comment doc from index", e);
+        } finally {
+            endWriting();
+        }
+    }
+
+}
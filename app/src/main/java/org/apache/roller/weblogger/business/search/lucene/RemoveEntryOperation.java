@@ -67,9 +67,10 @@ public class RemoveEntryOperation extends WriteToIndexOperation {
         // since this operation can be run on a separate thread we must treat
         // the weblog object passed in as a detached object which is proned to
         // lazy initialization problems, so requery for the object now
+        String id = this.data.getId();
         try {
             WeblogEntryManager wMgr = roller.getWeblogEntryManager();
-            this.data = wMgr.getWeblogEntry(this.data.getId());
+            this.data = wMgr.getWeblogEntry(id);
         } catch (WebloggerException ex) {
             logger.error("Error getting weblogentry object", ex);
             return;
@@ -78,8 +79,9 @@ public class RemoveEntryOperation extends WriteToIndexOperation {
         IndexWriter writer = beginWriting();
         try {
             if (writer != null) {
-                Term term = new Term(FieldConstants.ID, data.getId());
-                writer.deleteDocuments(term);
+                // the entry's comments go along with it
+                writer.deleteDocuments(new Term(FieldConstants.ID, id),
+                        new Term(FieldConstants.ENTRY_ID, id));
             }
         } catch (IOException e) {
             logger.error("Error deleting doc from index", e);
@@ -19,22 +19,48 @@
 package org.apache.roller.weblogger.business.search.lucene;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsCollectorManager;
+import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.BytesRef;
 import org.apache.roller.weblogger.business.search.IndexManager;
+import org.apache.roller.weblogger.config.WebloggerConfig;
 
 /**
  * An operation that searches the index.
@@ -49,14 +75,42 @@ public class SearchOperation extends ReadFromIndexOperation {
     private static Log logger = LogFactory.getFactory().getInstance(
             SearchOperation.class);
 
-    private static final String[] SEARCH_FIELDS = new String[] {
+    static final String[] SEARCH_FIELDS = new String[] {
         FieldConstants.CONTENT,
         FieldConstants.TITLE,
         FieldConstants.C_CONTENT
     };
 
+    // hits published at the same time are kept in document order, so a
+    // page can be found from a cursor in either direction
     private static final Sort SORTER = new Sort(new SortField(
-            FieldConstants.PUBLISHED, SortField.Type.STRING, true));
+            FieldConstants.PUBLISHED, SortField.Type.LONG, true), SortField.FIELD_DOC);
+
+    private static final Sort REVERSE_SORTER = new Sort(new SortField(
+            FieldConstants.PUBLISHED, SortField.Type.LONG, false),
+            new SortField(null, SortField.Type.DOC, true));
+
+    private static final Query ENTRIES = new TermQuery(
+            new Term(FieldConstants.TYPE, FieldConstants.TYPE_ENTRY));
+
+    private static final Query COMMENTS = new TermQuery(
+            new Term(FieldConstants.TYPE, FieldConstants.TYPE_COMMENT));
+
+    // how many matching comments of each entry are kept
+    private static final int MAX_COMMENTS_PER_ENTRY = 5;
+
+    // how many of the best matching comments are looked at, which bounds
+    // how many entries can be found by their comments
+    static final int MAX_MATCHING_COMMENTS =
+            WebloggerConfig.getIntProperty("search.maxMatchingComments", 1000);
+
+    // how many of the most common values of each facet are counted
+    private static final int MAX_FACET_VALUES = 20;
+
+    // how far into the results a page may start, unless it is reached
+    // by following on from the page before
+    private static final int MAX_RESULTS =
+            WebloggerConfig.getIntProperty("search.maxResults", 500);
 
     // ~ Instance fields
     // ========================================================
@@ -64,11 +118,27 @@ public class SearchOperation extends ReadFromIndexOperation {
     private IndexSearcher searcher;
     private TopFieldDocs searchresults;
 
+    // the searcher is released by whichever of the search and the caller is
+    // done with it last, as a caller may give up on a slow search
+    private boolean released = false;
+    private volatile boolean finished = false;
+    private long totalHits = -1;
+
     private String term;
     private String weblogHandle;
     private String category;
     private String locale;
     private String parseError;
+    private int offset = 0;
+    private int count = MAX_RESULTS;
+    private FieldDoc after;
+    private FieldDoc before;
+    private boolean countTotalHits = false;
+    private boolean countFacets = false;
+    private Date publishedFrom;
+    private Date publishedTo;
+    private Map<String, Map<String, Integer>> facets = Collections.emptyMap();
+    private Map<String, List<String>> matchingComments = Collections.emptyMap();
 
     // ~ Constructors
     // ===========================================================
@@ -96,24 +166,56 @@ public class SearchOperation extends ReadFromIndexOperation {
      */
     @Override
     public void doRun() {
-        final int docLimit = 500;
         searchresults = null;
-        searcher = null;
+        totalHits = -1;
+        facets = Collections.emptyMap();
+        matchingComments = Collections.emptyMap();
+        finished = false;
 
         try {
-            IndexReader reader = manager.getSharedIndexReader();
-            searcher = new IndexSearcher(reader);
-
-            MultiFieldQueryParser multiParser = new MultiFieldQueryParser(
-                    SEARCH_FIELDS, LuceneIndexManager.getAnalyzer());
+            synchronized (this) {
+                if (released || Thread.currentThread().isInterrupted()) {
+                    logger.debug("Search given up on before it started");
+                    return;
+                }
+                searcher = manager.acquireSearcher();
+            }
 
-            // Make it an AND by default. Comment this out for an or (default)
-            multiParser.setDefaultOperator(MultiFieldQueryParser.Operator.AND);
+            // a cursor handed out before the index was rebuilt or merged
+            // may point past its end, the page is then found by offset
+            int maxDoc = searcher.getIndexReader().maxDoc();
+            if ((after != null && after.doc >= maxDoc)
+                    || (before != null && before.doc >= maxDoc)) {
+                logger.debug("Stale search cursor, paging by offset");
+                after = null;
+                before = null;
+            }
 
             // Create a query object out of our term
-            Query query = multiParser.parse(term);
-
+            Query parsed = manager.parseQuery(term);
             Term handleTerm = IndexUtil.getTerm(FieldConstants.WEBSITE_HANDLE, weblogHandle);
+
+            // comments are documents of their own, so entries are found by
+            // their own text or by that of any of their comments
+            Query query = parsed;
+            if (isIndexComments()) {
+                matchingComments = findComments(parsed, handleTerm);
+                if (!matchingComments.isEmpty()) {
+                    List<BytesRef> entryIds = new ArrayList<>(matchingComments.size());
+                    for (String entryId : matchingComments.keySet()) {
+                        entryIds.add(new BytesRef(entryId));
+                    }
+                    query = new BooleanQuery.Builder()
+                        .add(parsed, BooleanClause.Occur.SHOULD)
+                        .add(new TermInSetQuery(FieldConstants.ID, entryIds), BooleanClause.Occur.SHOULD)
+                        .build();
+                }
+            }
+            query = new BooleanQuery.Builder()
+                .add(query, BooleanClause.Occur.MUST)
+                .add(ENTRIES, BooleanClause.Occur.FILTER)
+                .build();
+
             if (handleTerm != null) {
                 query = new BooleanQuery.Builder()
                     .add(query, BooleanClause.Occur.MUST)
@@ -137,7 +239,59 @@ public class SearchOperation extends ReadFromIndexOperation {
                     .build();
             }
 
-            searchresults = searcher.search(query, docLimit, SORTER);
+            if (publishedFrom != null || publishedTo != null) {
+                query = new BooleanQuery.Builder()
+                    .add(query, BooleanClause.Occur.MUST)
+                    .add(LongPoint.newRangeQuery(FieldConstants.PUBLISHED,
+                            publishedFrom != null ? publishedFrom.getTime() : Long.MIN_VALUE,
+                            publishedTo != null ? publishedTo.getTime() : Long.MAX_VALUE),
+                        BooleanClause.Occur.FILTER)
+                    .build();
+            }
+
+            // carrying on from where the next or previous page ended costs
+            // the same however deep the page is, the page before a cursor is
+            // found by searching back from it in reverse order
+            FieldDoc cursor = before != null ? before : after;
+            Sort sort = before != null ? REVERSE_SORTER : SORTER;
+            int docLimit = cursor != null ? count
+                    : Math.max(1, Math.min(offset + count, MAX_RESULTS));
+
+            if (countFacets) {
+                // the facets are counted while the hits are collected, which
+                // visits every hit and so counts them exactly too
+                FacetsCollectorManager.FacetsResult result = cursor != null
+                        ? FacetsCollectorManager.searchAfter(searcher, cursor, query,
+                                docLimit, sort, false, new FacetsCollectorManager())
+                        : FacetsCollectorManager.search(searcher, query,
+                                docLimit, sort, false, new FacetsCollectorManager());
+                searchresults = (TopFieldDocs) result.topDocs();
+                totalHits = 0;
+                for (FacetsCollector.MatchingDocs matching : result.facetsCollector().getMatchingDocs()) {
+                    totalHits += matching.totalHits;
+                }
+                facets = countFacets(result.facetsCollector());
+
+            } else {
+                if (cursor != null) {
+                    searchresults = searcher.searchAfter(cursor, query, docLimit, sort, false);
+                } else {
+                    searchresults = searcher.search(query, docLimit, sort);
+                }
+
+                // hit counts are only exact up to a point unless they're counted
+                if (searchresults.totalHits.relation == TotalHits.Relation.EQUAL_TO) {
+                    totalHits = searchresults.totalHits.value;
+                } else if (countTotalHits) {
+                    totalHits = searcher.count(query);
+                } else {
+                    totalHits = searchresults.totalHits.value;
+                }
+            }
+
+            if (before != null) {
+                Collections.reverse(Arrays.asList(searchresults.scoreDocs));
+            }
 
         } catch (IOException e) {
             logger.error("Error searching index", e);
@@ -146,8 +300,110 @@ public class SearchOperation extends ReadFromIndexOperation {
         } catch (ParseException e) {
             // who cares?
             parseError = e.getMessage();
+
+        } finally {
+            // the searcher is otherwise released once the results have been read
+            synchronized (this) {
+                finished = true;
+                if (released) {
+                    releaseSearcher();
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the best matching comments, which are listed by the id of the
+     * entry they belong to in the order of their entry's best match.
+     */
+    private Map<String, List<String>> findComments(Query parsed, Term handleTerm)
+            throws IOException {
+        BooleanQuery.Builder comments = new BooleanQuery.Builder()
+            .add(parsed, BooleanClause.Occur.MUST)
+            .add(COMMENTS, BooleanClause.Occur.FILTER);
+        if (handleTerm != null) {
+            comments.add(new TermQuery(handleTerm), BooleanClause.Occur.FILTER);
+        }
+        ScoreDoc[] hits = searcher.search(comments.build(), MAX_MATCHING_COMMENTS).scoreDocs;
+
+        // the ids are read from doc values without loading the documents,
+        // which has to be done in document order
+        ScoreDoc[] inDocOrder = hits.clone();
+        Arrays.sort(inDocOrder, Comparator.comparingInt(hit -> hit.doc));
+        Map<ScoreDoc, String[]> ids = new HashMap<>();
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        LeafReaderContext leaf = null;
+        SortedDocValues entryIds = null;
+        SortedDocValues commentIds = null;
+        for (ScoreDoc hit : inDocOrder) {
+            if (leaf == null || hit.doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                leaf = leaves.get(ReaderUtil.subIndex(hit.doc, leaves));
+                entryIds = DocValues.getSorted(leaf.reader(), FieldConstants.ENTRY_ID);
+                commentIds = DocValues.getSorted(leaf.reader(), FieldConstants.COMMENT_ID);
+            }
+            int doc = hit.doc - leaf.docBase;
+            if (entryIds.advanceExact(doc) && commentIds.advanceExact(doc)) {
+                ids.put(hit, new String[] {
+                    entryIds.lookupOrd(entryIds.ordValue()).utf8ToString(),
+                    commentIds.lookupOrd(commentIds.ordValue()).utf8ToString()
+                });
+            }
+        }
+
+        Map<String, List<String>> byEntry = new LinkedHashMap<>();
+        for (ScoreDoc hit : hits) {
+            String[] entryAndComment = ids.get(hit);
+            if (entryAndComment == null) {
+                continue;
+            }
+            List<String> matching = byEntry.computeIfAbsent(entryAndComment[0],
+                    k -> new ArrayList<>());
+            if (matching.size() < MAX_COMMENTS_PER_ENTRY) {
+                matching.add(entryAndComment[1]);
+            }
+        }
+        return byEntry;
+    }
+
+    /**
+     * Count the most common values of each facet among the hits.
+     */
+    private Map<String, Map<String, Integer>> countFacets(FacetsCollector collector)
+            throws IOException {
+        SortedSetDocValuesReaderState state = manager.getFacetState(searcher);
+        if (state == null) {
+            return Collections.emptyMap();
+        }
+        SortedSetDocValuesFacetCounts counts = new SortedSetDocValuesFacetCounts(state, collector);
+
+        Map<String, Map<String, Integer>> counted = new LinkedHashMap<>();
+        for (FacetResult result : counts.getAllDims(MAX_FACET_VALUES)) {
+            Map<String, Integer> values = new LinkedHashMap<>();
+            for (LabelAndValue value : result.labelValues) {
+                values.put(value.label, value.value.intValue());
+            }
+            counted.put(result.dim, values);
+        }
+        return counted;
+    }
+
+    /**
+     * Hand the searcher back to the index manager, after which the results
+     * can no longer be read.  If the search is still running, it releases
+     * the searcher itself when it is done.
+     */
+    public synchronized void release() {
+        released = true;
+        if (finished) {
+            releaseSearcher();
+        }
+    }
+
+    private void releaseSearcher() {
+        if (searcher != null) {
+            manager.releaseSearcher(searcher);
+            searcher = null;
         }
-        // don't need to close the reader, since we didn't do any writing!
     }
 
     /**
@@ -181,15 +437,172 @@ public class SearchOperation extends ReadFromIndexOperation {
     /**
      * Gets the results count.
      * 
-     * @return the results count
+     * @return the results count, or -1 if the search failed or hasn't
+     *         finished
      */
     public int getResultsCount() {
-        if (searchresults == null) {
+        if (!finished || searchresults == null) {
             return -1;
         }
         return (int) searchresults.totalHits.value;
     }
 
+    /**
+     * Gets the total number of documents matching the search, which is
+     * exact if counting total hits was asked for.
+     *
+     * @return the total hits, or -1 if the search failed
+     */
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * Index of the first hit of the requested page within the results.
+     */
+    public int getPageStart() {
+        if (isFromCursor()) {
+            return 0;
+        }
+        return offset;
+    }
+
+    /**
+     * Sets which page of results to search for.
+     *
+     * @param offset
+     *            number of results before the page, ignored when
+     *            carrying on from a given result
+     * @param count
+     *            number of results on the page
+     */
+    public void setPage(int offset, int count) {
+        this.offset = Math.max(0, offset);
+        this.count = Math.max(1, count);
+    }
+
+    /**
+     * Search for the results after the given one.
+     *
+     * @param cursor
+     *            as returned by getCursor, ignored if it isn't valid
+     */
+    public void setAfter(String cursor) {
+        this.after = fromCursor(cursor);
+    }
+
+    /**
+     * Search for the results before the given one, in the same order as
+     * any other page.
+     *
+     * @param cursor
+     *            as returned by getCursor, ignored if it isn't valid
+     */
+    public void setBefore(String cursor) {
+        this.before = fromCursor(cursor);
+    }
+
+    /**
+     * Whether the search carries on after or before a given result.
+     */
+    public boolean isFromCursor() {
+        return after != null || before != null;
+    }
+
+    /**
+     * Sets whether to count all hits, even if there are many.
+     */
+    public void setCountTotalHits(boolean countTotalHits) {
+        this.countTotalHits = countTotalHits;
+    }
+
+    /**
+     * Sets whether to count the values of the facets among all hits, which
+     * also counts the hits exactly.
+     */
+    public void setCountFacets(boolean countFacets) {
+        this.countFacets = countFacets;
+    }
+
+    /**
+     * Gets the most common values of each facet among the hits, keyed by
+     * facet and then by value, if counting them was asked for.
+     *
+     * @return hits per value, most common first
+     */
+    public Map<String, Map<String, Integer>> getFacets() {
+        return facets;
+    }
+
+    /**
+     * Gets the ids of the comments whose text matched the search, keyed by
+     * the id of their entry, whether or not the entry is among the hits.
+     *
+     * @return ids of the best few matching comments of each entry
+     */
+    public Map<String, List<String>> getMatchingComments() {
+        return matchingComments;
+    }
+
+    /**
+     * Only search entries published within the given dates.
+     *
+     * @param from
+     *            earliest publishing time, or null for no limit
+     * @param to
+     *            latest publishing time, or null for no limit
+     */
+    public void setPublishedRange(Date from, Date to) {
+        this.publishedFrom = from;
+        this.publishedTo = to;
+    }
+
+    /**
+     * Gets a cursor from which a search can carry on after or before the
+     * given hit.
+     *
+     * @param hit
+     *            one of the results of this operation
+     * @return the cursor, safe to use in urls
+     */
+    public static String getCursor(ScoreDoc hit) {
+        StringBuilder cursor = new StringBuilder().append(hit.doc);
+        if (hit instanceof FieldDoc) {
+            Object value = ((FieldDoc) hit).fields[0];
+            if (value instanceof Long) {
+                cursor.append(' ').append(value);
+            }
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                cursor.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static FieldDoc fromCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor),
+                    StandardCharsets.UTF_8);
+            int space = decoded.indexOf(' ');
+            if (space < 0) {
+                logger.debug("Invalid search cursor: " + cursor);
+                return null;
+            }
+            int doc = Integer.parseInt(decoded.substring(0, space));
+            if (doc < 0) {
+                logger.debug("Invalid search cursor: " + cursor);
+                return null;
+            }
+            return new FieldDoc(doc, Float.NaN,
+                    new Object[] { Long.valueOf(decoded.substring(space + 1)), doc });
+        } catch (IllegalArgumentException e) {
+            // ignored, bad input
+            logger.debug("Invalid search cursor: " + cursor);
+            return null;
+        }
+    }
+
     /**
      * Gets the parses the error.
      *
@@ -37,7 +37,7 @@ public abstract class WriteToIndexOperation extends IndexOperation {
     @Override
     public void run() {
         try {
-            manager.getReadWriteLock().writeLock().lock();
+            manager.getWriteLock().lock();
             logger.debug("Starting search index operation");
             doRun();
             logger.debug("Search index operation complete");
@@ -46,8 +46,8 @@ public abstract class WriteToIndexOperation extends IndexOperation {
             logger.error("Error acquiring write lock on index", e);
             
         } finally {
-            manager.getReadWriteLock().writeLock().unlock();
+            manager.getWriteLock().unlock();
         }
-        manager.resetSharedReader();
+        manager.refreshSearcher();
     }
 }
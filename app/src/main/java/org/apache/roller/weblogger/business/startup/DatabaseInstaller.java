@@ -48,6 +48,9 @@ public class DatabaseInstaller {
     // the name of the property which holds the dbversion value
     private static final String DBVERSION_PROP = "roller.database.version";
 
+    // table of running counts, which 6.1.5 databases may be without
+    private static final String COUNTER_TABLE = "roller_counter";
+
 
     public DatabaseInstaller(DatabaseProvider dbProvider, DatabaseScriptProvider scriptProvider) {
         db = dbProvider;
@@ -124,7 +127,28 @@ public class DatabaseInstaller {
 
             return false;
         } else {
-            return databaseVersion < desiredVersion;
+            return databaseVersion < desiredVersion || isCounterTableMissing();
+        }
+    }
+
+
+    /**
+     * Databases made by Roller 6.1.5 before it kept running counts are at
+     * the current version, but have no table for the counts.
+     */
+    private boolean isCounterTableMissing() {
+        Connection con = null;
+        try {
+            con = db.getConnection();
+            return !tableExists(con, COUNTER_TABLE);
+        } catch (Exception e) {
+            throw new RuntimeException("Error checking for tables", e);
+        } finally {
+            try {
+                if (con != null) {
+                    con.close();
+                }
+            } catch (Exception ignored) {}
         }
     }
 
@@ -219,7 +243,7 @@ public class DatabaseInstaller {
                         "try first upgrading to an earlier version of Roller.";
                 errorMessage(msg);
                 throw new StartupException(msg);
-            } else if(dbversion >= myVersion) {
+            } else if(dbversion >= myVersion && tableExists(con, COUNTER_TABLE)) {
                 log.info("Database is current, no upgrade needed");
                 return;
             }
@@ -250,6 +274,10 @@ public class DatabaseInstaller {
                 upgradeTo610(con, runScripts);
                 dbversion = 610;
             }
+            if(dbversion < 615 || !tableExists(con, COUNTER_TABLE)) {
+                upgradeTo615(con, runScripts);
+                dbversion = 615;
+            }
 
             // make sure the database version is the exact version
             // we are upgrading too.
@@ -736,6 +764,22 @@ public class DatabaseInstaller {
     private void upgradeTo610(Connection con, boolean runScripts) throws StartupException {
         simpleUpgrade(con, 520, 610, runScripts);
     }
+
+    /**
+     * Upgrade database to Roller 6.1.5
+     */
+    private void upgradeTo615(Connection con, boolean runScripts) throws StartupException {
+        simpleUpgrade(con, 610, 615, runScripts);
+
+        try {
+            if (!runScripts && !tableExists(con, COUNTER_TABLE)) {
+                errorMessage("Table " + COUNTER_TABLE + " is missing, "
+                        + "run the 610-to-615 migration script to create it");
+            }
+        } catch (SQLException e) {
+            throw new StartupException("Problem upgrading database to version 615", e);
+        }
+    }
     
     /**
      * Simple upgrade using single SQL migration script.
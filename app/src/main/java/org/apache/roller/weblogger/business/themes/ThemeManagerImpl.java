@@ -55,6 +55,7 @@ import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogTemplate;
 import org.apache.roller.weblogger.pojos.WeblogTheme;
 import org.apache.roller.weblogger.util.RollerMessages;
+import org.apache.roller.weblogger.util.cache.CacheManager;
 
 /**
  * Base implementation of a ThemeManager.
@@ -426,6 +427,9 @@ public class ThemeManagerImpl implements ThemeManager {
                 themes.remove(theme.getId());
                 themes.put(theme.getId(), theme);
                 reloaded = true;
+
+                // drop anything compiled from the old copy of the theme
+                CacheManager.invalidate(theme);
             }
 
 		} catch (Exception unexpected) {
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.pojos;
+
+import java.io.Serializable;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+
+/**
+ * A running count of something which would otherwise be counted with a
+ * query, such as the published entries of a weblog, kept up to date as
+ * things are added and removed.
+ */
+public class Counter implements Serializable {
+    
+    public static final long serialVersionUID = 3176408391652104923L;
+    
+    private String name;
+    private long total = 0;
+    
+    
+    public Counter() {}
+    
+    
+    public Counter(String name, long total) {
+        this.name = name;
+        this.total = total;
+    }
+    
+    
+    public String getName() {
+        return this.name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    
+    public long getTotal() {
+        return this.total;
+    }
+    
+    public void setTotal(long total) {
+        this.total = total;
+    }
+    
+    //------------------------------------------------------- Good citizenship
+    
+    @Override
+    public String toString() {
+        return (getName() + "=" + getTotal());
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) {
+            return true;
+        }
+        if (!(other instanceof Counter)) {
+            return false;
+        }
+        Counter o = (Counter)other;
+        return new EqualsBuilder()
+        .append(getName(), o.getName())
+        .isEquals();
+    }
+    
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder()
+        .append(getName())
+        .toHashCode();
+    }
+    
+}
@@ -46,6 +46,7 @@ import org.apache.roller.weblogger.ui.core.plugins.UIPluginManager;
 import org.apache.roller.weblogger.ui.core.plugins.UIPluginManagerImpl;
 import org.apache.roller.weblogger.ui.core.security.AutoProvision;
 import org.apache.roller.weblogger.util.Reflection;
+import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogCacheSnapshot;
 import org.apache.roller.weblogger.util.cache.CacheManager;
 import org.apache.velocity.runtime.RuntimeSingleton;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
@@ -208,6 +209,9 @@ public class RollerContext extends ContextLoaderListener
         } catch (WebloggerException ex) {
             log.fatal("Error initializing Roller Weblogger web tier", ex);
         }
+
+        // refill the rendering caches before we take any requests
+        WeblogCacheSnapshot.restore();
     }
 
 
@@ -216,6 +220,7 @@ public class RollerContext extends ContextLoaderListener
      */
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
+        WeblogCacheSnapshot.save();
         WebloggerFactory.getWeblogger().shutdown();
         // do we need a more generic mechanism for presentation layer shutdown?
         CacheManager.shutdown();
@@ -121,9 +121,11 @@ public class SearchResultsFeedModel implements Model {
 				feedRequest.getLocale(),
 				feedRequest.getPage(),
 				entryCount,
+				null,
+				null,
 				urlStrategy
 			);
-			this.hits = searchResult.getResults().size();
+			this.hits = (int) searchResult.getTotalHits();
 			this.offset = searchResult.getOffset();
 			this.limit = searchResult.getLimit();
 			this.results = searchResult.getResults();
@@ -21,6 +21,7 @@ package org.apache.roller.weblogger.ui.rendering.model;
 import java.sql.Timestamp;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -61,7 +62,11 @@ public class SearchResultsModel extends PageModel {
 	private int hits = 0;
 	private int offset = 0;
 	private int limit = 0;
+	private String nextCursor = null;
+	private String prevCursor = null;
 	private Set<String> categories = new TreeSet<String>();
+	private Map<String, Map<String, Integer>> facets = Collections.emptyMap();
+	private Map<String, List<String>> matchingComments = Collections.emptyMap();
 	private String errorMessage = "";
 
 	@Override
@@ -84,7 +89,7 @@ public class SearchResultsModel extends PageModel {
 
 		// if there is no query, then we are done
 		if (searchRequest.getQuery() == null) {
-			pager = new SearchResultsPager(urlStrategy, searchRequest, results, false);
+			pager = new SearchResultsPager(urlStrategy, searchRequest, results, false, null, null);
 			return;
 		}
 
@@ -98,12 +103,18 @@ public class SearchResultsModel extends PageModel {
 				searchRequest.getLocale(),
 				searchRequest.getPageNum(),
 				RESULTS_PER_PAGE,
+				searchRequest.getAfter(),
+				searchRequest.getBefore(),
 				urlStrategy
 			);
-			hits = searchResultList.getResults().size();
+			hits = (int) searchResultList.getTotalHits();
+			nextCursor = searchResultList.getNextCursor();
+			prevCursor = searchResultList.getPrevCursor();
 			offset = searchResultList.getOffset();
 			limit = searchResultList.getLimit();
 			categories = searchResultList.getCategories();
+			facets = searchResultList.getFacets();
+			matchingComments = searchResultList.getMatchingComments();
 
 			Timestamp now = new Timestamp(new Date().getTime());
 			for (WeblogEntryWrapper entry : searchResultList.getResults()) {
@@ -118,7 +129,7 @@ public class SearchResultsModel extends PageModel {
 
 		// search completed, setup pager based on results
 		pager = new SearchResultsPager(
-			urlStrategy, searchRequest, results, (hits > (offset + limit)));
+			urlStrategy, searchRequest, results, (hits > (offset + limit)), nextCursor, prevCursor);
 	}
 
 	private void addEntryToResults(
@@ -190,6 +201,16 @@ public class SearchResultsModel extends PageModel {
 		return categories;
 	}
 
+	/** Hits per category, tag and weblog handle, keyed by "category", "tag" and "handle" */
+	public Map<String, Map<String, Integer>> getFacets() {
+		return facets;
+	}
+
+	/** Ids of the comments which matched the search, keyed by the id of their entry */
+	public Map<String, List<String>> getMatchingComments() {
+		return matchingComments;
+	}
+
 	public String getErrorMessage() {
 		return errorMessage;
 	}
@@ -54,6 +54,7 @@ import org.apache.roller.weblogger.ui.rendering.pagers.WeblogsPager;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogRequest;
+import org.apache.roller.weblogger.ui.rendering.util.cache.CacheDependencies;
 
 
 /**
@@ -71,6 +72,7 @@ public class SiteModel implements Model {
     private int pageNum = 0;
     
     private URLStrategy urlStrategy = null;
+    private CacheDependencies dependencies = null;
     
     
     @Override
@@ -104,6 +106,12 @@ public class SiteModel implements Model {
             urlStrategy = WebloggerFactory.getWeblogger().getUrlStrategy();
         }
         
+        // record what we render from when the result is going to be cached
+        dependencies = (CacheDependencies) initData.get("cacheDependencies");
+        if(dependencies == null) {
+            dependencies = new CacheDependencies();
+        }
+        
         // extract weblog object
         weblog = weblogRequest.getWeblog();
     }
@@ -130,6 +138,8 @@ public class SiteModel implements Model {
                 null, null, null, tags, 0, false);
         }
         
+        dependencies.addEntries(tags);
+        
         return new WeblogEntriesListPager(
             urlStrategy,
             pagerUrl, null, null, null,
@@ -187,6 +197,8 @@ public class SiteModel implements Model {
                 null, null, null, tags, 0, false);
         }
        
+        dependencies.addCategory(queryWeblog.getHandle(), cat);
+        
         return new WeblogEntriesListPager(
             urlStrategy,
             pagerUrl, queryWeblog.getPojo(), user, cat,
@@ -218,6 +230,8 @@ public class SiteModel implements Model {
                 null, null, null, null, 0, false);
         }
         
+        dependencies.addComments();
+        
         return new CommentsPager(
             urlStrategy,
             pagerUrl,
@@ -246,6 +260,8 @@ public class SiteModel implements Model {
             letter = null;
         }
         
+        dependencies.addUsers();
+        
         return new UsersPager(
             urlStrategy,
             pagerUrl,
@@ -268,6 +284,8 @@ public class SiteModel implements Model {
             letter = null;
         }
         
+        dependencies.addWeblogs();
+        
         return new WeblogsPager(
             urlStrategy,
             pagerUrl,
@@ -286,6 +304,7 @@ public class SiteModel implements Model {
      * names start with each letter.
      */
     public Map<String, Long> getUserNameLetterMap() {
+        dependencies.addUsers();
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
             UserManager umgr = roller.getUserManager();
@@ -303,6 +322,7 @@ public class SiteModel implements Model {
      * names start with each letter.
      */
     public Map<String, Long> getWeblogHandleLetterMap() {
+        dependencies.addWeblogs();
         try {
             return WebloggerFactory.getWeblogger().getWeblogManager().getWeblogHandleLetterMap();
         } catch (Exception e) {
@@ -316,6 +336,7 @@ public class SiteModel implements Model {
      * Return list of weblogs that user belongs to.
      */
     public List<WeblogWrapper> getUsersWeblogs(String userName) {
+        dependencies.addWeblogs();
         List<WeblogWrapper> results = new ArrayList<>();
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -336,6 +357,8 @@ public class SiteModel implements Model {
      * Return list of users that belong to website.
      */
     public List<UserWrapper> getWeblogsUsers(String handle) {
+        dependencies.addUsers();
+        dependencies.addWeblog(handle);
         List<UserWrapper> results = new ArrayList<>();
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -355,6 +378,7 @@ public class SiteModel implements Model {
     
     /** Get User object by username */
     public UserWrapper getUser(String username) {
+        dependencies.addUsers();
         UserWrapper wrappedUser = null;
         try {            
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -370,6 +394,7 @@ public class SiteModel implements Model {
     
     /** Get Website object by handle */
     public WeblogWrapper getWeblog(String handle) {
+        dependencies.addWeblog(handle);
         WeblogWrapper wrappedWebsite = null;
         try {            
             Weblog website = WebloggerFactory.getWeblogger().getWeblogManager().getWeblogByHandle(handle);
@@ -390,6 +415,7 @@ public class SiteModel implements Model {
      * @param len      Max number of results to return
      */
     public List<WeblogWrapper> getNewWeblogs(int sinceDays, int length) {
+        dependencies.addWeblogs();
         List<WeblogWrapper> results = new ArrayList<>();
         Date startDate = JPAWeblogEntryManagerImpl.getStartDateNow(sinceDays);
         try {            
@@ -411,6 +437,7 @@ public class SiteModel implements Model {
      * @param len      Max number of results to return
      */
     public List<UserWrapper> getNewUsers(int sinceDays, int length) {
+        dependencies.addUsers();
         List<UserWrapper> results = new ArrayList<>();
         try {            
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -432,6 +459,7 @@ public class SiteModel implements Model {
      * @param length      Max number of results to return
      */
     public List<StatCount> getHotWeblogs(int sinceDays, int length) {
+        dependencies.addWeblogs();
         
         List<StatCount> results = new ArrayList<>();
         try {
@@ -464,6 +492,7 @@ public class SiteModel implements Model {
      * @param length   Max number of results to return
      */
     public List<StatCount> getMostCommentedWeblogs(int sinceDays , int length) {
+        dependencies.addComments();
         Date startDate = JPAWeblogEntryManagerImpl.getStartDateNow(sinceDays);
         try {
             return WebloggerFactory.getWeblogger().getWeblogManager().getMostCommentedWeblogs(
@@ -483,6 +512,7 @@ public class SiteModel implements Model {
      * @param length      Max number of results to return
      */
     public List<StatCount> getMostCommentedWeblogEntries(List<String> cats, int sinceDays, int length) {
+        dependencies.addComments();
         Date startDate = JPAWeblogEntryManagerImpl.getStartDateNow(sinceDays);
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -500,6 +530,7 @@ public class SiteModel implements Model {
      * @param length    Max number of results to return
      */
     public List<WeblogEntryWrapper> getPinnedWeblogEntries(int length) {
+        dependencies.addEntries(null);
         List<WeblogEntryWrapper> results = new ArrayList<>();
         try {            
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -521,6 +552,7 @@ public class SiteModel implements Model {
      * @return
      */
     public List<TagStat> getPopularTags(int sinceDays, int length) {
+        dependencies.addEntries(null);
         Date startDate = null;
         if(sinceDays > 0) {
             Calendar cal = Calendar.getInstance();
@@ -541,6 +573,7 @@ public class SiteModel implements Model {
     
     
     public long getCommentCount() {
+        dependencies.addComments();
         long count = 0;
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -554,6 +587,7 @@ public class SiteModel implements Model {
     
     
     public long getEntryCount() {
+        dependencies.addEntries(null);
         long count = 0;
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -567,6 +601,7 @@ public class SiteModel implements Model {
     
     
     public long getWeblogCount() {
+        dependencies.addWeblogs();
         long count = 0;
         try {
             count = WebloggerFactory.getWeblogger().getWeblogManager().getWeblogCount();            
@@ -578,6 +613,7 @@ public class SiteModel implements Model {
     
     
     public long getUserCount() {
+        dependencies.addUsers();
         long count = 0;
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -47,8 +47,16 @@ public class SearchResultsPager implements WeblogEntriesPager {
     private final String category;
     private final int page;
     private final boolean moreResults;
+    private final String nextCursor;
+    private final String prevCursor;
     
-    public SearchResultsPager(URLStrategy strat, WeblogSearchRequest searchRequest, Map<Date, Set<WeblogEntryWrapper>> entries, boolean more) {
+    /**
+     * @param nextCursor where the next page carries on from, so it doesn't
+     *        have to search through every result before it
+     * @param prevCursor where the previous page goes back from, as pages
+     *        deep enough to need a cursor can't be found without one
+     */
+    public SearchResultsPager(URLStrategy strat, WeblogSearchRequest searchRequest, Map<Date, Set<WeblogEntryWrapper>> entries, boolean more, String nextCursor, String prevCursor) {
         
         // url strategy for building urls
         this.urlStrategy = strat;
@@ -65,6 +73,8 @@ public class SearchResultsPager implements WeblogEntriesPager {
         
         // does this pager have more results?
         this.moreResults = more;
+        this.nextCursor = nextCursor;
+        this.prevCursor = prevCursor;
         
         // get a message utils instance to handle i18n of messages
         Locale viewLocale = null;
@@ -102,7 +112,11 @@ public class SearchResultsPager implements WeblogEntriesPager {
     @Override
     public String getNextLink() {
         if(moreResults) {
-            return urlStrategy.getWeblogSearchURL(weblog, locale, query, category, page + 1, false);
+            String url = urlStrategy.getWeblogSearchURL(weblog, locale, query, category, page + 1, false);
+            if (nextCursor != null && url != null) {
+                url += (url.contains("?") ? "&" : "?") + "after=" + nextCursor;
+            }
+            return url;
         }
         return null;
     }
@@ -118,7 +132,11 @@ public class SearchResultsPager implements WeblogEntriesPager {
     @Override
     public String getPrevLink() {
         if(page > 0) {
-            return urlStrategy.getWeblogSearchURL(weblog, locale, query, category, page - 1, false);
+            String url = urlStrategy.getWeblogSearchURL(weblog, locale, query, category, page - 1, false);
+            if (prevCursor != null && url != null) {
+                url += (url.contains("?") ? "&" : "?") + "before=" + prevCursor;
+            }
+            return url;
         }
         return null;
     }
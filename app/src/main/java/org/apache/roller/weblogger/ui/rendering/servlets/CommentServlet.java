@@ -37,7 +37,6 @@ import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
-import org.apache.roller.weblogger.business.search.IndexManager;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
@@ -375,21 +374,9 @@ public class CommentServlet extends HttpServlet {
                     MailUtil.sendEmailNotification(comment, messages,
                             messageUtils, notifySubscribers);
 
-                    // only re-index/invalidate the cache if comment isn't
-                    // moderated
+                    // only invalidate the cache if comment isn't moderated,
+                    // saving the comment has already indexed it
                     if (!weblog.getCommentModerationRequired()) {
-                        IndexManager manager = WebloggerFactory.getWeblogger()
-                                .getIndexManager();
-
-                        // remove entry before (re)adding it, or in case it
-                        // isn't Published
-                        manager.removeEntryIndexOperation(entry);
-
-                        // if published, index the entry
-                        if (entry.isPublished()) {
-                            manager.addEntryIndexOperation(entry);
-                        }
-
                         // Clear all caches associated with comment
                         CacheManager.invalidate(comment);
                     }
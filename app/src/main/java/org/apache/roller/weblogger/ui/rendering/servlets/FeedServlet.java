@@ -21,6 +21,7 @@ package org.apache.roller.weblogger.ui.rendering.servlets;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -40,13 +41,16 @@ import org.apache.roller.weblogger.pojos.TemplateRendition.TemplateLanguage;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
 import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.apache.roller.weblogger.util.cache.SingleFlight;
 import org.apache.roller.weblogger.ui.rendering.Renderer;
 import org.apache.roller.weblogger.ui.rendering.RendererManager;
 import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository;
 import org.apache.roller.weblogger.ui.rendering.model.ModelLoader;
 import org.apache.roller.weblogger.ui.rendering.model.SearchResultsFeedModel;
+import org.apache.roller.weblogger.ui.rendering.util.cache.CacheDependencies;
 import org.apache.roller.weblogger.ui.rendering.util.cache.SiteWideCache;
 import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogFeedCache;
+import org.apache.roller.weblogger.ui.rendering.util.ContentEncodingUtil;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
 
 
@@ -60,6 +64,14 @@ public class FeedServlet extends HttpServlet {
     private WeblogFeedCache weblogFeedCache = null;
     private SiteWideCache siteWideCache = null;
 
+    // for coalescing concurrent renders of the same feed
+    private final SingleFlight<CachedContent> renderFlights = new SingleFlight<>();
+    private int renderWaitTimeout = 0;
+    private boolean serveStale = false;
+
+    // smallest feed we keep a compressed copy of, -1 to never compress
+    private int compressionMinSize = -1;
+
 
     /**
      * Init method for this servlet
@@ -76,6 +88,12 @@ public class FeedServlet extends HttpServlet {
 
         // get a reference to the site wide cache
         this.siteWideCache = siteWideCache();
+
+        this.renderWaitTimeout = WebloggerConfig.getIntProperty("cache.singleFlight.timeout", 0);
+        this.serveStale = WebloggerConfig.getBooleanProperty("cache.singleFlight.serveStale");
+        if (WebloggerConfig.getBooleanProperty("cache.compression.enabled")) {
+            this.compressionMinSize = WebloggerConfig.getIntProperty("cache.compression.minSize", 0);
+        }
     }
 
     protected WeblogFeedCache weblogFeedCache() {
@@ -96,7 +114,6 @@ public class FeedServlet extends HttpServlet {
 
         log.debug("Entering");
 
-        var roller = WebloggerFactory.getWeblogger();
         Weblog weblog;
         boolean isSiteWide;
 
@@ -167,25 +184,86 @@ public class FeedServlet extends HttpServlet {
         }
 
         // cached content checking
-        CachedContent cachedContent;
-        if (isSiteWide) {
-            cachedContent = (CachedContent) siteWideCache.get(cacheKey);
-        } else {
-            cachedContent = (CachedContent) weblogFeedCache.get(cacheKey,
-                    lastModified);
-        }
-
+        CachedContent cachedContent = getCachedContent(cacheKey, lastModified, isSiteWide);
         if (cachedContent != null) {
             log.debug("HIT " + cacheKey);
 
-            response.setContentLength(cachedContent.getContent().length);
-            response.getOutputStream().write(cachedContent.getContent());
+            ContentEncodingUtil.sendContent(request, response, cachedContent);
             return;
 
         } else {
             log.debug("MISS " + cacheKey);
         }
 
+        // only one request renders a given feed at a time, the others wait
+        // for its result or get the expired copy meanwhile
+        SingleFlight.Flight<CachedContent> flight = null;
+        if (this.renderWaitTimeout > 0) {
+            flight = renderFlights.join(cacheKey);
+            if (flight.isLeader()) {
+                // the previous flight may have landed since we missed
+                cachedContent = getCachedContent(cacheKey, lastModified, isSiteWide);
+                if (cachedContent != null) {
+                    flight.complete(cachedContent);
+                    log.debug("HIT " + cacheKey);
+
+                    ContentEncodingUtil.sendContent(request, response, cachedContent);
+                    return;
+                }
+            } else {
+                if (this.serveStale) {
+                    cachedContent = (CachedContent) (isSiteWide
+                            ? siteWideCache.getStale(cacheKey)
+                            : weblogFeedCache.getStale(cacheKey));
+                }
+                if (cachedContent == null) {
+                    cachedContent = flight.await(this.renderWaitTimeout, TimeUnit.SECONDS);
+                }
+                if (cachedContent != null) {
+                    log.debug("COALESCED " + cacheKey);
+
+                    ContentEncodingUtil.sendContent(request, response, cachedContent);
+                    return;
+                }
+            }
+        }
+
+        try {
+            renderFeed(request, response, feedRequest, weblog, isSiteWide, cacheKey, flight);
+        } finally {
+            // in case rendering failed before the flight was completed
+            if (flight != null) {
+                flight.complete(null);
+            }
+        }
+
+        log.debug("Exiting");
+    }
+
+
+    /**
+     * Look up fresh content in the cache.
+     */
+    private CachedContent getCachedContent(String cacheKey, long lastModified, boolean isSiteWide) {
+        if (isSiteWide) {
+            return (CachedContent) siteWideCache.get(cacheKey);
+        }
+        return (CachedContent) weblogFeedCache.get(cacheKey, lastModified);
+    }
+
+
+    /**
+     * Render the requested feed, cache it and send it.
+     *
+     * The flight, if any, is completed as soon as the content is cached so
+     * that waiting requests don't depend on how fast this client reads.
+     */
+    private void renderFeed(HttpServletRequest request, HttpServletResponse response,
+            WeblogFeedRequest feedRequest, Weblog weblog, boolean isSiteWide,
+            String cacheKey, SingleFlight.Flight<CachedContent> flight) throws IOException {
+
+        var roller = WebloggerFactory.getWeblogger();
+
         // validation. make sure that request input makes sense.
         boolean invalid = false;
         if (feedRequest.getLocale() != null
@@ -226,6 +304,7 @@ public class FeedServlet extends HttpServlet {
 
         // looks like we need to render content
         HashMap<String, Object> model = new HashMap<>();
+        CacheDependencies dependencies = null;
         String pageId;
         try {
             // determine what template to render with
@@ -255,6 +334,13 @@ public class FeedServlet extends HttpServlet {
             // define url strategy
             initData.put("urlStrategy", roller.getUrlStrategy());
 
+            // site-wide feeds record what they are rendered from
+            if (siteWide) {
+                dependencies = new CacheDependencies();
+                dependencies.addWeblog(weblog.getHandle());
+                initData.put("cacheDependencies", dependencies);
+            }
+
             // Load models for feeds
             String feedModels = WebloggerConfig
                     .getProperty("rendering.feedModels");
@@ -273,6 +359,11 @@ public class FeedServlet extends HttpServlet {
                     && feedRequest.getTerm() != null) {
                 ModelLoader.loadModels(SearchResultsFeedModel.class.getName(),
                         model, initData, true);
+
+                // search results may come from any weblog
+                if (dependencies != null) {
+                    dependencies.addEntries(null);
+                }
             }
 
         } catch (WebloggerException ex) {
@@ -333,20 +424,26 @@ public class FeedServlet extends HttpServlet {
 
         // post rendering process
 
-        // flush rendered content to response
-        log.debug("Flushing response output");
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
+        // keep a compressed copy along with the cached content
+        if (this.compressionMinSize >= 0
+                && rendererOutput.getContent().length >= this.compressionMinSize) {
+            rendererOutput.compress();
+        }
 
-        // cache rendered content. only cache if user is not logged in?
+        // cache rendered content and hand it to waiting requests
         log.debug("PUT " + cacheKey);
         if (isSiteWide) {
-            siteWideCache.put(cacheKey, rendererOutput);
+            siteWideCache.put(cacheKey, rendererOutput, dependencies);
         } else {
             weblogFeedCache.put(cacheKey, rendererOutput);
         }
+        if (flight != null) {
+            flight.complete(rendererOutput);
+        }
 
-        log.debug("Exiting");
+        // flush rendered content to response
+        log.debug("Flushing response output");
+        ContentEncodingUtil.sendContent(request, response, rendererOutput);
     }
 
 }
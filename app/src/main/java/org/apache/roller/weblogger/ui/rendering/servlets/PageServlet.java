@@ -44,14 +44,18 @@ import org.apache.roller.weblogger.ui.rendering.Renderer;
 import org.apache.roller.weblogger.ui.rendering.RendererManager;
 import org.apache.roller.weblogger.ui.rendering.model.ModelLoader;
 import org.apache.roller.weblogger.ui.rendering.util.InvalidRequestException;
+import org.apache.roller.weblogger.ui.rendering.util.ContentEncodingUtil;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogEntryCommentForm;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
+import org.apache.roller.weblogger.ui.rendering.util.cache.CacheDependencies;
 import org.apache.roller.weblogger.ui.rendering.util.cache.SiteWideCache;
+import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogCacheWarmupJob;
 import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogPageCache;
 import org.apache.roller.weblogger.util.BannedwordslistChecker;
 import org.apache.roller.weblogger.util.I18nMessages;
 import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.apache.roller.weblogger.util.cache.SingleFlight;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -64,6 +68,7 @@ import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 /**
@@ -79,6 +84,12 @@ public class PageServlet extends HttpServlet {
     private boolean excludeOwnerPages = false;
     private WeblogPageCache weblogPageCache = null;
     private SiteWideCache siteWideCache = null;
+    // for coalescing concurrent renders of the same page
+    private final SingleFlight<CachedContent> renderFlights = new SingleFlight<>();
+    private int renderWaitTimeout = 0;
+    private boolean serveStale = false;
+    // smallest page we keep a compressed copy of, -1 to never compress
+    private int compressionMinSize = -1;
 
     // Development theme reloading
     Boolean themeReload = false;
@@ -102,6 +113,12 @@ public class PageServlet extends HttpServlet {
         // get a reference to the site wide cache
         this.siteWideCache = siteWideCache();
 
+        this.renderWaitTimeout = WebloggerConfig.getIntProperty("cache.singleFlight.timeout", 0);
+        this.serveStale = WebloggerConfig.getBooleanProperty("cache.singleFlight.serveStale");
+        if (WebloggerConfig.getBooleanProperty("cache.compression.enabled")) {
+            this.compressionMinSize = WebloggerConfig.getIntProperty("cache.compression.minSize", 0);
+        }
+
         // see if built-in referrer spam check is enabled
         this.processReferrers = WebloggerConfig
                 .getBooleanProperty("site.bannedwordslist.enable.referrers");
@@ -190,6 +207,50 @@ public class PageServlet extends HttpServlet {
             return; // Cache hit, response sent
         }
 
+        // Only one request renders a given page at a time, the others wait
+        // for its result or get the expired copy meanwhile
+        SingleFlight.Flight<CachedContent> flight = null;
+        if (this.renderWaitTimeout > 0 && isCacheable(request, pageRequest)) {
+            flight = renderFlights.join(cacheKey);
+            if (flight.isLeader()) {
+                // the previous flight may have landed since we missed
+                CachedContent cachedContent = getCachedContent(pageRequest, cacheKey, isSiteWide);
+                if (cachedContent != null) {
+                    flight.complete(cachedContent);
+                    log.debug("HIT " + cacheKey);
+                    serveCachedContent(request, response, pageRequest, cachedContent, isSiteWide);
+                    return;
+                }
+            } else if (serveWhileRendering(request, response, pageRequest, cacheKey, isSiteWide, flight)) {
+                return;
+            }
+        }
+
+        try {
+            renderPage(request, response, pageRequest, cacheKey, isSiteWide, flight);
+        } finally {
+            // in case rendering failed before the flight was completed
+            if (flight != null) {
+                flight.complete(null);
+            }
+        }
+
+        log.debug("Exiting");
+    }
+
+    /**
+     * Render the requested page, cache it and send it.
+     *
+     * The flight, if any, is completed as soon as the content is cached so
+     * that waiting requests don't depend on how fast this client reads.
+     */
+    private void renderPage(HttpServletRequest request,
+                            HttpServletResponse response,
+                            WeblogPageRequest pageRequest,
+                            String cacheKey,
+                            boolean isSiteWide,
+                            SingleFlight.Flight<CachedContent> flight) throws IOException {
+
         log.debug("Looking for template to use for rendering");
 
         // Find the template to render
@@ -221,14 +282,21 @@ public class PageServlet extends HttpServlet {
 
         // Process hit counting
         if (!isSiteWide && (pageRequest.isWebsitePageHit() || pageRequest.isOtherPageHit())) {
-            this.processHit(pageRequest.getWeblog());
+            this.processHit(request, pageRequest.getWeblog());
         }
 
         // Determine content type
         String contentType = determineContentType(page);
 
+        // Site-wide pages record what they are rendered from for the cache
+        CacheDependencies dependencies = null;
+        if (isSiteWide) {
+            dependencies = new CacheDependencies();
+            dependencies.addWeblog(pageRequest.getWeblogHandle());
+        }
+
         // Build the rendering model
-        HashMap<String, Object> model = buildRenderingModel(request, response, pageRequest);
+        HashMap<String, Object> model = buildRenderingModel(request, response, pageRequest, dependencies);
         if (model == null) {
             // Error already sent in buildRenderingModel
             return;
@@ -245,16 +313,22 @@ public class PageServlet extends HttpServlet {
             return;
         }
 
+        // Compress content we are going to cache, so hits can send it as is
+        if (this.compressionMinSize >= 0 && isCacheable(request, pageRequest)
+                && rendererOutput.getContent().length >= this.compressionMinSize) {
+            rendererOutput.compress();
+        }
+
+        // Cache the rendered content and hand it to waiting requests
+        cacheRenderedContent(request, pageRequest, cacheKey, rendererOutput, dependencies);
+        if (flight != null) {
+            flight.complete(rendererOutput);
+        }
+
         // Send response
         log.debug("Flushing response output");
         response.setContentType(contentType);
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
-
-        // Cache the rendered content
-        cacheRenderedContent(request, pageRequest, cacheKey, rendererOutput, isSiteWide);
-
-        log.debug("Exiting");
+        ContentEncodingUtil.sendContent(request, response, rendererOutput);
     }
 
     /**
@@ -340,34 +414,14 @@ public class PageServlet extends HttpServlet {
                                       boolean isSiteWide) throws IOException {
         
         // Check if caching is disabled
-        if ((this.excludeOwnerPages && pageRequest.isLoggedIn())
-                || request.getAttribute("skipCache") != null
-                || request.getParameter("skipCache") != null) {
+        if (!isCacheable(request, pageRequest)) {
             return false;
         }
 
-        CachedContent cachedContent;
-        if (isSiteWide) {
-            cachedContent = (CachedContent) siteWideCache.get(cacheKey);
-        } else {
-            Weblog weblog = pageRequest.getWeblog();
-            long lastModified = (weblog.getLastModified() != null) 
-                    ? weblog.getLastModified().getTime() 
-                    : System.currentTimeMillis();
-            cachedContent = (CachedContent) weblogPageCache.get(cacheKey, lastModified);
-        }
-
+        CachedContent cachedContent = getCachedContent(pageRequest, cacheKey, isSiteWide);
         if (cachedContent != null) {
             log.debug("HIT " + cacheKey);
-
-            // Process hit counting even for cached content
-            if (!isSiteWide && (pageRequest.isWebsitePageHit() || pageRequest.isOtherPageHit())) {
-                this.processHit(pageRequest.getWeblog());
-            }
-
-            response.setContentLength(cachedContent.getContent().length);
-            response.setContentType(cachedContent.getContentType());
-            response.getOutputStream().write(cachedContent.getContent());
+            serveCachedContent(request, response, pageRequest, cachedContent, isSiteWide);
             return true;
         }
         
@@ -375,6 +429,80 @@ public class PageServlet extends HttpServlet {
         return false;
     }
 
+    /**
+     * Look up fresh content in the cache.
+     */
+    private CachedContent getCachedContent(WeblogPageRequest pageRequest,
+                                           String cacheKey,
+                                           boolean isSiteWide) {
+        if (isSiteWide) {
+            return (CachedContent) siteWideCache.get(cacheKey);
+        }
+        Weblog weblog = pageRequest.getWeblog();
+        long lastModified = (weblog.getLastModified() != null)
+                ? weblog.getLastModified().getTime()
+                : System.currentTimeMillis();
+        return (CachedContent) weblogPageCache.get(cacheKey, lastModified);
+    }
+
+    /**
+     * Serve a page which another request is currently rendering, either from
+     * the expired copy still in the cache or by waiting for the render.
+     * @return true if the response was sent, false if we should render ourselves
+     */
+    private boolean serveWhileRendering(HttpServletRequest request,
+                                        HttpServletResponse response,
+                                        WeblogPageRequest pageRequest,
+                                        String cacheKey,
+                                        boolean isSiteWide,
+                                        SingleFlight.Flight<CachedContent> flight) throws IOException {
+
+        CachedContent cachedContent = null;
+        if (this.serveStale) {
+            cachedContent = (CachedContent) (isSiteWide
+                    ? siteWideCache.getStale(cacheKey)
+                    : weblogPageCache.getStale(cacheKey));
+        }
+
+        if (cachedContent != null) {
+            log.debug("STALE " + cacheKey);
+        } else {
+            cachedContent = flight.await(this.renderWaitTimeout, TimeUnit.SECONDS);
+            if (cachedContent == null) {
+                return false;
+            }
+            log.debug("COALESCED " + cacheKey);
+        }
+
+        serveCachedContent(request, response, pageRequest, cachedContent, isSiteWide);
+        return true;
+    }
+
+    private void serveCachedContent(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    WeblogPageRequest pageRequest,
+                                    CachedContent cachedContent,
+                                    boolean isSiteWide) throws IOException {
+
+        // Process hit counting even for cached content
+        if (!isSiteWide && (pageRequest.isWebsitePageHit() || pageRequest.isOtherPageHit())) {
+            this.processHit(request, pageRequest.getWeblog());
+        }
+
+        response.setContentType(cachedContent.getContentType());
+        ContentEncodingUtil.sendContent(request, response, cachedContent);
+    }
+
+    /**
+     * Pages for page owners and pages carrying request specific messages
+     * are neither served from nor put into the cache.
+     */
+    private boolean isCacheable(HttpServletRequest request, WeblogPageRequest pageRequest) {
+        return !((this.excludeOwnerPages && pageRequest.isLoggedIn())
+                || request.getAttribute("skipCache") != null
+                || request.getParameter("skipCache") != null);
+    }
+
     /**
      * Find the appropriate template for the request.
      */
@@ -546,7 +674,8 @@ public class PageServlet extends HttpServlet {
      */
     private HashMap<String, Object> buildRenderingModel(HttpServletRequest request,
                                                          HttpServletResponse response,
-                                                         WeblogPageRequest pageRequest) {
+                                                         WeblogPageRequest pageRequest,
+                                                         CacheDependencies dependencies) {
         HashMap<String, Object> model = new HashMap<>();
         
         try {
@@ -563,6 +692,9 @@ public class PageServlet extends HttpServlet {
             initData.put("parsedRequest", pageRequest);
             initData.put("pageContext", pageContext);
             initData.put("urlStrategy", WebloggerFactory.getWeblogger().getUrlStrategy());
+            if (dependencies != null) {
+                initData.put("cacheDependencies", dependencies);
+            }
 
             // if this was a comment posting, check for comment form
             WeblogEntryCommentForm commentForm = (WeblogEntryCommentForm) request
@@ -624,13 +756,14 @@ public class PageServlet extends HttpServlet {
     }
 
     /**
-     * Cache the rendered content if appropriate.
+     * Cache the rendered content if appropriate.  Site-wide content comes
+     * with the dependencies it was rendered from.
      */
     private void cacheRenderedContent(HttpServletRequest request,
                                       WeblogPageRequest pageRequest,
                                       String cacheKey,
                                       CachedContent rendererOutput,
-                                      boolean isSiteWide) {
+                                      CacheDependencies dependencies) {
         
         if ((this.excludeOwnerPages && pageRequest.isLoggedIn())
                 || request.getAttribute("skipCache") != null) {
@@ -640,8 +773,8 @@ public class PageServlet extends HttpServlet {
 
         log.debug("PUT " + cacheKey);
         
-        if (isSiteWide) {
-            siteWideCache.put(cacheKey, rendererOutput);
+        if (dependencies != null) {
+            siteWideCache.put(cacheKey, rendererOutput, dependencies);
         } else {
             weblogPageCache.put(cacheKey, rendererOutput);
         }
@@ -667,9 +800,13 @@ public class PageServlet extends HttpServlet {
     }
 
     /**
-     * Notify the hit tracker that it has an incoming page hit.
+     * Notify the hit tracker that it has an incoming page hit, unless the
+     * request only warms up the cache.
      */
-    private void processHit(Weblog weblog) {
+    private void processHit(HttpServletRequest request, Weblog weblog) {
+        if (WeblogCacheWarmupJob.isWarmupRequest(request)) {
+            return;
+        }
         HitCountQueue counter = HitCountQueue.getInstance();
         counter.processHit(weblog);
     }
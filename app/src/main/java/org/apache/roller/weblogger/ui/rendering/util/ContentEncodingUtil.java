@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import java.io.IOException;
+import java.util.Locale;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+
+
+/**
+ * Utility class to send rendered content using the best content encoding
+ * the client accepts, along with a strong entity tag for it.
+ */
+public final class ContentEncodingUtil {
+
+    private static final Log log = LogFactory.getLog(ContentEncodingUtil.class);
+
+    private ContentEncodingUtil() {
+    }
+
+
+    /**
+     * Send rendered content, using its gzip compressed copy if it has one
+     * and the client accepts gzip encoding.
+     *
+     * The content hash is sent as ETag and if the client already has this
+     * exact content we respond with 304 Not Modified instead.
+     */
+    public static void sendContent(HttpServletRequest request,
+            HttpServletResponse response, CachedContent content) throws IOException {
+
+        boolean gzip = false;
+        if (content.getGzippedContent() != null) {
+            // caches must keep the encodings apart
+            response.addHeader("Vary", "Accept-Encoding");
+            gzip = acceptsGzip(request);
+        }
+
+        if (content.getContentHash() != null) {
+            // a strong ETag differs for each encoding of the content
+            String eTag = "\"" + content.getContentHash() + (gzip ? "-gzip" : "") + "\"";
+            response.setHeader("ETag", eTag);
+
+            if (matchesETag(request.getHeader("If-None-Match"), eTag)) {
+                log.debug("NOT MODIFIED " + request.getRequestURL());
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        byte[] body = content.getContent();
+        if (gzip) {
+            body = content.getGzippedContent();
+            response.setHeader("Content-Encoding", "gzip");
+        }
+
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+
+    /**
+     * Determine if an If-None-Match header matches the given entity tag,
+     * using the weak comparison which the header calls for.
+     */
+    public static boolean matchesETag(String ifNoneMatch, String eTag) {
+
+        if (StringUtils.isEmpty(ifNoneMatch)) {
+            return false;
+        }
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || candidate.equals(eTag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Determine if the Accept-Encoding header of the request allows gzip.
+     */
+    public static boolean acceptsGzip(HttpServletRequest request) {
+
+        String header = request.getHeader("Accept-Encoding");
+        if (StringUtils.isEmpty(header)) {
+            return false;
+        }
+
+        boolean accepted = false;
+        for (String coding : header.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ENGLISH);
+
+            boolean gzip = "gzip".equals(name) || "x-gzip".equals(name);
+            if (gzip || "*".equals(name)) {
+                boolean allowed = !isZeroQuality(parts);
+                if (gzip) {
+                    // an explicit gzip entry beats the wildcard
+                    return allowed;
+                }
+                accepted = allowed;
+            }
+        }
+
+        return accepted;
+    }
+
+
+    private static boolean isZeroQuality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Float.parseFloat(param.substring(2)) <= 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -40,6 +40,8 @@ public class WeblogSearchRequest extends WeblogRequest {
     // lightweight attributes
     private String query = null;
     private int pageNum = 0;
+    private String after = null;
+    private String before = null;
     private String weblogCategoryName = null;
     
     // heavyweight attributes
@@ -79,6 +81,8 @@ public class WeblogSearchRequest extends WeblogRequest {
          * the only params we currently care about are:
          *   q - specifies the search query
          *   pageNum - specifies what pageNum # to display
+         *   after - where the previous page of results ended
+         *   before - where the next page of results started
          *   cat - limit results to a certain weblogCategoryName
          */
         if(request.getParameter("q") != null && !request.getParameter("q").isBlank()) {
@@ -94,6 +98,14 @@ public class WeblogSearchRequest extends WeblogRequest {
             }
         }
         
+        if(request.getParameter("after") != null && !request.getParameter("after").isBlank()) {
+            this.after = request.getParameter("after");
+        }
+        
+        if(request.getParameter("before") != null && !request.getParameter("before").isBlank()) {
+            this.before = request.getParameter("before");
+        }
+        
         if(request.getParameter("cat") != null && !request.getParameter("cat").isBlank()) {
             this.weblogCategoryName =
                     URLUtilities.decode(request.getParameter("cat"));
@@ -116,6 +128,22 @@ public class WeblogSearchRequest extends WeblogRequest {
         this.pageNum = pageNum;
     }
 
+    public String getAfter() {
+        return after;
+    }
+
+    public void setAfter(String after) {
+        this.after = after;
+    }
+
+    public String getBefore() {
+        return before;
+    }
+
+    public void setBefore(String before) {
+        this.before = before;
+    }
+
     public String getWeblogCategoryName() {
         return weblogCategoryName;
     }
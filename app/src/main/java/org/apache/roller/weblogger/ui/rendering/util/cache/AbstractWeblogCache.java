@@ -18,21 +18,44 @@
 
 package org.apache.roller.weblogger.ui.rendering.util.cache;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.util.cache.Cache;
 import org.apache.roller.weblogger.util.cache.CacheHandler;
 import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.apache.roller.weblogger.util.cache.ContentSnapshot;
+import org.apache.roller.weblogger.util.cache.ExpiringCacheEntry;
 import org.apache.roller.weblogger.util.cache.LazyExpiringCacheEntry;
+import org.apache.roller.weblogger.util.cache.OffHeapContentStore;
 
 
 /**
  * Abstract base class for weblog cache implementations.
  * Provides common caching functionality including initialization, get, put, remove, and clear operations.
+ *
+ * Caches are configured by the cache.<id>.* properties; besides an entry
+ * count they may set a maxBytes budget, in which case each rendered page
+ * weighs as much as its content and the byte footprint shows up in the cache
+ * stats.
+ *
+ * Setting offHeapBytes adds a second tier outside of the heap, optionally a
+ * memory-mapped file in offHeapDirectory.  Rendered content evicted from the
+ * cache is demoted to the second tier and promoted back on its next hit.
+ *
+ * Setting snapshotSize lets the cache save that many of its hottest entries
+ * to disk on shutdown and restore them on startup.
  */
 public abstract class AbstractWeblogCache {
     
@@ -41,6 +64,13 @@ public abstract class AbstractWeblogCache {
     // keep cached content
     protected boolean cacheEnabled = true;
     protected Cache contentCache = null;
+    protected OffHeapContentStore secondTier = null;
+    
+    private String cacheId = null;
+    private long timeout = 0;
+    
+    // how many of the hottest entries to keep in snapshots
+    private int snapshotSize = 0;
     
     
     /**
@@ -78,14 +108,93 @@ public abstract class AbstractWeblogCache {
         
         log.info(cacheProps);
         
+        this.cacheId = cacheId;
+        try {
+            if (cacheProps.get("snapshotSize") != null) {
+                snapshotSize = Integer.parseInt(cacheProps.get("snapshotSize"));
+            }
+            if (cacheProps.get("timeout") != null) {
+                timeout = Long.parseLong(cacheProps.get("timeout")) * RollerConstants.SEC_IN_MS;
+            }
+        } catch (NumberFormatException e) {
+            log.warn("invalid snapshotSize or timeout property", e);
+        }
+        
         if(cacheEnabled) {
             contentCache = CacheManager.constructCache(handler, cacheProps);
+            initializeSecondTier(cacheId, cacheProps);
         } else {
             log.warn("Caching has been DISABLED");
         }
     }
     
     
+    private void initializeSecondTier(String cacheId, Map<String, String> cacheProps) {
+        
+        int offHeapBytes = 0;
+        try {
+            if (cacheProps.get("offHeapBytes") != null) {
+                offHeapBytes = Integer.parseInt(cacheProps.get("offHeapBytes"));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("invalid offHeapBytes property", e);
+        }
+        
+        if (offHeapBytes > 0) {
+            try {
+                secondTier = new OffHeapContentStore(cacheId, offHeapBytes,
+                        cacheProps.get("offHeapDirectory"));
+                contentCache.setEvictionListener(this::demote);
+            } catch (Exception e) {
+                log.error("Unable to create second tier for " + cacheId, e);
+            }
+        }
+    }
+    
+    
+    /**
+     * Move content evicted from the cache to the second tier.
+     */
+    protected void demote(String key, Object value) {
+        
+        long expires = 0;
+        if (value instanceof ExpiringCacheEntry) {
+            ExpiringCacheEntry entry = (ExpiringCacheEntry) value;
+            expires = entry.getTimeCached() + entry.getTimeout();
+            value = entry.getValue();
+        }
+        
+        if (value instanceof LazyExpiringCacheEntry) {
+            LazyExpiringCacheEntry entry = (LazyExpiringCacheEntry) value;
+            Object content = entry.getValue(0);
+            if (content instanceof CachedContent) {
+                secondTier.put(key, (CachedContent) content, entry.getTimeCached(), expires);
+                log.debug("DEMOTE " + key);
+            }
+        }
+    }
+    
+    
+    /**
+     * Look for an entry in the cache, falling back on the second tier.
+     */
+    private Object lookup(String key) {
+        
+        Object entry = contentCache.get(key);
+        
+        if (entry == null && secondTier != null) {
+            LazyExpiringCacheEntry demoted = secondTier.take(key);
+            if (demoted != null) {
+                log.debug("PROMOTE " + key);
+                contentCache.put(key, demoted, demoted.getTimeCached());
+                entry = demoted;
+            }
+        }
+        
+        return entry;
+    }
+    
+    
     /**
      * Retrieve an object from the cache.
      * @param key the cache key
@@ -100,8 +209,7 @@ public abstract class AbstractWeblogCache {
         
         Object entry = null;
         
-        LazyExpiringCacheEntry lazyEntry = 
-                (LazyExpiringCacheEntry) this.contentCache.get(key);
+        LazyExpiringCacheEntry lazyEntry = (LazyExpiringCacheEntry) lookup(key);
         if(lazyEntry != null) {
             entry = lazyEntry.getValue(lastModified);
             
@@ -130,7 +238,7 @@ public abstract class AbstractWeblogCache {
             return null;
         }
         
-        Object entry = contentCache.get(key);
+        Object entry = lookup(key);
         
         if(entry == null) {
             log.debug("MISS " + key);
@@ -142,6 +250,32 @@ public abstract class AbstractWeblogCache {
     }
     
     
+    /**
+     * Retrieve an object from the cache even if it has expired, which is
+     * useful to keep serving something while a fresh copy is being built.
+     * @param key the cache key
+     * @return the cached object or null if not found
+     */
+    public Object getStale(String key) {
+        
+        if (!cacheEnabled) {
+            return null;
+        }
+        
+        // expired entries stay in the cache until they're replaced
+        Object entry = contentCache.getStale(key);
+        if (entry == null) {
+            entry = lookup(key);
+        }
+        if (entry instanceof LazyExpiringCacheEntry) {
+            // an invalidation time of 0 never expires the entry
+            entry = ((LazyExpiringCacheEntry) entry).getValue(0);
+        }
+        
+        return entry;
+    }
+    
+    
     /**
      * Store an object in the cache.
      * @param key the cache key
@@ -154,6 +288,9 @@ public abstract class AbstractWeblogCache {
         }
         
         contentCache.put(key, new LazyExpiringCacheEntry(value));
+        if (secondTier != null) {
+            secondTier.remove(key);
+        }
         log.debug("PUT " + key);
     }
     
@@ -169,6 +306,9 @@ public abstract class AbstractWeblogCache {
         }
         
         contentCache.remove(key);
+        if (secondTier != null) {
+            secondTier.remove(key);
+        }
         log.debug("REMOVE " + key);
     }
     
@@ -183,6 +323,73 @@ public abstract class AbstractWeblogCache {
         }
         
         contentCache.clear();
+        if (secondTier != null) {
+            secondTier.clear();
+        }
         log.debug("CLEAR");
     }
-}
\ No newline at end of file
+    
+    
+    /**
+     * Save the hottest entries of the cache to a snapshot in the given
+     * directory.
+     * @return the number of entries saved
+     */
+    public int saveSnapshot(Path dir) throws IOException {
+        
+        if (!cacheEnabled || snapshotSize <= 0) {
+            return 0;
+        }
+        
+        Map<String, LazyExpiringCacheEntry> entries = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : contentCache.getHottest(snapshotSize).entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof ExpiringCacheEntry) {
+                value = ((ExpiringCacheEntry) value).getValue();
+            }
+            if (value instanceof LazyExpiringCacheEntry) {
+                entries.put(entry.getKey(), (LazyExpiringCacheEntry) value);
+            }
+        }
+        
+        return ContentSnapshot.write(dir.resolve(cacheId + ".snapshot"), entries);
+    }
+    
+    
+    /**
+     * Restore entries from a snapshot in the given directory, which is
+     * removed afterwards as it is only good for a single restart.
+     * @return the number of entries restored
+     */
+    public int restoreSnapshot(Path dir) throws IOException {
+        
+        Path file = dir.resolve(cacheId + ".snapshot");
+        if (!cacheEnabled || snapshotSize <= 0) {
+            Files.deleteIfExists(file);
+            return 0;
+        }
+        
+        List<Map.Entry<String, LazyExpiringCacheEntry>> entries;
+        try {
+            entries = new ArrayList<>(ContentSnapshot.read(file).entrySet());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        
+        // put the coldest entries first so the hottest end up most recently
+        // used, each timing out when it would have without the restart
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        for (int i = Math.min(entries.size(), snapshotSize) - 1; i >= 0; i--) {
+            Map.Entry<String, LazyExpiringCacheEntry> entry = entries.get(i);
+            long timeCached = entry.getValue().getTimeCached();
+            if (timeout > 0 && timeCached + timeout < now) {
+                continue;
+            }
+            contentCache.put(entry.getKey(), entry.getValue(), timeCached);
+            restored++;
+        }
+        
+        return restored;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+
+/**
+ * Records what a piece of site-wide content was rendered from.
+ *
+ * An instance is handed to the site-wide models through their init data and
+ * collects one dependency for every weblog, category, tag or site-wide
+ * collection the page pulls content from.  The SiteWideCache stores the
+ * dependencies alongside the rendered content so that a change only expires
+ * the pages which actually used the changed data.
+ *
+ * Dependencies are kept as simple strings ...
+ *
+ * entries, comments, weblogs, users     (site-wide collections)
+ * weblog:<handle>                       (all content of one weblog)
+ * weblog:<handle>/category:<name>       (entries in one category)
+ * tag:<name>                            (entries with a given tag)
+ * tags                                  (entries with any tag at all)
+ */
+public final class CacheDependencies {
+
+    static final String ALL = "*";
+    static final String ENTRIES = "entries";
+    static final String COMMENTS = "comments";
+    static final String WEBLOGS = "weblogs";
+    static final String USERS = "users";
+    static final String TAGS = "tags";
+
+    private static final String WEBLOG_PREFIX = "weblog:";
+    private static final String CATEGORY_PREFIX = "/category:";
+    private static final String TAG_PREFIX = "tag:";
+
+    private final Set<String> dependencies = new HashSet<>();
+
+    // when rendering started, anything invalidated after this is stale
+    private final long startTime = System.currentTimeMillis();
+
+
+    /**
+     * Content depends on any change to the entries of a weblog.
+     */
+    public void addWeblog(String handle) {
+        if (handle != null) {
+            dependencies.add(weblogKey(handle));
+        }
+    }
+
+
+    /**
+     * Content depends on the entries in one category of a weblog.
+     */
+    public void addCategory(String handle, String category) {
+        if (handle != null && category != null) {
+            dependencies.add(weblogKey(handle) + CATEGORY_PREFIX + category);
+        } else {
+            addWeblog(handle);
+        }
+    }
+
+
+    /**
+     * Content depends on site-wide entries, restricted to the given tags
+     * when there are any.  Tagged entries also come and go with changes
+     * which don't say what tags they touched, such as a weblog being hidden
+     * or a category removed, so they depend on those too.
+     */
+    public void addEntries(Collection<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            dependencies.add(ENTRIES);
+        } else {
+            dependencies.add(TAGS);
+            for (String tag : tags) {
+                dependencies.add(tagKey(tag));
+            }
+        }
+    }
+
+
+    /**
+     * Content depends on site-wide comments.
+     */
+    public void addComments() {
+        dependencies.add(COMMENTS);
+    }
+
+
+    /**
+     * Content depends on the set of weblogs, i.e. directories and counts.
+     */
+    public void addWeblogs() {
+        dependencies.add(WEBLOGS);
+    }
+
+
+    /**
+     * Content depends on the set of users.
+     */
+    public void addUsers() {
+        dependencies.add(USERS);
+    }
+
+
+    public Set<String> getDependencies() {
+        return Collections.unmodifiableSet(dependencies);
+    }
+
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+
+    static String weblogKey(String handle) {
+        return WEBLOG_PREFIX + handle;
+    }
+
+
+    static String tagKey(String tag) {
+        return TAG_PREFIX + tag;
+    }
+
+
+    /**
+     * The weblog a category dependency belongs to, or null if the dependency
+     * is not for a category.
+     */
+    static String parentOf(String dependency) {
+        if (dependency.startsWith(WEBLOG_PREFIX)) {
+            int idx = dependency.indexOf(CATEGORY_PREFIX);
+            if (idx > 0) {
+                return dependency.substring(0, idx);
+            }
+        }
+        return null;
+    }
+
+}
@@ -20,10 +20,22 @@ package org.apache.roller.weblogger.ui.rendering.util.cache;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
 import org.apache.roller.weblogger.pojos.WeblogBookmark;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
@@ -31,6 +43,7 @@ import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
 import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryTag;
 import org.apache.roller.weblogger.pojos.WeblogTemplate;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
@@ -38,13 +51,22 @@ import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
 import org.apache.roller.weblogger.util.Utilities;
 import org.apache.roller.weblogger.util.cache.CacheHandler;
 import org.apache.roller.weblogger.util.cache.ExpiringCacheEntry;
+import org.apache.roller.weblogger.util.cache.LazyExpiringCacheEntry;
 
 
 /**
  * Cache for site-wide weblog content.
+ *
+ * Site-wide pages draw from many weblogs, so each cached page carries the
+ * CacheDependencies recorded while it was rendered.  Invalidations only
+ * note when a dependency changed and a page is expired lazily the next time
+ * it is requested, which means a change to one weblog leaves pages that never
+ * used its content in the cache.
  */
 public final class SiteWideCache extends AbstractWeblogCache implements CacheHandler {
     
+    private static final Log log = LogFactory.getLog(SiteWideCache.class);
+    
     // a unique identifier for this cache, this is used as the prefix for
     // roller config properties that apply to this cache
     public static final String CACHE_ID = "cache.sitewide";
@@ -52,6 +74,23 @@ public final class SiteWideCache extends AbstractWeblogCache implements CacheHan
     // keep a cached version of last expired time
     private ExpiringCacheEntry lastUpdateTime = null;
 
+    // when each dependency was last invalidated
+    private final Map<String, Long> lastInvalidated = new ConcurrentHashMap<>();
+    
+    // how long invalidation times are kept, anything cached before then has
+    // already timed out of the cache so they can't expire it any more
+    private final long invalidationTtl;
+    private volatile long lastPruned = System.currentTimeMillis();
+    
+    // without a timeout the times are kept until there are this many
+    private static final int MAX_INVALIDATIONS = 10000;
+    
+    // optional delay in seconds used to batch up invalidations
+    private final int invalidationDelay;
+    private final Set<String> pendingInvalidations = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean expirationScheduled = new AtomicBoolean(false);
+    private ScheduledExecutorService expirationScheduler = null;
+    
     // reference to our singleton instance
     private static final SiteWideCache singletonInstance = new SiteWideCache();
     
@@ -59,6 +98,19 @@ public final class SiteWideCache extends AbstractWeblogCache implements CacheHan
     private SiteWideCache() {
         // Pass 'this' as the CacheHandler since this class implements that interface
         initializeCache(CACHE_ID, this);
+        
+        invalidationDelay = WebloggerConfig.getIntProperty(CACHE_ID + ".invalidationDelay", 0);
+        
+        // twice the timeout, to allow for content which was slow to render
+        invalidationTtl = 2L * WebloggerConfig.getIntProperty(CACHE_ID + ".timeout", 15 * 60)
+                * RollerConstants.SEC_IN_MS;
+        if (invalidationDelay > 0) {
+            expirationScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "SiteWideCache-invalidation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
     }
     
     
@@ -67,9 +119,87 @@ public final class SiteWideCache extends AbstractWeblogCache implements CacheHan
     }
     
     
+    /**
+     * Retrieve rendered content from the cache.
+     *
+     * Content is only returned if none of the data it was rendered from has
+     * been invalidated since it was rendered.
+     */
+    @Override
+    public Object get(String key) {
+        
+        if (!cacheEnabled) {
+            return null;
+        }
+        
+        DependentCacheEntry entry = (DependentCacheEntry) this.contentCache.get(key);
+        if (entry == null) {
+            log.debug("MISS " + key);
+            return null;
+        }
+        
+        Object value = entry.getValue(getLastInvalidated(entry.dependencies));
+        if (value == null) {
+            log.debug("HIT-EXPIRED " + key);
+        } else {
+            log.debug("HIT " + key);
+        }
+        
+        return value;
+    }
+    
+    
+    /**
+     * Store content which may have depended on anything at all.
+     */
+    @Override
+    public void put(String key, Object value) {
+        put(key, value, Set.of(CacheDependencies.ALL), System.currentTimeMillis());
+    }
+    
+    
+    /**
+     * Store rendered content along with what it was rendered from.
+     */
+    public void put(String key, Object value, CacheDependencies dependencies) {
+        put(key, value, new HashSet<>(dependencies.getDependencies()), dependencies.getStartTime());
+    }
+    
+    
+    private void put(String key, Object value, Set<String> dependencies, long renderTime) {
+        
+        if (!cacheEnabled) {
+            return;
+        }
+        
+        this.contentCache.put(key, new DependentCacheEntry(value, dependencies, renderTime));
+        log.debug("PUT " + key + " " + dependencies);
+    }
+    
+    
+    /**
+     * Site-wide content isn't demoted, as the second tier would lose the
+     * dependencies it was rendered from.
+     */
+    @Override
+    protected void demote(String key, Object value) {
+        // ignored
+    }
+    
+    
+    /**
+     * Site-wide content isn't saved in snapshots either, for the same reason.
+     */
+    @Override
+    public int saveSnapshot(Path dir) {
+        return 0;
+    }
+    
+    
     @Override
     public void clear() {
         super.clear();
+        this.lastInvalidated.clear();
         this.lastUpdateTime = null;
     }
     
@@ -231,27 +361,34 @@ public final class SiteWideCache extends AbstractWeblogCache implements CacheHan
     @Override
     public void invalidate(WeblogEntry entry) {
         
-        if (!cacheEnabled) {
-            return;
+        Set<String> changed = new HashSet<>();
+        changed.add(CacheDependencies.ENTRIES);
+        changed.add(CacheDependencies.weblogKey(entry.getWebsite().getHandle()));
+        
+        // both the current tags and any just removed from the entry
+        for (WeblogEntryTag tag : entry.getTags()) {
+            changed.add(CacheDependencies.tagKey(tag.getName()));
+        }
+        for (WeblogEntryTag tag : entry.getRemovedTags()) {
+            changed.add(CacheDependencies.tagKey(tag.getName()));
         }
         
-        this.contentCache.clear();
-        this.lastUpdateTime = null;
+        invalidate(changed);
     }
     
     
     /**
      * A weblog has changed.
+     *
+     * Changes to its entries and comments are reported on their own, so this
+     * only expires content of the weblog itself, the weblog directories,
+     * which show its name and description, and tagged entries, which it may
+     * have hidden or shown along with the weblog without naming their tags.
      */
     @Override
     public void invalidate(Weblog website) {
-        
-        if (!cacheEnabled) {
-            return;
-        }
-        
-        this.contentCache.clear();
-        this.lastUpdateTime = null;
+        invalidate(Set.of(CacheDependencies.WEBLOGS, CacheDependencies.TAGS,
+                CacheDependencies.weblogKey(website.getHandle())));
     }
     
     
@@ -282,9 +419,8 @@ public final class SiteWideCache extends AbstractWeblogCache implements CacheHan
      */
     @Override
     public void invalidate(WeblogEntryComment comment) {
-        if(WebloggerRuntimeConfig.isSiteWideWeblog(comment.getWeblogEntry().getWebsite().getHandle())) {
-            invalidate(comment.getWeblogEntry().getWebsite());
-        }
+        invalidate(Set.of(CacheDependencies.COMMENTS,
+                CacheDependencies.weblogKey(comment.getWeblogEntry().getWebsite().getHandle())));
     }
     
     
@@ -293,7 +429,7 @@ public final class SiteWideCache extends AbstractWeblogCache implements CacheHan
      */
     @Override
     public void invalidate(User user) {
-        // ignored
+        invalidate(Set.of(CacheDependencies.USERS));
     }
     
     
@@ -302,9 +438,8 @@ public final class SiteWideCache extends AbstractWeblogCache implements CacheHan
      */
     @Override
     public void invalidate(WeblogCategory category) {
-        if(WebloggerRuntimeConfig.isSiteWideWeblog(category.getWeblog().getHandle())) {
-            invalidate(category.getWeblog());
-        }
+        invalidate(Set.of(CacheDependencies.ENTRIES, CacheDependencies.TAGS,
+                CacheDependencies.weblogKey(category.getWeblog().getHandle())));
     }
     
     
@@ -319,6 +454,99 @@ public final class SiteWideCache extends AbstractWeblogCache implements CacheHan
     }
     
     
+    /**
+     * Expire all content which depends on any of the given dependencies.
+     *
+     * With an invalidation delay configured the dependencies are collected
+     * and expired together once the delay has passed, so a burst of changes
+     * only costs a single round of re-rendering.
+     */
+    private void invalidate(Set<String> changed) {
+        
+        if (!cacheEnabled) {
+            return;
+        }
+        
+        if (invalidationDelay <= 0) {
+            expire(changed);
+            return;
+        }
+        
+        pendingInvalidations.addAll(changed);
+        if (expirationScheduled.compareAndSet(false, true)) {
+            expirationScheduler.schedule(() -> {
+                expirationScheduled.set(false);
+                Set<String> pending = new HashSet<>();
+                for (Iterator<String> it = pendingInvalidations.iterator(); it.hasNext(); ) {
+                    pending.add(it.next());
+                    it.remove();
+                }
+                expire(pending);
+            }, invalidationDelay, TimeUnit.SECONDS);
+        }
+    }
+    
+    
+    private void expire(Set<String> changed) {
+        
+        // everything depends on ALL, so it changes along with anything else
+        long now = System.currentTimeMillis();
+        this.lastInvalidated.put(CacheDependencies.ALL, now);
+        for (String dependency : changed) {
+            this.lastInvalidated.put(dependency, now);
+        }
+        this.lastUpdateTime = null;
+        
+        log.debug("EXPIRE " + changed);
+        
+        prune(now);
+    }
+    
+    
+    /**
+     * Forget invalidation times which can no longer expire anything.
+     */
+    private void prune(long now) {
+        
+        if (invalidationTtl <= 0) {
+            // content never times out, so the times can only be dropped
+            // along with the content itself
+            if (this.lastInvalidated.size() > MAX_INVALIDATIONS) {
+                log.debug("too many invalidations, clearing cache");
+                clear();
+            }
+            return;
+        }
+        
+        if (now - lastPruned < invalidationTtl) {
+            return;
+        }
+        lastPruned = now;
+        
+        long cutoff = now - invalidationTtl;
+        this.lastInvalidated.values().removeIf(time -> time < cutoff);
+    }
+    
+    
+    /**
+     * The last time any of the given dependencies was invalidated.
+     */
+    private long getLastInvalidated(Set<String> dependencies) {
+        
+        long last = 0;
+        for (String dependency : dependencies) {
+            last = Math.max(last, this.lastInvalidated.getOrDefault(dependency, 0L));
+            
+            // a category expires along with its weblog
+            String parent = CacheDependencies.parentOf(dependency);
+            if (parent != null) {
+                last = Math.max(last, this.lastInvalidated.getOrDefault(parent, 0L));
+            }
+        }
+        return last;
+    }
+    
+    
     private String paramsToString(Map<String, String[]> map) {
         
         if (map == null) {
@@ -336,4 +564,20 @@ public final class SiteWideCache extends AbstractWeblogCache implements CacheHan
         return Utilities.toBase64(string.toString().substring(1).getBytes(StandardCharsets.UTF_8));
     }
     
-}
\ No newline at end of file
+    
+    /**
+     * Cached content plus the dependencies it was rendered from.
+     */
+    private static final class DependentCacheEntry extends LazyExpiringCacheEntry {
+        
+        private static final long serialVersionUID = -2817420163944712853L;
+        
+        private final Set<String> dependencies;
+        
+        DependentCacheEntry(Object value, Set<String> dependencies, long renderTime) {
+            super(value, renderTime);
+            this.dependencies = dependencies;
+        }
+    }
+    
+}
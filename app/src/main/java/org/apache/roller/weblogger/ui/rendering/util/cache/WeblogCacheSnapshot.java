@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+
+
+/**
+ * Saves the rendering caches to disk on shutdown and restores them on
+ * startup, so a restarted node doesn't have to render every page again
+ * before it is fast.
+ *
+ * Snapshots go into the directory set by cache.snapshot.dir, and each cache
+ * decides how many entries it keeps with its snapshotSize property.
+ */
+public final class WeblogCacheSnapshot {
+
+    private static final Log log = LogFactory.getLog(WeblogCacheSnapshot.class);
+
+    private WeblogCacheSnapshot() {
+    }
+
+
+    /**
+     * Save a snapshot of each rendering cache.
+     */
+    public static void save() {
+
+        Path dir = getDirectory();
+        if (dir == null) {
+            return;
+        }
+
+        for (AbstractWeblogCache cache : getCaches()) {
+            try {
+                int saved = cache.saveSnapshot(dir);
+                log.info("Saved " + saved + " entries of " + cache.getClass().getSimpleName());
+            } catch (Exception e) {
+                log.error("Error saving snapshot of " + cache.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+
+    /**
+     * Restore the rendering caches from their snapshots, all caches at once.
+     * Returns once every cache is restored, so it should be called before
+     * the application takes requests.
+     */
+    public static void restore() {
+
+        Path dir = getDirectory();
+        if (dir == null) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+
+        List<AbstractWeblogCache> caches = getCaches();
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (AbstractWeblogCache cache : caches) {
+            tasks.add(() -> cache.restoreSnapshot(dir));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            List<Future<Integer>> results = executor.invokeAll(tasks);
+            for (int i = 0; i < results.size(); i++) {
+                String name = caches.get(i).getClass().getSimpleName();
+                try {
+                    log.info("Restored " + results.get(i).get() + " entries of " + name);
+                } catch (Exception e) {
+                    log.error("Error restoring snapshot of " + name, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+
+        log.info("Restored rendering caches in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+
+    private static List<AbstractWeblogCache> getCaches() {
+        List<AbstractWeblogCache> caches = new ArrayList<>();
+        caches.add(WeblogPageCache.getInstance());
+        caches.add(WeblogFeedCache.getInstance());
+        caches.add(SiteWideCache.getInstance());
+        return caches;
+    }
+
+
+    private static Path getDirectory() {
+        String dir = WebloggerConfig.getProperty("cache.snapshot.dir");
+        return StringUtils.isEmpty(dir) ? null : Paths.get(dir);
+    }
+
+}
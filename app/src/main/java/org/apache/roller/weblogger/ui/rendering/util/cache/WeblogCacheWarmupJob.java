@@ -18,152 +18,329 @@
 
 package org.apache.roller.weblogger.ui.rendering.util.cache;
 
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.business.URLStrategy;
+import org.apache.roller.weblogger.business.WeblogEntryManager;
+import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.runnable.Job;
 import org.apache.roller.weblogger.config.WebloggerConfig;
-import org.apache.roller.weblogger.pojos.StaticTemplate;
-import org.apache.roller.weblogger.pojos.Template;
-import org.apache.roller.weblogger.pojos.TemplateRendition.TemplateLanguage;
-import org.apache.roller.weblogger.ui.rendering.Renderer;
-import org.apache.roller.weblogger.ui.rendering.RendererManager;
-import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository.DeviceType;
-import org.apache.roller.weblogger.ui.rendering.model.ModelLoader;
-import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
-import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
+import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
 
 
 /**
- * EXPERIMENTAL!!
+ * A job which will "warm up" the rendering layer caches by requesting a set
+ * of pages and feeds for the given weblogs, the same way a visitor would.
  *
- * A job which will "warm up" some of the rendering layer caches by iterating
- * over all weblogs in the system and rendering a set of their content to put
- * in the caches for later use.
+ * Pages are requested from this site, or from the given base url so that
+ * each node of a cluster can warm itself up, on a small pool of workers.
+ * Workers pause between requests, and pause longer while responses are slow,
+ * so a warmup doesn't starve regular requests or the database.
  *
- * Currently only supports warming up the feed cache.
+ * Requests carry the WARMUP_HEADER so they aren't counted as hits.  The
+ * header has to carry the cache.warmup.secret, or without one a random
+ * token made when this JVM started, so visitors can't send it too.
+ *
+ * Inputs ...
+ *   weblogs - list of weblog handles to warm up, hottest first
+ *   front-page - "true" to request the front page of each weblog
+ *   permalinks - how many of the latest entries to request permalinks for
+ *   feed-entries-rss, feed-entries-atom - "true" to request entries feeds
+ *   threads, minDelay, maxDelay, slowResponse, timeout, baseUrl - tuning,
+ *   delays in milliseconds and timeout in minutes
+ *
+ * The output holds the number of weblogs, urls, pages warmed and failed and
+ * the duration in milliseconds.
  */
 public class WeblogCacheWarmupJob implements Job {
-    
+
     private static final Log log = LogFactory.getLog(WeblogCacheWarmupJob.class);
-    
+
+    // header sent with warmup requests, so they aren't counted as hits
+    public static final String WARMUP_HEADER = "X-Roller-Warmup";
+
+    // value of the header which is accepted, shared by the nodes of a cluster
+    private static final String SECRET_PROPERTY = "cache.warmup.secret";
+
+    // value of the header without a configured secret, only known to this JVM
+    private static final String TOKEN = newToken();
+
     // inputs from the user
     private Map<String, Object> inputs = null;
-    
-    
+
+    // results of the last run
+    private Map<String, Object> outputs = null;
+
+    // current pause between requests, shared by all workers
+    private volatile long delay = 0;
+
+
     @Override
     public void execute() {
-        
+
         log.debug("starting");
-        
+
         // check inputs to see what work we are going to do
-        if(inputs != null) {
-            
-            // what weblogs will we handle?
-            @SuppressWarnings("unchecked")
-            List<String> weblogs = (List<String>) inputs.get("weblogs");
-            if(weblogs == null) {
-                return;
-            }
-            
-            // should we do rss entries feeds?
-            if("true".equals(inputs.get("feed-entries-rss"))) {
-                this.warmupFeedCache(weblogs, "entries", "rss");
+        if(inputs == null) {
+            return;
+        }
+
+        // what weblogs will we handle?
+        @SuppressWarnings("unchecked")
+        List<String> weblogs = (List<String>) inputs.get("weblogs");
+        if(weblogs == null) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+
+        List<String> urls = collectUrls(weblogs);
+
+        int threads = getInput("threads", 4);
+        long minDelay = getInput("minDelay", 50);
+        long maxDelay = getInput("maxDelay", 5000);
+        long slowResponse = getInput("slowResponse", 2000);
+        this.delay = minDelay;
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger warmed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        int progressStep = Math.max(1, urls.size() / 10);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            for (String url : urls) {
+                pool.execute(() -> {
+                    if (warmup(client, url, slowResponse, minDelay, maxDelay)) {
+                        warmed.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                    int count = done.incrementAndGet();
+                    if (count % progressStep == 0) {
+                        log.info("Warmed up " + count + " of " + urls.size() + " urls");
+                    }
+                });
             }
-            
-            // should we do atom entries feeds?
-            if("true".equals(inputs.get("feed-entries-atom"))) {
-                this.warmupFeedCache(weblogs, "entries", "atom");
+            pool.shutdown();
+            if (!pool.awaitTermination(getInput("timeout", 30), TimeUnit.MINUTES)) {
+                log.warn("Warmup timed out, stopping");
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
         }
-        
+
+        outputs = new HashMap<>();
+        outputs.put("weblogs", weblogs.size());
+        outputs.put("urls", urls.size());
+        outputs.put("warmed", warmed.get());
+        outputs.put("failed", failed.get());
+        outputs.put("duration", System.currentTimeMillis() - start);
+
         log.debug("finished");
     }
-    
-    
+
+
     @Override
     public Map<String, Object> output() {
-       return null; 
+       return outputs;
     }
-    
-    
+
+
     @Override
     public void input(Map<String, Object> input) {
         this.inputs = input;
     }
-    
-    
-    private void warmupFeedCache(List<String> weblogs, String type, String format) {
-        
-        if(weblogs == null) {
-            return;
+
+
+    /**
+     * Is the request a warmup, which shouldn't be counted as a hit?
+     */
+    public static boolean isWarmupRequest(HttpServletRequest request) {
+        return isWarmupRequest(request, getSecret());
+    }
+
+
+    /**
+     * The header has to carry the secret, wherever the request came from.
+     */
+    static boolean isWarmupRequest(HttpServletRequest request, String secret) {
+
+        String header = request.getHeader(WARMUP_HEADER);
+        if (header == null || StringUtils.isEmpty(secret)) {
+            return false;
         }
-        
-        // we are working on the feed cache
-        WeblogFeedCache feedCache = WeblogFeedCache.getInstance();
-        long start = System.currentTimeMillis();
-        
+
+        return MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8),
+                header.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * The value warmup requests carry in their header, the configured secret
+     * or else this JVM's token.
+     */
+    static String getSecret() {
+        return StringUtils.defaultIfEmpty(WebloggerConfig.getProperty(SECRET_PROPERTY), TOKEN);
+    }
+
+
+    private static String newToken() {
+        byte[] bytes = new byte[24];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+
+    /**
+     * Figure out which urls to request, looking up weblogs and entries up
+     * front so the workers don't need the database.
+     */
+    private List<String> collectUrls(List<String> weblogs) {
+
+        List<String> urls = new ArrayList<>();
+
+        URLStrategy urlStrategy = WebloggerFactory.getWeblogger().getUrlStrategy();
+        WeblogEntryManager entryManager = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        int permalinks = getInput("permalinks", 0);
+
         for (String weblogHandle : weblogs) {
-            log.debug("doing weblog "+weblogHandle);
-            
             try {
-                // we need a feed request to represent the data
-                WeblogFeedRequest feedRequest = new WeblogFeedRequest();
-                feedRequest.setWeblogHandle(weblogHandle);
-                feedRequest.setType(type);
-                feedRequest.setFormat(format);
-                
-                
-                // populate the rendering model
-                Map<String, Object> modelMap = new HashMap<>();
-                Map<String, Object> initData = new HashMap<>();
-                initData.put("request", null);
-                initData.put("feedRequest", feedRequest);
-                initData.put("weblogRequest", feedRequest);
-                
-                // Load models for feeds
-                String feedModels = WebloggerConfig.getProperty("rendering.feedModels");
-                ModelLoader.loadModels(feedModels, modelMap, initData, true);
-                
-                // TODO: re-enable custom models when they are actually used
-                // Load weblog custom models
-                //ModelLoader.loadCustomModels(weblog, model, initData);
-                
-                
-                // lookup Renderer we are going to use
-                Renderer renderer;
-                Template template = new StaticTemplate(
-					"weblog-"+type+"-"+format+".vm", TemplateLanguage.VELOCITY);
-                renderer = RendererManager.getRenderer(template, DeviceType.standard);
-                
-                
-                // render content.  use default size of about 24K for a standard page
-                CachedContent rendererOutput = new CachedContent(RollerConstants.TWENTYFOUR_KB_IN_BYTES);
-                renderer.render(modelMap, rendererOutput.getCachedWriter());
-                
-                
-                // flush rendered output and close
-                rendererOutput.flush();
-                rendererOutput.close();
-                
-                // now just put it in the cache
-                String key = feedCache.generateKey(feedRequest);
-                feedCache.put(key, rendererOutput);
-                
-            } catch(Exception e) {
-                // bummer, error during rendering
-                log.error("Error rendering for weblog "+weblogHandle, e);
+                Weblog weblog = WebloggerFactory.getWeblogger().getWeblogManager()
+                        .getWeblogByHandle(weblogHandle);
+                if (weblog == null) {
+                    continue;
+                }
+
+                if ("true".equals(inputs.get("front-page"))) {
+                    urls.add(urlStrategy.getWeblogURL(weblog, null, true));
+                }
+
+                if (permalinks > 0) {
+                    WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
+                    wesc.setWeblog(weblog);
+                    wesc.setStatus(PubStatus.PUBLISHED);
+                    wesc.setMaxResults(permalinks);
+                    for (WeblogEntry entry : entryManager.getWeblogEntries(wesc)) {
+                        urls.add(urlStrategy.getWeblogEntryURL(weblog, null, entry.getAnchor(), true));
+                    }
+                }
+
+                if ("true".equals(inputs.get("feed-entries-rss"))) {
+                    urls.add(urlStrategy.getWeblogFeedURL(weblog, null, "entries", "rss",
+                            null, null, null, false, true));
+                }
+
+                if ("true".equals(inputs.get("feed-entries-atom"))) {
+                    urls.add(urlStrategy.getWeblogFeedURL(weblog, null, "entries", "atom",
+                            null, null, null, false, true));
+                }
+
+            } catch (Exception e) {
+                log.error("Error looking up urls for weblog " + weblogHandle, e);
+            }
+        }
+
+        // request from the given base url instead of the site url
+        String baseUrl = (String) inputs.get("baseUrl");
+        String siteUrl = WebloggerRuntimeConfig.getAbsoluteContextURL();
+        if (StringUtils.isNotEmpty(baseUrl) && StringUtils.isNotEmpty(siteUrl)) {
+            List<String> rebased = new ArrayList<>(urls.size());
+            for (String url : urls) {
+                rebased.add(url.startsWith(siteUrl) ? baseUrl + url.substring(siteUrl.length()) : url);
             }
+            urls = rebased;
         }
-        
-        long end = System.currentTimeMillis();
-        long time = (end-start) * RollerConstants.SEC_IN_MS;
-        
-        log.info("Completed warmup for "+type+"/"+format+" in "+time+" secs.");
-        
+
+        return urls;
+    }
+
+
+    /**
+     * Request a single url, pausing first and adjusting the pause to how long
+     * the request took.
+     * @return true if the page was rendered or served from the cache
+     */
+    private boolean warmup(HttpClient client, String url, long slowResponse,
+            long minDelay, long maxDelay) {
+
+        try {
+            Thread.sleep(delay);
+
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMinutes(1))
+                    .header(WARMUP_HEADER, getSecret())
+                    .GET()
+                    .build();
+
+            long start = System.currentTimeMillis();
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            long time = System.currentTimeMillis() - start;
+
+            // back off while we are slowing down the site, and speed up again
+            // once responses are quick
+            if (time > slowResponse) {
+                delay = Math.min(maxDelay, delay * 2 + RollerConstants.HALF_SEC_IN_MS);
+            } else {
+                delay = Math.max(minDelay, delay / 2);
+            }
+
+            log.debug("Warmed up " + url + " in " + time + " ms, status " + response.statusCode());
+            return response.statusCode() == 200;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Error warming up " + url + ": " + e.getMessage());
+        }
+
+        return false;
+    }
+
+
+    private int getInput(String name, int defaultValue) {
+        Object value = inputs.get(name);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        } else if (value != null) {
+            try {
+                return Integer.parseInt(value.toString());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid " + name + ": " + value);
+            }
+        }
+        return defaultValue;
     }
-    
+
 }
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.business.HitCountQueue;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.runnable.RollerTaskWithLeasing;
+import org.apache.roller.weblogger.pojos.WeblogHitCount;
+
+
+/**
+ * Warm up the rendering caches for the weblogs getting the most traffic.
+ *
+ * The weblogs are taken from the hits queued since the hit counts were last
+ * recorded, followed by the hottest weblogs of the last day, and are handed
+ * to a WeblogCacheWarmupJob along with the task properties.
+ */
+public class WeblogCacheWarmupTask extends RollerTaskWithLeasing {
+    private static Log log = LogFactory.getLog(WeblogCacheWarmupTask.class);
+
+    public static final String NAME = "WeblogCacheWarmupTask";
+
+
+    // a unique id for this specific task instance
+    // this is meant to be unique for each client in a clustered environment
+    private String clientId = null;
+
+    // a String description of when to start this task
+    private String startTimeDesc = "immediate";
+
+    // interval at which the task is run, default is 1 hour
+    private int interval = 60;
+
+    // lease time given to task lock, default is 30 minutes
+    private int leaseTime = RollerTaskWithLeasing.DEFAULT_LEASE_MINS;
+
+    // how many weblogs to warm up
+    private int weblogs = 20;
+
+    // everything else is passed on to the job
+    private Properties props = null;
+
+    // output of the last warmup
+    private Map<String, Object> runStats = Collections.emptyMap();
+
+
+    @Override
+    public String getClientId() {
+        return clientId;
+    }
+
+    @Override
+    public Date getStartTime(Date currentTime) {
+        return getAdjustedTime(currentTime, startTimeDesc);
+    }
+
+    @Override
+    public String getStartTimeDesc() {
+        return startTimeDesc;
+    }
+
+    @Override
+    public int getInterval() {
+        return this.interval;
+    }
+
+    @Override
+    public int getLeaseTime() {
+        return this.leaseTime;
+    }
+
+
+    public void init() throws WebloggerException {
+        this.init(WeblogCacheWarmupTask.NAME);
+    }
+
+    @Override
+    public void init(String name) throws WebloggerException {
+        super.init(name);
+
+        // get relevant props
+        props = this.getTaskProperties();
+
+        // extract clientId
+        String client = props.getProperty("clientId");
+        if(client != null) {
+            this.clientId = client;
+        }
+
+        // extract start time
+        String startTimeStr = props.getProperty("startTime");
+        if(startTimeStr != null) {
+            this.startTimeDesc = startTimeStr;
+        }
+
+        this.interval = getIntProperty("interval", this.interval);
+        this.leaseTime = getIntProperty("leaseTime", this.leaseTime);
+        this.weblogs = getIntProperty("weblogs", this.weblogs);
+    }
+
+
+    /**
+     * Execute the task.
+     */
+    @Override
+    public void runTask() {
+
+        try {
+            log.info("task started");
+
+            List<String> handles = getHotWeblogs();
+
+            // the lease time bounds how long the job may take
+            Map<String, Object> inputs = new HashMap<>();
+            for (String key : props.stringPropertyNames()) {
+                inputs.put(key, props.getProperty(key));
+            }
+            inputs.put("weblogs", handles);
+            inputs.put("timeout", leaseTime);
+
+            WeblogCacheWarmupJob job = new WeblogCacheWarmupJob();
+            job.input(inputs);
+            job.execute();
+
+            if (job.output() != null) {
+                runStats = job.output();
+            }
+
+            log.info("task completed " + runStats);
+
+        } catch (WebloggerException e) {
+            log.error("Error while warming up caches", e);
+        } catch (Exception ee) {
+            log.error("unexpected exception", ee);
+        } finally {
+            // always release
+            WebloggerFactory.getWeblogger().release();
+        }
+
+    }
+
+
+    @Override
+    protected Map<String, Object> getRunStats() {
+        return runStats;
+    }
+
+
+    /**
+     * Handles of the weblogs with the most recent hits, hottest first.
+     */
+    private List<String> getHotWeblogs() throws WebloggerException {
+
+        // the hits which haven't been recorded yet
+        Map<String, Long> queued = HitCountQueue.getInstance().getHits();
+        List<String> byHits = new ArrayList<>(queued.keySet());
+        byHits.sort((a, b) -> Long.compare(queued.get(b), queued.get(a)));
+
+        Set<String> handles = new LinkedHashSet<>(byHits);
+        List<WeblogHitCount> hotWeblogs = WebloggerFactory.getWeblogger()
+                .getWeblogEntryManager().getHotWeblogs(1, 0, weblogs);
+        for (WeblogHitCount hitCount : hotWeblogs) {
+            handles.add(hitCount.getWeblog().getHandle());
+        }
+
+        List<String> hottest = new ArrayList<>(handles);
+        return hottest.subList(0, Math.min(weblogs, hottest.size()));
+    }
+
+
+    private int getIntProperty(String name, int defaultValue) {
+        String value = props.getProperty(name);
+        if(value != null) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException ex) {
+                log.warn("Invalid " + name + ": " + value);
+            }
+        }
+        return defaultValue;
+    }
+
+
+    /**
+     * Main method so that this task may be run from outside the webapp.
+     */
+    public static void main(String[] args) throws Exception {
+        try {
+            WeblogCacheWarmupTask task = new WeblogCacheWarmupTask();
+            task.init();
+            task.run();
+            System.exit(0);
+        } catch (WebloggerException ex) {
+            ex.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+}
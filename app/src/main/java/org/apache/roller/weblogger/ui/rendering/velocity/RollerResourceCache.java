@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.roller.weblogger.ui.rendering.velocity;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.pojos.Theme;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.resource.ResourceCacheImpl;
+import org.apache.velocity.runtime.resource.ResourceManager;
+
+
+/**
+ * Velocity resource cache which holds compiled templates and listens for
+ * Roller template invalidations.
+ *
+ * Templates served by the RollerResourceLoader are named
+ * <templateId>|<renditionType>, so when a weblog template is saved we evict
+ * every compiled rendition of it right away instead of waiting for the next
+ * modification check.  Templates served by the ThemeResourceLoader are named
+ * <themeId>:<template>|<renditionType>, and are evicted all together when
+ * their theme is reloaded from disk.
+ */
+public class RollerResourceCache extends ResourceCacheImpl implements CacheHandler {
+
+    private static final Log log = LogFactory.getLog(RollerResourceCache.class);
+
+
+    @Override
+    public void initialize(RuntimeServices rs) {
+        super.initialize(rs);
+
+        // listen for template changes
+        CacheManager.registerHandler(this);
+    }
+
+
+    /**
+     * A weblog template has changed.
+     */
+    @Override
+    public void invalidate(WeblogTemplate template) {
+        removeTemplate(template.getId());
+    }
+
+
+    /**
+     * A shared theme has been reloaded from disk.
+     */
+    @Override
+    public void invalidate(Theme theme) {
+        removeTheme(theme.getId());
+    }
+
+
+    /**
+     * Remove all compiled renditions of the given template.
+     *
+     * Velocity keys its cache by resource type followed by resource name.
+     */
+    void removeTemplate(String templateId) {
+
+        if (templateId == null) {
+            return;
+        }
+
+        removeByPrefix(String.valueOf(ResourceManager.RESOURCE_TEMPLATE) + templateId + "|");
+
+        log.debug("REMOVE template " + templateId);
+    }
+
+
+    /**
+     * Remove all compiled templates of the given theme.
+     */
+    void removeTheme(String themeId) {
+
+        if (themeId == null) {
+            return;
+        }
+
+        removeByPrefix(String.valueOf(ResourceManager.RESOURCE_TEMPLATE) + themeId + ":");
+
+        log.debug("REMOVE theme " + themeId);
+    }
+
+
+    private void removeByPrefix(String prefix) {
+        // the LRU map used by Velocity is a synchronized map, so we must hold
+        // its lock while iterating over the keys
+        synchronized (cache) {
+            cache.keySet().removeIf(key -> key.toString().startsWith(prefix));
+        }
+    }
+
+}
@@ -117,24 +117,39 @@ public class RollerResourceLoader extends ResourceLoader {
 	}
 
 	/**
-	 * Files loaded by this resource loader are not reloadable here, as they are
-	 * stored in custom themes and there is no way velocity can trigger a
-	 * reload.
+	 * Templates loaded by this resource loader are stored in custom themes, so
+	 * they are considered modified when the template's last modified time no
+	 * longer matches the time recorded when Velocity compiled it.
 	 * 
 	 * @see org.apache.velocity.runtime.resource.loader.ResourceLoader#isSourceModified(org.apache.velocity.runtime.resource.Resource)
 	 */
     @Override
 	public boolean isSourceModified(Resource resource) {
-		return false;
+		return getLastModified(resource) != resource.getLastModified();
 	}
 
 	/**
-	 * Defaults to return 0.
+	 * Returns the last modified time of the weblog template, or 0 if unknown.
 	 * 
 	 * @see org.apache.velocity.runtime.resource.loader.ResourceLoader#getLastModified(org.apache.velocity.runtime.resource.Resource)
 	 */
     @Override
 	public long getLastModified(Resource resource) {
+
+		String name = resource.getName();
+		if (name.contains("|")) {
+			name = name.split("\\|")[0];
+		}
+
+		try {
+			WeblogTemplate page = WebloggerFactory.getWeblogger()
+					.getWeblogManager().getTemplate(name);
+			if (page != null && page.getLastModified() != null) {
+				return page.getLastModified().getTime();
+			}
+		} catch (WebloggerException ex) {
+			logger.debug("Unable to lookup last modified time of " + name, ex);
+		}
 		return 0;
 	}
 
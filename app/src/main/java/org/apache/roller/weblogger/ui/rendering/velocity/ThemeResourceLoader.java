@@ -139,22 +139,39 @@ public class ThemeResourceLoader extends ResourceLoader {
     }
 
     /**
-     * Files loaded by this resource loader are not reloadable here, as they are
-     * stored in shared themes and there is no way velocity can trigger a
-     * reload.
+     * Files loaded by this resource loader are stored in shared themes, so
+     * they are considered modified when the theme has been reloaded from disk
+     * since Velocity compiled them.
      * 
      * @see org.apache.velocity.runtime.resource.loader.ResourceLoader#isSourceModified(org.apache.velocity.runtime.resource.Resource)
      */
     @Override
     public boolean isSourceModified(Resource resource) {
-        return false;
+        return getLastModified(resource) != resource.getLastModified();
     }
 
     /**
+     * Returns the last modified time of the owning theme, or 0 if unknown.
+     * 
      * @see org.apache.velocity.runtime.resource.loader.ResourceLoader#getLastModified(org.apache.velocity.runtime.resource.Resource)
      */
     @Override
     public long getLastModified(Resource resource) {
+
+        // theme templates name are <theme>:<template>|<deviceType>
+        String[] split = resource.getName().split(":", 2);
+        if (split.length < 2) {
+            return 0;
+        }
+
+        try {
+            Theme theme = WebloggerFactory.getWeblogger().getThemeManager().getTheme(split[0]);
+            if (theme.getLastModified() != null) {
+                return theme.getLastModified().getTime();
+            }
+        } catch (WebloggerException ex) {
+            logger.debug("Unable to lookup last modified time of " + resource.getName(), ex);
+        }
         return 0;
     }
 
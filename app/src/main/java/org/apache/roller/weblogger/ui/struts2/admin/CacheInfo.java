@@ -21,6 +21,7 @@ package org.apache.roller.weblogger.ui.struts2.admin;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.pojos.GlobalPermission;
 import org.apache.roller.weblogger.ui.struts2.util.UIAction;
 import org.apache.roller.weblogger.util.cache.CacheManager;
@@ -36,6 +37,15 @@ public class CacheInfo extends UIAction {
     // map of stats to display
     private Map<String, Map<String, Object>> stats = Collections.emptyMap();
     
+    // map of search index operation times to display
+    private Map<String, Map<String, Object>> indexStats = Collections.emptyMap();
+
+    // state of the queue of search index updates
+    private Map<String, Object> indexQueueStats = Collections.emptyMap();
+    
+    // last run of each scheduled task
+    private Map<String, Map<String, Object>> taskStats = Collections.emptyMap();
+    
     // cache which we would clear when clear() is called
     private String cache = null;
     
@@ -61,6 +71,9 @@ public class CacheInfo extends UIAction {
     @Override
     public void myPrepare() {
         setStats(CacheManager.getStats());
+        setIndexStats(WebloggerFactory.getWeblogger().getIndexManager().getLatencyStats());
+        setIndexQueueStats(WebloggerFactory.getWeblogger().getIndexManager().getQueueStats());
+        setTaskStats(WebloggerFactory.getWeblogger().getThreadManager().getTaskStats());
     }
     
     
@@ -101,6 +114,30 @@ public class CacheInfo extends UIAction {
         this.stats = stats;
     }
 
+    public Map<String, Map<String, Object>> getIndexStats() {
+        return indexStats;
+    }
+
+    public void setIndexStats(Map<String, Map<String, Object>> indexStats) {
+        this.indexStats = indexStats;
+    }
+
+    public Map<String, Object> getIndexQueueStats() {
+        return indexQueueStats;
+    }
+
+    public void setIndexQueueStats(Map<String, Object> indexQueueStats) {
+        this.indexQueueStats = indexQueueStats;
+    }
+
+    public Map<String, Map<String, Object>> getTaskStats() {
+        return taskStats;
+    }
+
+    public void setTaskStats(Map<String, Map<String, Object>> taskStats) {
+        this.taskStats = taskStats;
+    }
+
     public String getCache() {
         return cache;
     }
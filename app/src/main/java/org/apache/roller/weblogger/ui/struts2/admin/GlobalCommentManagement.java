@@ -22,8 +22,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.servlet.http.HttpServletRequest;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
@@ -252,7 +254,7 @@ public class GlobalCommentManagement extends UIAction implements ServletRequestA
         try {
             WeblogEntryManager wmgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
             
-            List<Weblog> flushList = new ArrayList<>();
+            List<WeblogEntryComment> flushList = new ArrayList<>();
             
             // delete all comments with delete box checked
             List<String> deletes = Arrays.asList(getBean().getDeleteComments());
@@ -262,7 +264,7 @@ public class GlobalCommentManagement extends UIAction implements ServletRequestA
                 WeblogEntryComment deleteComment;
                 for (String deleteId : deletes) {
                     deleteComment = wmgr.getComment(deleteId);
-                    flushList.add(deleteComment.getWeblogEntry().getWebsite());
+                    flushList.add(deleteComment);
                     wmgr.removeComment(deleteComment);
                 }
             }
@@ -290,7 +292,7 @@ public class GlobalCommentManagement extends UIAction implements ServletRequestA
                     comment.setStatus(ApprovalStatus.SPAM);
                     wmgr.saveComment(comment);
                     
-                    flushList.add(comment.getWeblogEntry().getWebsite());
+                    flushList.add(comment);
                 } else if(!spamIds.contains(id) &&
                         ApprovalStatus.SPAM.equals(comment.getStatus())) {
                     // Administrator unmarked as spam, so changing to DISAPPROVED
@@ -299,14 +301,19 @@ public class GlobalCommentManagement extends UIAction implements ServletRequestA
                     comment.setStatus(ApprovalStatus.DISAPPROVED);
                     wmgr.saveComment(comment);
                     
-                    flushList.add(comment.getWeblogEntry().getWebsite());
+                    flushList.add(comment);
                 }
             }
             
             WebloggerFactory.getWeblogger().flush();
             
             // notify caches of changes, flush weblogs affected by changes
-            for (Weblog weblog : flushList) {
+            Set<Weblog> weblogs = new HashSet<>();
+            for (WeblogEntryComment comment : flushList) {
+                CacheManager.invalidate(comment);
+                weblogs.add(comment.getWeblogEntry().getWebsite());
+            }
+            for (Weblog weblog : weblogs) {
                 CacheManager.invalidate(weblog);
             }
             
@@ -22,10 +22,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
@@ -33,8 +31,6 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
-import org.apache.roller.weblogger.business.search.IndexManager;
-import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
@@ -221,31 +217,11 @@ public class Comments extends UIAction {
         try {
             WeblogEntryManager wmgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
 
-            // if search is enabled, we will need to re-index all entries with
-            // comments that have been deleted, so build a list of those entries
-            Set<WeblogEntry> reindexEntries = new HashSet<>();
-            if (WebloggerConfig.getBooleanProperty("search.enabled")) {
-
-                CommentSearchCriteria csc = getCommentSearchCriteria();
-
-                List<WeblogEntryComment> targetted = wmgr.getComments(csc);
-                for (WeblogEntryComment comment : targetted) {
-                    reindexEntries.add(comment.getWeblogEntry());
-                }
-            }
-
+            // removing the comments also removes them from the search index
             int deleted = wmgr.removeMatchingComments(getActionWeblog(), null,
                     getBean().getSearchString(), getBean().getStartDate(),
                     getBean().getEndDate(), getBean().getStatus());
 
-            // if we've got entries to reindex then do so
-            if (!reindexEntries.isEmpty()) {
-                IndexManager imgr = WebloggerFactory.getWeblogger().getIndexManager();
-                for (WeblogEntry entry : reindexEntries) {
-                    imgr.addEntryReIndexOperation(entry);
-                }
-            }
-
             addMessage("commentManagement.deleteSuccess",
                     Integer.toString(deleted));
 
@@ -272,16 +248,13 @@ public class Comments extends UIAction {
 
             List<WeblogEntryComment> flushList = new ArrayList<>();
 
-            // if search is enabled, we will need to re-index all entries with
-            // comments that have been approved, so build a list of those
-            // entries
-            Set<WeblogEntry> reindexList = new HashSet<>();
+            // saving and removing comments keeps the search index up to date
 
             // delete all comments with delete box checked
             List<String> deletes = Arrays.asList(getBean().getDeleteComments());
             if (!deletes.isEmpty()) {
                 log.debug("Processing deletes - " + deletes.size());
-                processDeletes(wmgr, deletes, flushList, reindexList);
+                processDeletes(wmgr, deletes, flushList);
             }
 
             // loop through IDs of all comments displayed on page
@@ -293,11 +266,10 @@ public class Comments extends UIAction {
             List<WeblogEntryComment> approvedComments = new ArrayList<>();
 
             processCommentStatusUpdates(wmgr, deletes, approvedIds, spamIds,
-                    approvedComments, flushList, reindexList);
+                    approvedComments, flushList);
 
-            flushAndInvalidate();
+            flushAndInvalidate(flushList);
             sendApprovalNotificationsIfNeeded(approvedComments);
-            reindexEntries(reindexList);
 
             addMessage("commentManagement.updateSuccess");
 
@@ -315,7 +287,7 @@ public class Comments extends UIAction {
     }
 
     private void processDeletes(WeblogEntryManager wmgr, List<String> deletes,
-            List<WeblogEntryComment> flushList, Set<WeblogEntry> reindexList)
+            List<WeblogEntryComment> flushList)
             throws WebloggerException {
         WeblogEntryComment deleteComment = null;
         for (String deleteId : deletes) {
@@ -325,7 +297,6 @@ public class Comments extends UIAction {
             if (getActionWeblog().equals(
                     deleteComment.getWeblogEntry().getWebsite())) {
                 flushList.add(deleteComment);
-                reindexList.add(deleteComment.getWeblogEntry());
                 wmgr.removeComment(deleteComment);
             }
         }
@@ -334,7 +305,7 @@ public class Comments extends UIAction {
     private void processCommentStatusUpdates(WeblogEntryManager wmgr, List<String> deletes,
             List<String> approvedIds, List<String> spamIds,
             List<WeblogEntryComment> approvedComments,
-            List<WeblogEntryComment> flushList, Set<WeblogEntry> reindexList)
+            List<WeblogEntryComment> flushList)
             throws WebloggerException {
         String[] ids = Utilities.stringToStringArray(getBean().getIds(),
                 ",");
@@ -366,7 +337,6 @@ public class Comments extends UIAction {
                     wmgr.saveComment(comment);
 
                     flushList.add(comment);
-                    reindexList.add(comment.getWeblogEntry());
 
                 } else if (spamIds.contains(ids[i])) {
                     log.debug("Marking as spam - " + comment.getId());
@@ -374,7 +344,6 @@ public class Comments extends UIAction {
                     wmgr.saveComment(comment);
 
                     flushList.add(comment);
-                    reindexList.add(comment.getWeblogEntry());
 
                 } else if (!ApprovalStatus.DISAPPROVED.equals(comment
                         .getStatus())) {
@@ -383,21 +352,22 @@ public class Comments extends UIAction {
                     wmgr.saveComment(comment);
 
                     flushList.add(comment);
-                    reindexList.add(comment.getWeblogEntry());
                 }
             }
         }
     }
 
-    private void flushAndInvalidate() {
+    private void flushAndInvalidate(List<WeblogEntryComment> flushList) {
         try {
             WebloggerFactory.getWeblogger().flush();
         } catch (WebloggerException ex) {
             log.error("Error flushing Weblogger session", ex);
         }
 
-        // notify caches of changes by flushing whole site because we can't
-        // invalidate deleted comment objects (JPA nulls the fields out).
+        // notify caches of changes, deleted comments still know their entry
+        for (WeblogEntryComment comment : flushList) {
+            CacheManager.invalidate(comment);
+        }
         CacheManager.invalidate(getActionWeblog());
     }
 
@@ -415,21 +385,6 @@ public class Comments extends UIAction {
         }
     }
 
-    private void reindexEntries(Set<WeblogEntry> reindexList) {
-        // if we've got entries to reindex then do so
-        if (!reindexList.isEmpty()) {
-            try {
-                IndexManager imgr = WebloggerFactory.getWeblogger()
-                        .getIndexManager();
-                for (WeblogEntry entry : reindexList) {
-                    imgr.addEntryReIndexOperation(entry);
-                }
-            } catch (WebloggerException ex) {
-                log.error("Error reindexing entries after comment update", ex);
-            }
-        }
-    }
-
     private void resetBeanPreservingFilters() {
         CommentsBean freshBean = new CommentsBean();
 
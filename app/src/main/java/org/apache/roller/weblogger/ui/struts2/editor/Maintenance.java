@@ -18,7 +18,9 @@
 
 package org.apache.roller.weblogger.ui.struts2.editor;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -68,6 +70,19 @@ public class Maintenance extends UIAction {
         return SUCCESS;
     }
 
+    /**
+     * Progress of a running rebuild of the weblog's search index.
+     */
+    public Map<String, Object> getIndexProgress() {
+        try {
+            return WebloggerFactory.getWeblogger().getIndexManager()
+                    .getRebuildProgress(getActionWeblog());
+        } catch (Exception ex) {
+            log.error("Error getting index rebuild progress", ex);
+            return Collections.emptyMap();
+        }
+    }
+
     /**
      * Flush page cache for weblog.
      */
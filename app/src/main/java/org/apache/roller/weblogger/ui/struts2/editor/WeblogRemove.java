@@ -21,6 +21,7 @@ package org.apache.roller.weblogger.ui.struts2.editor;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.ui.rendering.util.cache.SiteWideCache;
 import org.apache.roller.weblogger.ui.struts2.util.UIAction;
 import org.apache.roller.weblogger.util.cache.CacheManager;
 import org.apache.struts2.convention.annotation.AllowedMethods;
@@ -61,6 +62,9 @@ public class WeblogRemove extends UIAction {
 
             CacheManager.invalidate(getActionWeblog());
 
+            // its entries and comments are gone from the site-wide lists too
+            CacheManager.clear(SiteWideCache.CACHE_ID);
+
             addMessage("websiteRemove.success", getActionWeblog().getName());
 
             return SUCCESS;
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Keeps track of how long something takes, cheaply enough to be recorded on
+ * every request.
+ *
+ * Times are counted in buckets which double in size, starting at one
+ * microsecond, so percentiles are reported as the upper bound of the bucket
+ * they fall in and are accurate to within a factor of two.
+ */
+public class LatencyHistogram {
+
+    // bucket i holds times of less than 2^i microseconds
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+
+    /**
+     * Record how long something took.
+     *
+     * @param nanos time taken in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        total.add(micros);
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+
+    public long getCount() {
+        return count.sum();
+    }
+
+
+    /**
+     * Time below which the given fraction of all recorded times fall.
+     *
+     * @param fraction between 0 and 1, e.g. 0.99 for the 99th percentile
+     * @return time in microseconds, or 0 if nothing was recorded
+     */
+    public long getPercentile(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long recorded = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            recorded += counts[i];
+        }
+        if (recorded == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(fraction * recorded);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                // never report more than the slowest time actually seen
+                return Math.min(1L << i, max.get());
+            }
+        }
+        return max.get();
+    }
+
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.set(0);
+    }
+
+
+    /**
+     * Summary of the recorded times, in milliseconds.
+     */
+    public Map<String, Object> getStats() {
+        long n = count.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", n);
+        stats.put("mean", n > 0 ? toMillis(total.sum() / n) : 0.0);
+        stats.put("p50", toMillis(getPercentile(0.50)));
+        stats.put("p90", toMillis(getPercentile(0.90)));
+        stats.put("p99", toMillis(getPercentile(0.99)));
+        stats.put("max", toMillis(max.get()));
+        return stats;
+    }
+
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+
+}
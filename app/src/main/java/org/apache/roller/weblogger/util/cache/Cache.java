@@ -18,6 +18,7 @@
 
 package org.apache.roller.weblogger.util.cache;
 
+import java.util.Collections;
 import java.util.Map;
 
 
@@ -38,12 +39,31 @@ public interface Cache {
     void put(String key, Object value);
     
     
+    /**
+     * put an item in the cache which was first cached at the given time, so
+     * that it times out when it would have if it had stayed.  caches which
+     * don't expire items just put it.
+     */
+    default void put(String key, Object value, long timeCached) {
+        put(key, value);
+    }
+    
+    
     /**
      * get an item from the cache.
      */
     Object get(String key);
     
     
+    /**
+     * get an item from the cache even if it has expired.  caches which don't
+     * expire items just get it.
+     */
+    default Object getStale(String key) {
+        return get(key);
+    }
+    
+    
     /**
      * remove an item from the cache.
      */
@@ -61,4 +81,21 @@ public interface Cache {
      */
     Map<String, Object> getStats();
     
+    
+    /**
+     * set a listener for entries evicted to make room for new ones.  caches
+     * which don't evict entries may ignore this.
+     */
+    default void setEvictionListener(CacheEvictionListener listener) {
+    }
+    
+    
+    /**
+     * get up to limit of the most recently used entries, hottest first.
+     * caches which don't track usage may return an empty map.
+     */
+    default Map<String, Object> getHottest(int limit) {
+        return Collections.emptyMap();
+    }
+    
 }
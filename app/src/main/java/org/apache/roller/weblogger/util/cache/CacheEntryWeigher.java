@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+
+/**
+ * Estimates how many bytes a cached value occupies.
+ *
+ * Only the payloads that dominate Roller's caches are measured, which is
+ * rendered content and strings.  Anything else weighs nothing and is only
+ * bounded by the entry count of the cache.
+ */
+final class CacheEntryWeigher {
+
+    // a non-instantiable class
+    private CacheEntryWeigher() {}
+
+
+    /**
+     * Get the approximate size in bytes of a cached value.
+     */
+    static long weigh(Object value) {
+
+        // unwrap the entry types used by our caches, which may be nested.
+        // a lastInvalidated time of 0 always returns the wrapped value
+        while (value instanceof LazyExpiringCacheEntry || value instanceof ExpiringCacheEntry) {
+            if (value instanceof LazyExpiringCacheEntry) {
+                value = ((LazyExpiringCacheEntry) value).getValue(0);
+            } else {
+                value = ((ExpiringCacheEntry) value).getRawValue();
+            }
+        }
+
+        if (value instanceof CachedContent) {
+            CachedContent content = (CachedContent) value;
+            byte[] gzipped = content.getGzippedContent();
+            return content.getContent().length + (gzipped != null ? gzipped.length : 0);
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        } else if (value instanceof String) {
+            return 2L * ((String) value).length();
+        }
+
+        return 0;
+    }
+
+}
@@ -31,6 +31,7 @@ import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
 import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.Theme;
 import org.apache.roller.weblogger.pojos.WeblogTemplate;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.util.Reflection;
@@ -265,6 +266,14 @@ public final class CacheManager {
         }
     }
 
+
+    public static void invalidate(Theme theme) {
+        log.debug("invalidating theme = " + theme.getId());
+        for (CacheHandler handler : cacheHandlers) {
+            handler.invalidate(theme);
+        }
+    }
+
     
     /**
      * Flush the entire cache system.
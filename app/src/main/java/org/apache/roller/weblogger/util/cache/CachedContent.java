@@ -6,6 +6,10 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
@@ -22,6 +26,12 @@ public class CachedContent implements AutoCloseable, Serializable {
     // the byte array we use to maintain the cached content
     private byte[] content = new byte[0];
     
+    // hash of the content, computed once the content is complete
+    private String contentHash = null;
+    
+    // gzip compressed copy of the content, if one was made
+    private byte[] gzippedContent = null;
+    
     // content-type of data in byte array
     private final String contentType;
     
@@ -50,6 +60,17 @@ public class CachedContent implements AutoCloseable, Serializable {
     }
     
     
+    /**
+     * Rebuild content which was cached elsewhere, e.g. in a second tier.
+     */
+    CachedContent(byte[] content, byte[] gzippedContent, String contentType, String contentHash) {
+        this.content = content;
+        this.gzippedContent = gzippedContent;
+        this.contentType = contentType;
+        this.contentHash = contentHash;
+    }
+    
+    
     /**
      * Get the content cached in this object as a byte array.  If you convert
      * this back to a string yourself, be sure to re-encode in "UTF-8".
@@ -73,6 +94,44 @@ public class CachedContent implements AutoCloseable, Serializable {
     }
     
     
+    /**
+     * Get a hash of the content which is suitable as a strong entity tag,
+     * or null if this CachedContent has not been closed yet.
+     */
+    public String getContentHash() {
+        return this.contentHash;
+    }
+    
+    
+    /**
+     * Get the gzip compressed copy of the content, or null if the content
+     * was not compressed.
+     */
+    public byte[] getGzippedContent() {
+        return this.gzippedContent;
+    }
+    
+    
+    /**
+     * Make a gzip compressed copy of the content so that it can be sent to
+     * clients as is.  This should be done once, after close(), and the copy
+     * is only kept if it is actually smaller than the content.
+     */
+    public void compress() throws IOException {
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(this.content.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(this.content);
+        }
+        
+        if(bytes.size() < this.content.length) {
+            this.gzippedContent = bytes.toByteArray();
+        }
+        
+        log.debug("COMPRESSED "+this.content.length+" to "+bytes.size());
+    }
+    
+    
     public PrintWriter getCachedWriter() {
         return cachedWriter;
     }
@@ -123,7 +182,22 @@ public class CachedContent implements AutoCloseable, Serializable {
             this.outstream = null;
         }
         
+        if(this.contentHash == null) {
+            this.contentHash = hash(this.content);
+        }
+        
         log.debug("CLOSED");
     }
     
+    
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+    
 }
@@ -0,0 +1,369 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+
+
+/**
+ * An expiring LRU cache which does not serialize readers and writers.
+ *
+ * Entries live in a ConcurrentHashMap and record their last access time, so
+ * gets and puts never take a shared lock.  When the cache grows beyond its
+ * entry or byte limit a single thread evicts entries by sampling a few of
+ * them and removing the least recently used one, which approximates LRU
+ * without maintaining a global access order.
+ */
+public class ConcurrentLRUCacheImpl implements Cache {
+
+    private static final Log log = LogFactory.getLog(ConcurrentLRUCacheImpl.class);
+
+    // how many entries we look at to pick each eviction victim
+    private static final int SAMPLE_SIZE = 8;
+
+    private final String id;
+    private final Map<String, CacheNode> cache;
+    private final int maxsize;
+    private final long maxbytes;
+    private long timeout = 0;
+
+    // current approximate footprint of all cached values
+    private final AtomicLong bytes = new AtomicLong();
+
+    // only one thread evicts at a time, others just carry on
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    // sampling position, only touched while holding the eviction lock
+    private Iterator<Map.Entry<String, CacheNode>> evictionHand = null;
+    
+    private volatile CacheEvictionListener evictionListener = null;
+
+    // for metrics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder removes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile Date startTime = new Date();
+
+
+    protected ConcurrentLRUCacheImpl(String id, int maxsize, long maxbytes, long timeout) {
+
+        this.id = id;
+        this.maxsize = maxsize;
+        this.maxbytes = maxbytes;
+        this.cache = new ConcurrentHashMap<>(maxsize * 4 / 3 + 1);
+
+        // timeout is specified in seconds; only positive values allowed
+        if (timeout > 0) {
+            this.timeout = timeout * RollerConstants.SEC_IN_MS;
+        }
+    }
+
+
+    @Override
+    public String getId() {
+        return this.id;
+    }
+
+
+    /**
+     * Store an entry in the cache.
+     */
+    @Override
+    public void put(String key, Object value) {
+
+        put(key, value, System.currentTimeMillis());
+    }
+
+
+    /**
+     * Store an entry which was first cached at the given time.
+     */
+    @Override
+    public void put(String key, Object value, long timeCached) {
+
+        CacheNode node = new CacheNode(value, CacheEntryWeigher.weigh(value), timeCached);
+        CacheNode old = this.cache.put(key, node);
+
+        this.bytes.addAndGet(old == null ? node.weight : node.weight - old.weight);
+        puts.increment();
+
+        evictIfNeeded();
+    }
+
+
+    /**
+     * Retrieve an entry from the cache.
+     *
+     * If the cached object has expired then we return null, just as if the
+     * entry wasn't found.  The entry is kept until it is replaced or evicted
+     * though, evicted first, so that it can still be served stale while a
+     * fresh copy is made.
+     */
+    @Override
+    public Object get(String key) {
+
+        CacheNode node = this.cache.get(key);
+
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (isExpired(node)) {
+            log.debug("EXPIRED ["+key+"]");
+            misses.increment();
+            return null;
+        }
+
+        node.lastAccess = System.nanoTime();
+        hits.increment();
+
+        return node.value;
+    }
+
+
+    /**
+     * Retrieve an entry from the cache whether it has expired or not.
+     */
+    @Override
+    public Object getStale(String key) {
+
+        CacheNode node = this.cache.get(key);
+
+        return (node != null) ? node.value : null;
+    }
+
+
+    @Override
+    public void remove(String key) {
+
+        CacheNode old = this.cache.remove(key);
+        if (old != null) {
+            this.bytes.addAndGet(-old.weight);
+        }
+        removes.increment();
+    }
+
+
+    @Override
+    public void clear() {
+
+        // remove entries one at a time so the byte count stays accurate
+        // while other threads keep adding entries
+        for (String key : this.cache.keySet()) {
+            CacheNode old = this.cache.remove(key);
+            if (old != null) {
+                this.bytes.addAndGet(-old.weight);
+            }
+        }
+
+        // clear metrics
+        hits.reset();
+        misses.reset();
+        puts.reset();
+        removes.reset();
+        evictions.reset();
+        startTime = new Date();
+    }
+
+
+    @Override
+    public void setEvictionListener(CacheEvictionListener listener) {
+        this.evictionListener = listener;
+    }
+    
+    
+    @Override
+    public Map<String, Object> getHottest(int limit) {
+
+        // take the access times once, as they keep changing while we sort
+        List<AccessSample> samples = new ArrayList<>(this.cache.size());
+        for (Map.Entry<String, CacheNode> entry : this.cache.entrySet()) {
+            if (!isExpired(entry.getValue())) {
+                samples.add(new AccessSample(entry.getKey(), entry.getValue()));
+            }
+        }
+        samples.sort((a, b) -> Long.compare(b.lastAccess, a.lastAccess));
+
+        Map<String, Object> hottest = new LinkedHashMap<>();
+        for (int i = 0; i < samples.size() && i < limit; i++) {
+            hottest.put(samples.get(i).key, samples.get(i).value);
+        }
+
+        return hottest;
+    }
+
+
+    @Override
+    public Map<String, Object> getStats() {
+
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("startTime", this.startTime);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("puts", puts.sum());
+        stats.put("removes", removes.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("size", this.cache.size());
+        stats.put("maxSize", this.maxsize);
+        stats.put("bytes", this.bytes.get());
+        if (this.maxbytes > 0) {
+            stats.put("maxBytes", this.maxbytes);
+        }
+
+        // calculate efficiency
+        if ((hitCount + missCount) > 0) {
+            double efficiency = (double) hitCount / (missCount + hitCount);
+            stats.put("efficiency", efficiency * RollerConstants.PERCENT_100);
+        }
+
+        return stats;
+    }
+
+
+    private boolean isExpired(CacheNode node) {
+        return this.timeout > 0 &&
+                (node.timeCached + this.timeout) < System.currentTimeMillis();
+    }
+
+
+    private boolean isOverCapacity() {
+        return this.cache.size() > this.maxsize ||
+                (this.maxbytes > 0 && this.bytes.get() > this.maxbytes);
+    }
+
+
+    private boolean removeNode(String key, CacheNode node) {
+        if (this.cache.remove(key, node)) {
+            this.bytes.addAndGet(-node.weight);
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Evict entries until we are back within our limits.
+     *
+     * If another thread is already evicting then we leave the work to it.
+     */
+    private void evictIfNeeded() {
+
+        if (!isOverCapacity() || !this.evictionLock.tryLock()) {
+            return;
+        }
+
+        try {
+            while (isOverCapacity()) {
+                Map.Entry<String, CacheNode> victim = null;
+
+                for (int i = 0; i < SAMPLE_SIZE; i++) {
+                    Map.Entry<String, CacheNode> candidate = nextSample();
+                    if (candidate == null) {
+                        break;
+                    }
+                    if (isExpired(candidate.getValue())) {
+                        victim = candidate;
+                        break;
+                    }
+                    if (victim == null ||
+                            candidate.getValue().lastAccess < victim.getValue().lastAccess) {
+                        victim = candidate;
+                    }
+                }
+
+                if (victim == null) {
+                    break;
+                }
+
+                if (removeNode(victim.getKey(), victim.getValue())) {
+                    evictions.increment();
+                    CacheEvictionListener listener = this.evictionListener;
+                    if (listener != null) {
+                        listener.evicted(victim.getKey(), victim.getValue().value);
+                    }
+                }
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+
+    /**
+     * Walk the cache round-robin so that every entry gets sampled over time.
+     */
+    private Map.Entry<String, CacheNode> nextSample() {
+
+        if (this.evictionHand == null || !this.evictionHand.hasNext()) {
+            this.evictionHand = this.cache.entrySet().iterator();
+            if (!this.evictionHand.hasNext()) {
+                return null;
+            }
+        }
+
+        return this.evictionHand.next();
+    }
+
+
+    private static final class CacheNode {
+        private final Object value;
+        private final long weight;
+        private final long timeCached;
+        private volatile long lastAccess = System.nanoTime();
+
+        CacheNode(Object value, long weight, long timeCached) {
+            this.value = value;
+            this.weight = weight;
+            this.timeCached = timeCached;
+        }
+    }
+
+
+    private static final class AccessSample {
+        private final String key;
+        private final Object value;
+        private final long lastAccess;
+
+        AccessSample(String key, CacheNode node) {
+            this.key = key;
+            this.value = node.value;
+            this.lastAccess = node.lastAccess;
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Reads and writes snapshots of rendered content to disk, so that caches can
+ * survive a restart.
+ *
+ * A snapshot holds the cache keys, hottest first, along with the content and
+ * the time it was first cached.  Keeping the original cache time means that
+ * restored content is still checked against the last modification of the
+ * weblog it was rendered from.
+ */
+public final class ContentSnapshot {
+
+    // identifies the file format, bump the version when it changes
+    private static final int MAGIC = 0x52434348;
+    private static final int VERSION = 1;
+
+    private ContentSnapshot() {
+    }
+
+
+    /**
+     * Write a snapshot, replacing the given file once it is complete.
+     *
+     * @param entries cache keys mapped to the content cached under them
+     * @return number of entries written
+     */
+    public static int write(Path file, Map<String, LazyExpiringCacheEntry> entries) throws IOException {
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+
+        int count = 0;
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+
+                for (Map.Entry<String, LazyExpiringCacheEntry> entry : entries.entrySet()) {
+                    Object value = entry.getValue().getValue(0);
+                    if (!(value instanceof CachedContent)) {
+                        continue;
+                    }
+                    CachedContent content = (CachedContent) value;
+
+                    out.writeBoolean(true);
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().getTimeCached());
+                    writeString(out, content.getContentType());
+                    writeString(out, content.getContentHash());
+                    writeBytes(out, content.getContent());
+                    writeBytes(out, content.getGzippedContent());
+                    count++;
+                }
+                out.writeBoolean(false);
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        return count;
+    }
+
+
+    /**
+     * Read a snapshot.
+     *
+     * @return cache keys mapped to their content, in the order they were
+     *         written, or an empty map if there is no such file
+     */
+    public static Map<String, LazyExpiringCacheEntry> read(Path file) throws IOException {
+
+        Map<String, LazyExpiringCacheEntry> entries = new LinkedHashMap<>();
+        if (!Files.exists(file)) {
+            return entries;
+        }
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown snapshot format in " + file);
+            }
+
+            while (in.readBoolean()) {
+                String key = in.readUTF();
+                long timeCached = in.readLong();
+                String contentType = readString(in);
+                String contentHash = readString(in);
+                byte[] content = readBytes(in);
+                byte[] gzippedContent = readBytes(in);
+
+                CachedContent cached = new CachedContent(content, gzippedContent, contentType, contentHash);
+                entries.put(key, new LazyExpiringCacheEntry(cached, timeCached));
+            }
+        }
+
+        return entries;
+    }
+
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
+}
@@ -35,9 +35,14 @@ public class ExpiringCacheEntry implements Serializable {
     
     
     public ExpiringCacheEntry(Object value, long timeout) {
+        this(value, timeout, System.currentTimeMillis());
+    }
+    
+    
+    public ExpiringCacheEntry(Object value, long timeout, long timeCached) {
         this.value = value;
         this.timeout = Math.max(0, timeout);  // make sure that we don't support negative values
-        this.timeCached = System.currentTimeMillis();
+        this.timeCached = timeCached;
     }
     
     
@@ -65,6 +70,14 @@ public class ExpiringCacheEntry implements Serializable {
     }
     
     
+    /**
+     * Retrieve the value of this cache entry whether it has expired or not.
+     */
+    Object getRawValue() {
+        return this.value;
+    }
+    
+    
     /**
      * Determine if this cache entry has expired.
      */
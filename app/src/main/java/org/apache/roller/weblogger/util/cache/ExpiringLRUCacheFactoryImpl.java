@@ -42,6 +42,7 @@ public class ExpiringLRUCacheFactoryImpl implements CacheFactory {
     public Cache constructCache(Map<String, ?> properties) {
         
         int size = 100;
+        long maxBytes = 0;
         long timeout = 15 * 60;
         String id = "unknown";
         
@@ -57,14 +58,22 @@ public class ExpiringLRUCacheFactoryImpl implements CacheFactory {
             log.warn("invalid timeout property", e);
         }
         
+        if (properties.get("maxBytes") != null) {
+            try {
+                maxBytes = Long.parseLong((String) properties.get("maxBytes"));
+            } catch(Exception e) {
+                log.warn("invalid maxBytes property", e);
+            }
+        }
+        
         String cacheId = (String) properties.get("id");
         if(cacheId != null) {
             id = cacheId;
         }
         
-        Cache cache = new ExpiringLRUCacheImpl(id, size, timeout);
+        Cache cache = new ExpiringLRUCacheImpl(id, size, maxBytes, timeout);
         
-        log.debug("new cache constructed. size=" + size + ", timeout=" + timeout);
+        log.debug("new cache constructed. size=" + size + ", maxBytes=" + maxBytes + ", timeout=" + timeout);
         
         return cache;
     }
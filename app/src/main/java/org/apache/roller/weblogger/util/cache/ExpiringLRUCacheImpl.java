@@ -42,7 +42,13 @@ public class ExpiringLRUCacheImpl extends LRUCacheImpl {
     
     protected ExpiringLRUCacheImpl(String id, int maxsize, long timeout) {
         
-        super(id, maxsize);
+        this(id, maxsize, 0, timeout);
+    }
+    
+    
+    protected ExpiringLRUCacheImpl(String id, int maxsize, long maxbytes, long timeout) {
+        
+        super(id, maxsize, maxbytes);
         
         // timeout is specified in seconds; only positive values allowed
         if (timeout > 0) {
@@ -65,11 +71,24 @@ public class ExpiringLRUCacheImpl extends LRUCacheImpl {
     }
     
     
+    /**
+     * Store an entry which was first cached at the given time.
+     */
+    @Override
+    public synchronized void put(String key, Object value, long timeCached) {
+        
+        ExpiringCacheEntry entry = new ExpiringCacheEntry(value, this.timeout, timeCached);
+        super.put(key, entry);
+    }
+    
+    
     /**
      * Retrieve an entry from the cache.
      *
      * This LRU cache supports timeouts, so if the cached object has expired
-     * then we return null, just as if the entry wasn't found.
+     * then we return null, just as if the entry wasn't found.  The entry is
+     * kept until it is replaced or evicted though, so that it can still be
+     * served stale while a fresh copy is made.
      */
     @Override
     public synchronized Object get(String key) {
@@ -85,11 +104,23 @@ public class ExpiringLRUCacheImpl extends LRUCacheImpl {
             if (value == null) {
                 log.debug("EXPIRED ["+key+"]");
                 hits--;
-                super.remove(key);
+                misses++;
             }
         }
         
         return value;
     }
     
+    
+    /**
+     * Retrieve an entry from the cache whether it has expired or not.
+     */
+    @Override
+    public synchronized Object getStale(String key) {
+        
+        ExpiringCacheEntry entry = (ExpiringCacheEntry) super.get(key);
+        
+        return (entry != null) ? entry.getRawValue() : null;
+    }
+    
 }
@@ -18,20 +18,32 @@
 
 package org.apache.roller.weblogger.util.cache;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.roller.util.RollerConstants;
 
 
 /**
  * A simple LRU Cache.
+ *
+ * The cache is bounded by its number of entries and optionally by the
+ * approximate size in bytes of the cached content.
  */
 public class LRUCacheImpl implements Cache {
     
     private final String id;
     private final Map<String, Object> cache;
+    private final long maxbytes;
+    
+    // current approximate footprint of all cached values
+    protected long bytes = 0;
+    
+    private CacheEvictionListener evictionListener = null;
     
     // for metrics
     protected double hits = 0;
@@ -49,8 +61,15 @@ public class LRUCacheImpl implements Cache {
     
     protected LRUCacheImpl(String id, int maxsize) {
         
+        this(id, maxsize, 0);
+    }
+    
+    
+    protected LRUCacheImpl(String id, int maxsize, long maxbytes) {
+        
         this.id = id;
-        this.cache = new LRULinkedHashMap<>(maxsize);
+        this.maxbytes = maxbytes;
+        this.cache = new LRULinkedHashMap(maxsize);
     }
     
     
@@ -66,8 +85,23 @@ public class LRUCacheImpl implements Cache {
     @Override
     public synchronized void put(String key, Object value) {
         
-        this.cache.put(key, value);
+        Object old = this.cache.put(key, value);
+        bytes += CacheEntryWeigher.weigh(value);
+        if (old != null) {
+            bytes -= CacheEntryWeigher.weigh(old);
+        }
         puts++;
+        
+        // drop least recently used entries until we are within our budget
+        if (maxbytes > 0) {
+            Iterator<Map.Entry<String, Object>> entries = this.cache.entrySet().iterator();
+            while (bytes > maxbytes && entries.hasNext()) {
+                Map.Entry<String, Object> eldest = entries.next();
+                bytes -= CacheEntryWeigher.weigh(eldest.getValue());
+                entries.remove();
+                evicted(eldest.getKey(), eldest.getValue());
+            }
+        }
     }
     
     
@@ -93,7 +127,10 @@ public class LRUCacheImpl implements Cache {
     @Override
     public synchronized void remove(String key) {
         
-        this.cache.remove(key);
+        Object old = this.cache.remove(key);
+        if (old != null) {
+            bytes -= CacheEntryWeigher.weigh(old);
+        }
         removes++;
     }
     
@@ -102,6 +139,7 @@ public class LRUCacheImpl implements Cache {
     public synchronized void clear() {
         
         this.cache.clear();
+        bytes = 0;
         
         // clear metrics
         hits = 0;
@@ -112,6 +150,33 @@ public class LRUCacheImpl implements Cache {
     }
     
     
+    @Override
+    public synchronized void setEvictionListener(CacheEvictionListener listener) {
+        this.evictionListener = listener;
+    }
+    
+    
+    @Override
+    public synchronized Map<String, Object> getHottest(int limit) {
+        
+        // the map is in access order, so the most recently used come last
+        List<Map.Entry<String, Object>> entries = new ArrayList<>(this.cache.entrySet());
+        Map<String, Object> hottest = new LinkedHashMap<>();
+        for (int i = entries.size() - 1; i >= 0 && hottest.size() < limit; i--) {
+            hottest.put(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+        
+        return hottest;
+    }
+    
+    
+    private void evicted(String key, Object value) {
+        if (evictionListener != null) {
+            evictionListener.evicted(key, value);
+        }
+    }
+    
+    
     @Override
     public Map<String, Object> getStats() {
         
@@ -121,6 +186,10 @@ public class LRUCacheImpl implements Cache {
         stats.put("misses", this.misses);
         stats.put("puts", this.puts);
         stats.put("removes", this.removes);
+        stats.put("bytes", this.bytes);
+        if (this.maxbytes > 0) {
+            stats.put("maxBytes", this.maxbytes);
+        }
         
         // calculate efficiency
         if((misses - removes) > 0) {
@@ -133,7 +202,7 @@ public class LRUCacheImpl implements Cache {
     
     
     // David Flanaghan: http://www.davidflanagan.com/blog/000014.html
-    private static class LRULinkedHashMap<K, V> extends LinkedHashMap<K, V> {
+    private class LRULinkedHashMap extends LinkedHashMap<String, Object> {
         protected int maxsize;
         
         public LRULinkedHashMap(int maxsize) {
@@ -142,8 +211,13 @@ public class LRUCacheImpl implements Cache {
         }
         
         @Override
-        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-            return this.size() > this.maxsize;
+        protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+            if (this.size() > this.maxsize) {
+                bytes -= CacheEntryWeigher.weigh(eldest.getValue());
+                evicted(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+            return false;
         }
     }
     
@@ -52,7 +52,16 @@ public class LazyExpiringCacheEntry implements Serializable {
         this.value = item;
         this.timeCached = System.currentTimeMillis();
     }
-    
+
+
+    /**
+     * Wrap an item which was built from data as it was at the given time.
+     */
+    public LazyExpiringCacheEntry(Object item, long timeCached) {
+        this.value = item;
+        this.timeCached = timeCached;
+    }
+
     
     /**
      * Retrieve the value of this cache entry if it is still "fresh".
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * A second tier for rendered content which keeps the bytes outside of the
+ * Java heap.
+ *
+ * Content is written into a single region of memory, either a direct buffer
+ * or a memory-mapped file in a given directory, which is used as a ring.
+ * New content is always appended, and once the ring wraps around the oldest
+ * content gets overwritten and dropped from the index.  Only the small index
+ * lives on the heap, so the region can hold far more pages than the heap
+ * could without adding to garbage collection work.
+ *
+ * Content is never served straight from the region.  A hit copies it back
+ * onto the heap and hands it to the first tier, so it costs one copy and any
+ * further hits are plain first tier hits.  Serving from the region instead
+ * would mean keeping its bytes from being overwritten for as long as a
+ * client takes to read them, and the servlet output streams want a byte
+ * array anyway.
+ */
+public class OffHeapContentStore {
+
+    private static final Log log = LogFactory.getLog(OffHeapContentStore.class);
+
+    private final String id;
+    private final ByteBuffer region;
+    private final int capacity;
+
+    // total number of bytes ever written, the ring position is this modulo capacity
+    private long writePosition = 0;
+
+    private final Map<String, Slot> index = new HashMap<>();
+
+    // slots in the order they were written, so we know which get overwritten
+    private final Deque<Slot> writeOrder = new ArrayDeque<>();
+
+    // for metrics
+    private long hits = 0;
+    private long misses = 0;
+    private long puts = 0;
+    private long overwrites = 0;
+    private Date startTime = new Date();
+
+
+    /**
+     * @param id identifier used for the stats and the file name
+     * @param capacity size in bytes of the region
+     * @param directory where to put the memory-mapped file, or null to use
+     *        direct memory instead
+     */
+    public OffHeapContentStore(String id, int capacity, String directory) throws IOException {
+
+        this.id = id;
+        this.capacity = capacity;
+
+        if (StringUtils.isEmpty(directory)) {
+            this.region = ByteBuffer.allocateDirect(capacity);
+        } else {
+            Path dir = Files.createDirectories(Paths.get(directory));
+            Path file = Files.createTempFile(dir, id, ".cache");
+
+            // the file is deleted once the channel is closed, the mapping
+            // stays valid until the JVM exits
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+                this.region = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+        }
+
+        log.info("Second tier for " + id + " holds " + capacity + " bytes "
+                + (StringUtils.isEmpty(directory) ? "in direct memory" : "mapped in " + directory));
+    }
+
+
+    public String getId() {
+        return id;
+    }
+
+
+    /**
+     * Store content, replacing any content stored under the same key.
+     *
+     * @param timeCached when the content was first cached
+     * @param expires when the content expires, or 0 if it never does
+     */
+    public synchronized void put(String key, CachedContent content, long timeCached, long expires) {
+
+        byte[] bytes = content.getContent();
+        byte[] gzipped = content.getGzippedContent();
+        int length = bytes.length + (gzipped != null ? gzipped.length : 0);
+
+        if (length > capacity) {
+            index.remove(key);
+            return;
+        }
+
+        // content is never split, so skip to the start of the ring if it
+        // doesn't fit into the remaining space
+        int offset = (int) (writePosition % capacity);
+        if (offset + length > capacity) {
+            writePosition += capacity - offset;
+            offset = 0;
+        }
+
+        region.position(offset);
+        region.put(bytes);
+        if (gzipped != null) {
+            region.put(gzipped);
+        }
+
+        Slot slot = new Slot(key, writePosition, bytes.length,
+                gzipped != null ? gzipped.length : -1,
+                content.getContentType(), content.getContentHash(), timeCached, expires);
+        writePosition += length;
+
+        index.put(key, slot);
+        writeOrder.addLast(slot);
+        puts++;
+
+        dropOverwritten();
+    }
+
+
+    /**
+     * Remove content from the store and return it, which is how entries get
+     * promoted back to the first tier.  The content is copied out, so the
+     * region is free to be overwritten as soon as this returns.
+     *
+     * @return the content wrapped with the time it was first cached, or null
+     *         if there is no such content or it has expired
+     */
+    public synchronized LazyExpiringCacheEntry take(String key) {
+
+        Slot slot = index.remove(key);
+        if (slot == null || (slot.expires > 0 && slot.expires < System.currentTimeMillis())) {
+            misses++;
+            return null;
+        }
+
+        region.position((int) (slot.start % capacity));
+        byte[] bytes = new byte[slot.length];
+        region.get(bytes);
+        byte[] gzipped = null;
+        if (slot.gzippedLength >= 0) {
+            gzipped = new byte[slot.gzippedLength];
+            region.get(gzipped);
+        }
+        hits++;
+
+        CachedContent content = new CachedContent(bytes, gzipped, slot.contentType, slot.contentHash);
+        return new LazyExpiringCacheEntry(content, slot.timeCached);
+    }
+
+
+    public synchronized void remove(String key) {
+        index.remove(key);
+    }
+
+
+    public synchronized void clear() {
+        index.clear();
+        writeOrder.clear();
+        writePosition = 0;
+
+        // clear metrics
+        hits = 0;
+        misses = 0;
+        puts = 0;
+        overwrites = 0;
+        startTime = new Date();
+    }
+
+
+    public synchronized Map<String, Object> getStats() {
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("startTime", this.startTime);
+        stats.put("hits", this.hits);
+        stats.put("misses", this.misses);
+        stats.put("puts", this.puts);
+        stats.put("overwrites", this.overwrites);
+        stats.put("size", this.index.size());
+        stats.put("maxBytes", this.capacity);
+
+        return stats;
+    }
+
+
+    /**
+     * Forget about content which has been overwritten by newer content.
+     */
+    private void dropOverwritten() {
+
+        long oldestIntact = writePosition - capacity;
+        while (!writeOrder.isEmpty() && writeOrder.peekFirst().start < oldestIntact) {
+            Slot slot = writeOrder.pollFirst();
+            if (index.remove(slot.key, slot)) {
+                overwrites++;
+            }
+        }
+    }
+
+
+    private static final class Slot {
+        private final String key;
+        private final long start;
+        private final int length;
+        private final int gzippedLength;
+        private final String contentType;
+        private final String contentHash;
+        private final long timeCached;
+        private final long expires;
+
+        Slot(String key, long start, int length, int gzippedLength, String contentType,
+                String contentHash, long timeCached, long expires) {
+            this.key = key;
+            this.start = start;
+            this.length = length;
+            this.gzippedLength = gzippedLength;
+            this.contentType = contentType;
+            this.contentHash = contentHash;
+            this.timeCached = timeCached;
+            this.expires = expires;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * Makes sure only one thread at a time builds the value for a given cache key.
+ *
+ * The first thread to join a flight for a key becomes its leader and is
+ * expected to build the value and complete the flight, whether it succeeded
+ * or not.  Threads joining while the flight is open are followers and may
+ * wait for the leader's value instead of building it themselves.
+ *
+ * Typical use ...
+ *
+ * Flight<V> flight = singleFlight.join(key);
+ * if (!flight.isLeader()) {
+ *     V value = flight.await(timeout);
+ *     if (value != null) return value;
+ * }
+ * V value = null;
+ * try {
+ *     value = build();
+ * } finally {
+ *     flight.complete(value);
+ * }
+ */
+public final class SingleFlight<V> {
+
+    private static final Log log = LogFactory.getLog(SingleFlight.class);
+
+    private final Map<String, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+
+    /**
+     * Join the flight for the given key, starting one if there is none.
+     */
+    public Flight<V> join(String key) {
+
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = flights.putIfAbsent(key, future);
+
+        if (existing == null) {
+            return new Flight<>(this, key, future, true);
+        }
+
+        return new Flight<>(this, key, existing, false);
+    }
+
+
+    /**
+     * Number of flights currently in progress.
+     */
+    public int size() {
+        return flights.size();
+    }
+
+
+    /**
+     * A thread's membership of a flight.
+     */
+    public static final class Flight<V> {
+
+        private final SingleFlight<V> owner;
+        private final String key;
+        private final CompletableFuture<V> future;
+        private final boolean leader;
+
+        private Flight(SingleFlight<V> owner, String key, CompletableFuture<V> future, boolean leader) {
+            this.owner = owner;
+            this.key = key;
+            this.future = future;
+            this.leader = leader;
+        }
+
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+
+        /**
+         * Wait for the leader to complete the flight.
+         *
+         * @return the leader's value, or null if it failed or did not finish
+         *         within the timeout
+         */
+        public V await(long timeout, TimeUnit unit) {
+            try {
+                return future.get(timeout, unit);
+            } catch (TimeoutException e) {
+                log.debug("timed out waiting for " + key);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                log.debug("flight failed for " + key, e.getCause());
+            }
+            return null;
+        }
+
+
+        /**
+         * Hand the value to all followers and close the flight.  Only the
+         * leader completes a flight, for followers this does nothing.
+         */
+        public void complete(V value) {
+            if (leader) {
+                owner.flights.remove(key, future);
+                future.complete(value);
+            }
+        }
+
+    }
+
+}
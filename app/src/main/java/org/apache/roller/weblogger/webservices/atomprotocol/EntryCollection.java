@@ -110,6 +110,7 @@ public class EntryCollection {
             mgr.saveWeblogEntry(rollerEntry);
             roller.flush();
 
+            CacheManager.invalidate(rollerEntry);
             CacheManager.invalidate(website);
             if (rollerEntry.isPublished()) {
                 roller.getIndexManager().addEntryReIndexOperation(rollerEntry);
@@ -264,6 +265,7 @@ public class EntryCollection {
                     mgr.saveWeblogEntry(rollerEntry);
                     roller.flush();
                     
+                    CacheManager.invalidate(rollerEntry);
                     CacheManager.invalidate(rollerEntry.getWebsite());
                     if (rollerEntry.isPublished()) {
                         roller.getIndexManager().addEntryReIndexOperation(rollerEntry);
@@ -290,6 +292,7 @@ public class EntryCollection {
             }
             if (RollerAtomHandler.canEdit(user, rollerEntry)) {
                 WeblogEntryManager mgr = roller.getWeblogEntryManager();
+                CacheManager.invalidate(rollerEntry);
                 CacheManager.invalidate(rollerEntry.getWebsite());
                 reindexEntry(rollerEntry);
                 mgr.removeWeblogEntry(rollerEntry);
@@ -31,6 +31,7 @@ import org.apache.roller.weblogger.business.UserManager;
 import org.apache.roller.weblogger.business.WeblogManager;
 import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.ui.core.RollerContext;
 import org.apache.roller.weblogger.util.cache.CacheManager;
 import org.apache.xmlrpc.common.XmlRpcNotAuthorizedException;
@@ -199,4 +200,9 @@ public class BaseAPIHandler implements Serializable {
     protected void flushPageCache(Weblog website) throws Exception {
         CacheManager.invalidate(website);
     }
+    
+    protected void flushPageCache(WeblogEntry entry) throws Exception {
+        CacheManager.invalidate(entry);
+        CacheManager.invalidate(entry.getWebsite());
+    }
 }
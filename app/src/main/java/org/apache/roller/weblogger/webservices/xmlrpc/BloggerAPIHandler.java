@@ -97,7 +97,7 @@ public class BloggerAPIHandler extends BaseAPIHandler {
         
         try {
             // notify cache
-            flushPageCache(entry.getWebsite());
+            flushPageCache(entry);
 
             // delete the entry
             weblogMgr.removeWeblogEntry(entry);
@@ -350,7 +350,7 @@ public class BloggerAPIHandler extends BaseAPIHandler {
                 roller.flush();
                 
                 // notify cache
-                flushPageCache(entry.getWebsite());
+                flushPageCache(entry);
                 
                 return true;
             } catch (Exception e) {
@@ -429,7 +429,7 @@ public class BloggerAPIHandler extends BaseAPIHandler {
             roller.flush();
             
             // notify cache
-            flushPageCache(entry.getWebsite());
+            flushPageCache(entry);
             
             return entry.getId();
         } catch (Exception e) {
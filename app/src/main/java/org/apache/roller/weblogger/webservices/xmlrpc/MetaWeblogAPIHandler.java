@@ -186,7 +186,7 @@ public class MetaWeblogAPIHandler extends BloggerAPIHandler {
             roller.flush();
             
             // notify cache
-            flushPageCache(entry.getWebsite());
+            flushPageCache(entry);
             
             // TODO: Weblogger timestamps need better than 1 second accuracy
             // Until then, we can't allow more than one post per second
@@ -300,7 +300,7 @@ public class MetaWeblogAPIHandler extends BloggerAPIHandler {
             roller.flush();
             
             // notify cache
-            flushPageCache(entry.getWebsite());
+            flushPageCache(entry);
             
             // TODO: Weblogger timestamps need better than 1 second accuracy
             // Until then, we can't allow more than one post per second
@@ -50,3 +50,58 @@
         <br>
     </s:if>
 </s:iterator>
+
+<s:if test="!indexStats.isEmpty">
+    <p><s:text name="cacheInfo.indexLatency" />
+
+    <table class="table table-bordered">
+        <tr>
+            <th></th>
+            <th>count</th>
+            <th>mean</th>
+            <th>p50</th>
+            <th>p90</th>
+            <th>p99</th>
+            <th>max</th>
+        </tr>
+        <s:iterator var="op" value="indexStats">
+            <tr>
+                <td><s:property value="#op.key"/></td>
+                <s:iterator var="prop" value="#op.value">
+                    <td><s:property value="#prop.value"/></td>
+                </s:iterator>
+            </tr>
+        </s:iterator>
+    </table>
+</s:if>
+
+<s:if test="!indexQueueStats.isEmpty">
+    <p><s:text name="cacheInfo.indexQueue" />
+
+    <table class="table table-bordered">
+        <s:iterator var="prop" value="indexQueueStats">
+            <tr>
+                <td><s:property value="#prop.key"/></td>
+                <td><s:property value="#prop.value"/></td>
+            </tr>
+        </s:iterator>
+    </table>
+</s:if>
+
+<s:if test="!taskStats.isEmpty">
+    <p><s:text name="cacheInfo.tasks" />
+
+    <s:iterator var="task" value="taskStats">
+        <table class="table table-bordered">
+            <tr>
+                <th colspan="2"><s:property value="#task.key"/></th>
+            </tr>
+            <s:iterator var="prop" value="#task.value">
+                <tr>
+                    <td><s:property value="#prop.key"/></td>
+                    <td><s:property value="#prop.value"/></td>
+                </tr>
+            </s:iterator>
+        </table>
+    </s:iterator>
+</s:if>
@@ -27,6 +27,9 @@
     <s:submit value="%{getText('maintenance.button.flush')}" action="maintenance!flushCache" cssClass="btn" />
 
     <s:if test="getBooleanProp('search.enabled')">
+        <s:if test="!indexProgress.isEmpty">
+            <p><s:text name="maintenance.message.indexing"><s:param value="indexProgress.entries" /></s:text></p>
+        </s:if>
         <p><s:text name="maintenance.prompt.index" /></p>
         <s:submit value="%{getText('maintenance.button.index')}" action="maintenance!index" cssClass="btn" />
     </s:if>
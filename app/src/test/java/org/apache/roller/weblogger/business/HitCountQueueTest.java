@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test counting hits in the queue, with a queue of its own that no worker
+ * takes the hits from.
+ */
+public class HitCountQueueTest {
+
+    @Test
+    public void testTakeHits() {
+        HitCountQueue queue = new HitCountQueue();
+        Weblog a = weblog("a");
+        Weblog b = weblog("b");
+
+        queue.processHit(a);
+        queue.processHit(a);
+        queue.processHit(b);
+        queue.processHit(null);
+        assertEquals(Map.of("a", 2L, "b", 1L), queue.getHits());
+
+        // getting the hits leaves them to be taken, taking them starts again
+        assertEquals(Map.of("a", 2L, "b", 1L), queue.takeHits());
+        assertEquals(Map.of(), queue.getHits());
+
+        queue.processHit(b);
+        assertEquals(Map.of("b", 1L), queue.takeHits());
+
+        queue.processHit(a);
+        queue.resetHits();
+        assertEquals(Map.of(), queue.takeHits());
+    }
+
+    @Test
+    public void testTakeHitsWhileCounting() throws Exception {
+        HitCountQueue queue = new HitCountQueue();
+        Weblog[] weblogs = { weblog("a"), weblog("b") };
+        int threads = 4;
+        int hitsPerThread = 200000;
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        List<Thread> counting = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < hitsPerThread; i++) {
+                        queue.processHit(weblogs[i % weblogs.length]);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+            counting.add(thread);
+        }
+
+        // take the hits over and over while they're being counted
+        Map<String, Long> taken = new HashMap<>();
+        int takes = 0;
+        start.countDown();
+        while (done.getCount() > 0) {
+            queue.takeHits().forEach((handle, hits) -> taken.merge(handle, hits, Long::sum));
+            takes++;
+        }
+        for (Thread thread : counting) {
+            thread.join();
+        }
+        queue.takeHits().forEach((handle, hits) -> taken.merge(handle, hits, Long::sum));
+        takes++;
+
+        // no hit is taken twice, and only a hit counted while the counters
+        // were swapped can be lost, at most one per counting thread a swap
+        long counted = (long) threads * hitsPerThread / weblogs.length;
+        for (Weblog weblog : weblogs) {
+            long hits = taken.getOrDefault(weblog.getHandle(), 0L);
+            assertTrue(hits <= counted, weblog.getHandle() + " " + hits);
+            assertTrue(counted - hits <= (long) threads * takes, weblog.getHandle() + " " + hits);
+        }
+        assertTrue(takes > 1);
+    }
+
+    private static Weblog weblog(String handle) {
+        Weblog weblog = new Weblog();
+        weblog.setHandle(handle);
+        return weblog;
+    }
+
+}
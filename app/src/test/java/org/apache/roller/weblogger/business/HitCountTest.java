@@ -28,8 +28,10 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -199,6 +201,47 @@ public class HitCountTest  {
         assertNull(hitCount);
     }
     
+    @Test
+    public void testIncrementHitCounts() throws Exception {
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        
+        testUser = TestUtils.getManagedUser(testUser);
+        Weblog blog1 = TestUtils.setupWeblog("hitCntIncr1", testUser);
+        Weblog blog2 = TestUtils.setupWeblog("hitCntIncr2", testUser);
+        
+        WeblogHitCount cnt1 = TestUtils.setupHitCount(blog1, 10);
+        
+        TestUtils.endSession(true);
+        
+        WeblogHitCount cnt2 = null;
+        try {
+            // make sure the count is cached before it's incremented
+            assertEquals(10, mgr.getHitCount(cnt1.getId()).getDailyHits());
+            TestUtils.endSession(true);
+            
+            Map<String, Long> hits = new HashMap<>();
+            hits.put("hitCntIncr1", 5L);
+            hits.put("hitCntIncr2", 7L);
+            hits.put("noSuchWeblog", 3L);
+            mgr.incrementHitCounts(hits);
+            
+            // existing count was incremented, missing one was created
+            assertEquals(15, mgr.getHitCount(cnt1.getId()).getDailyHits());
+            cnt2 = mgr.getHitCountByWeblog(TestUtils.getManagedWebsite(blog2));
+            assertNotNull(cnt2);
+            assertEquals(7, cnt2.getDailyHits());
+            
+        } finally {
+            // cleanup
+            TestUtils.teardownHitCount(cnt1.getId());
+            if (cnt2 != null) {
+                TestUtils.teardownHitCount(cnt2.getId());
+            }
+            TestUtils.teardownWeblog(blog1.getId());
+            TestUtils.teardownWeblog(blog2.getId());
+        }
+    }
+    
     @Test
     public void testResetHitCounts() throws Exception {
         WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
@@ -21,14 +21,19 @@ package org.apache.roller.weblogger.business;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.business.startup.WebloggerStartup;
 import org.apache.roller.weblogger.pojos.*;
 import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.Timestamp;
 import java.util.*;
 
@@ -197,6 +202,44 @@ public class WeblogEntryTest  {
         assertNotNull(entry);
         assertEquals(entry1.getAnchor(), entry.getAnchor());
         
+        // get entries by ids, in the order given
+        entries = mgr.getWeblogEntriesByIds(List.of(entry3.getId(), "nosuchid", entry1.getId()));
+        assertEquals(2, entries.size());
+        assertEquals(entry3.getId(), entries.get(0).getId());
+        assertEquals(entry1.getId(), entries.get(1).getId());
+        assertTrue(mgr.getWeblogEntriesByIds(List.of()).isEmpty());
+        
+        // walk through the published entries two at a time
+        List<String> walked = new ArrayList<>();
+        String lastId = null;
+        do {
+            entries = mgr.getWeblogEntriesAfter(testWeblog, PubStatus.PUBLISHED, lastId, 2);
+            for (WeblogEntry chunkEntry : entries) {
+                walked.add(chunkEntry.getId());
+                lastId = chunkEntry.getId();
+            }
+        } while (entries.size() == 2);
+        WeblogEntrySearchCriteria publishedCriteria = new WeblogEntrySearchCriteria();
+        publishedCriteria.setWeblog(testWeblog);
+        publishedCriteria.setStatus(PubStatus.PUBLISHED);
+        List<String> published = new ArrayList<>();
+        for (WeblogEntry publishedEntry : mgr.getWeblogEntries(publishedCriteria)) {
+            published.add(publishedEntry.getId());
+        }
+        Collections.sort(published);
+        assertEquals(3, published.size());
+        assertEquals(published, walked);
+        
+        // get comments of several entries at once
+        assertTrue(mgr.getComments(List.of(entry1, entry2), null).isEmpty());
+        WeblogEntryComment comment = TestUtils.setupComment("comment1", entry1);
+        Map<String, List<WeblogEntryComment>> comments =
+                mgr.getComments(List.of(entry1, entry2), ApprovalStatus.APPROVED);
+        assertEquals(Set.of(entry1.getId()), comments.keySet());
+        assertEquals(comment.getId(), comments.get(entry1.getId()).get(0).getId());
+        TestUtils.teardownComment(comment.getId());
+        
+        
         // get entry by anchor
         entry = mgr.getWeblogEntryByAnchor(testWeblog, entry1.getAnchor());
         assertNotNull(entry);
@@ -928,6 +971,84 @@ public class WeblogEntryTest  {
         TestUtils.endSession(true);
     }
 
+    /**
+     * Test that saves which add some tags and remove others, along with
+     * unpublishing and publishing the entry, move the weblog and site tag
+     * counts by exactly those changes.
+     */
+    @Test
+    public void testTagAggregatesOfSave() throws Exception {
+
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        Weblog testWeblog2 = TestUtils.setupWeblog("entryTestWeblog2", testUser);
+
+        try {
+            WeblogEntry entry = TestUtils.setupWeblogEntry("entry1", testWeblog, testUser);
+            entry.setTagsAsString("one two three");
+            mgr.saveWeblogEntry(entry);
+            entry = TestUtils.setupWeblogEntry("entry2", testWeblog, testUser);
+            entry.setTagsAsString("one two");
+            mgr.saveWeblogEntry(entry);
+            entry = TestUtils.setupWeblogEntry("entry3", testWeblog2, testUser);
+            entry.setTagsAsString("one three");
+            mgr.saveWeblogEntry(entry);
+            TestUtils.endSession(true);
+
+            testWeblog = TestUtils.getManagedWebsite(testWeblog);
+            assertEquals(Map.of("one", 2, "two", 2, "three", 1), tagCounts(mgr, testWeblog));
+            assertEquals(Map.of("one", 3, "two", 2, "three", 2), tagCounts(mgr, null));
+
+            // drop two and three, keep one, add four and five
+            entry = mgr.getWeblogEntryByAnchor(testWeblog, "entry1");
+            entry.setTagsAsString("one four five");
+            mgr.saveWeblogEntry(entry);
+            TestUtils.endSession(true);
+
+            testWeblog = TestUtils.getManagedWebsite(testWeblog);
+            assertEquals(Map.of("one", 2, "two", 1, "four", 1, "five", 1),
+                    tagCounts(mgr, testWeblog));
+            assertEquals(Map.of("one", 3, "two", 1, "three", 1, "four", 1, "five", 1),
+                    tagCounts(mgr, null));
+
+            // unpublished entries don't count, including tags removed as they're unpublished
+            entry = mgr.getWeblogEntryByAnchor(testWeblog, "entry1");
+            entry.setStatus(PubStatus.DRAFT);
+            entry.setRefreshAggregates(true);
+            entry.setTagsAsString("one four");
+            mgr.saveWeblogEntry(entry);
+            TestUtils.endSession(true);
+
+            testWeblog = TestUtils.getManagedWebsite(testWeblog);
+            assertEquals(Map.of("one", 1, "two", 1), tagCounts(mgr, testWeblog));
+            assertEquals(Map.of("one", 2, "two", 1, "three", 1), tagCounts(mgr, null));
+
+            // publishing again along with a change of tags counts only the new ones
+            entry = mgr.getWeblogEntryByAnchor(testWeblog, "entry1");
+            entry.setStatus(PubStatus.PUBLISHED);
+            entry.setRefreshAggregates(true);
+            entry.setTagsAsString("one two");
+            mgr.saveWeblogEntry(entry);
+            TestUtils.endSession(true);
+
+            testWeblog = TestUtils.getManagedWebsite(testWeblog);
+            assertEquals(Map.of("one", 2, "two", 2), tagCounts(mgr, testWeblog));
+            assertEquals(Map.of("one", 3, "two", 2, "three", 1), tagCounts(mgr, null));
+
+        } finally {
+            TestUtils.teardownWeblog(testWeblog2.getId());
+            TestUtils.endSession(true);
+        }
+    }
+
+    private static Map<String, Integer> tagCounts(WeblogEntryManager mgr, Weblog weblog)
+            throws Exception {
+        Map<String, Integer> counts = new HashMap<>();
+        for (TagStat stat : mgr.getTags(weblog, null, null, 0, -1)) {
+            counts.put(stat.getName(), stat.getCount());
+        }
+        return counts;
+    }
+
   
     
     /**
@@ -1004,6 +1125,10 @@ public class WeblogEntryTest  {
         WeblogManager wmgr = WebloggerFactory.getWeblogger().getWeblogManager();
         UserManager umgr = WebloggerFactory.getWeblogger().getUserManager();
         
+        // start from accurate counts, whatever earlier tests left behind
+        emgr.reconcileCounts();
+        TestUtils.endSession(true);
+
         long existingUserCount = umgr.getUserCount() - 1;
         
         User user1 = TestUtils.setupUser("statuser1");
@@ -1043,6 +1168,24 @@ public class WeblogEntryTest  {
 
             assertEquals(4L, wmgr.getWeblogCount());
             assertEquals(existingUserCount + 2L, umgr.getUserCount());
+
+            // counts follow entries and comments as they are unpublished
+            entry5 = TestUtils.getManagedWeblogEntry(entry5);
+            entry5.setStatus(PubStatus.DRAFT);
+            emgr.saveWeblogEntry(entry5);
+            comment5 = emgr.getComment(comment5.getId());
+            comment5.setStatus(ApprovalStatus.PENDING);
+            emgr.saveComment(comment5);
+            TestUtils.endSession(true);
+
+            blog2 = wmgr.getWeblog(blog2.getId());
+            assertEquals(2L, blog2.getEntryCount());
+            assertEquals(4L, emgr.getEntryCount());
+            assertEquals(2L, blog2.getCommentCount());
+            assertEquals(4L, emgr.getCommentCount());
+
+            // and were kept exactly, so there is nothing to correct
+            assertEquals(0, emgr.reconcileCounts());
             
         } finally {
             
@@ -1067,7 +1210,77 @@ public class WeblogEntryTest  {
             TestUtils.endSession(true);
         }
     }
-}
 
 
+    @Test
+    public void testReconcileCounts() throws Exception {
+
+        WeblogEntryManager emgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        WeblogManager wmgr = WebloggerFactory.getWeblogger().getWeblogManager();
+
+        // start from accurate counts, whatever earlier tests left behind
+        emgr.reconcileCounts();
+        TestUtils.endSession(true);
 
+        String entries = "entries:" + testWeblog.getId();
+        String comments = "comments:" + testWeblog.getId();
+        List<WeblogEntry> created = new ArrayList<>();
+        try {
+            created.add(TestUtils.setupWeblogEntry("entry1", testWeblog, testUser));
+            created.add(TestUtils.setupWeblogEntry("entry2", testWeblog, testUser));
+            TestUtils.endSession(true);
+
+            // a count which drifted, one which is missing and one of a
+            // weblog which is gone
+            updateCounter("update roller_counter set total = 99 where name = ?", entries);
+            updateCounter("delete from roller_counter where name = ?", comments);
+            updateCounter("insert into roller_counter (name, total) values (?, 5)", "entries:nosuchweblog");
+
+            assertEquals(3, emgr.reconcileCounts());
+            TestUtils.endSession(true);
+            assertEquals(Long.valueOf(2), getCounter(entries));
+            assertEquals(Long.valueOf(0), getCounter(comments));
+            assertNull(getCounter("entries:nosuchweblog"));
+            assertEquals(2L, wmgr.getWeblog(testWeblog.getId()).getEntryCount());
+
+            // a missing count is started by the next change to it, and then
+            // corrected by how far it's off
+            updateCounter("delete from roller_counter where name = ?", entries);
+            created.add(TestUtils.setupWeblogEntry("entry3", testWeblog, testUser));
+            created.add(TestUtils.setupWeblogEntry("entry4", testWeblog, testUser));
+            TestUtils.endSession(true);
+            assertEquals(Long.valueOf(2), getCounter(entries));
+
+            assertEquals(1, emgr.reconcileCounts());
+            TestUtils.endSession(true);
+            assertEquals(Long.valueOf(4), getCounter(entries));
+            assertEquals(0, emgr.reconcileCounts());
+
+        } finally {
+            for (WeblogEntry entry : created) {
+                TestUtils.teardownWeblogEntry(entry.getId());
+            }
+            updateCounter("delete from roller_counter where name = ?", "entries:nosuchweblog");
+            TestUtils.endSession(true);
+        }
+    }
+
+    private static void updateCounter(String sql, String name) throws Exception {
+        try (Connection con = WebloggerStartup.getDatabaseProvider().getConnection();
+             PreparedStatement stmt = con.prepareStatement(sql)) {
+            stmt.setString(1, name);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static Long getCounter(String name) throws Exception {
+        try (Connection con = WebloggerStartup.getDatabaseProvider().getConnection();
+             PreparedStatement stmt = con.prepareStatement(
+                     "select total from roller_counter where name = ?")) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.jpa;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.business.WeblogManager;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.startup.WebloggerStartup;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+
+/**
+ * Test that cache invalidations reach the JPA shared cache.
+ */
+public class JPACacheHandlerTest {
+
+    public static Log log = LogFactory.getLog(JPACacheHandlerTest.class);
+
+    User testUser = null;
+    Weblog testWeblog = null;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+
+        // setup weblogger
+        TestUtils.setupWeblogger();
+
+        try {
+            testUser = TestUtils.setupUser("cacheHandlerTestUser");
+            testWeblog = TestUtils.setupWeblog("cacheHandlerTestWeblog", testUser);
+            TestUtils.endSession(true);
+        } catch (Exception ex) {
+            log.error(ex);
+            throw new Exception("Test setup failed", ex);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+
+        try {
+            TestUtils.teardownWeblog(testWeblog.getId());
+            TestUtils.teardownUser(testUser.getUserName());
+            TestUtils.endSession(true);
+        } catch (Exception ex) {
+            log.error(ex);
+            throw new Exception("Test teardown failed", ex);
+        }
+    }
+
+    /**
+     * Test that invalidating a weblog evicts just that weblog and keeps the
+     * cached handle lookups of every other.
+     */
+    @Test
+    public void testInvalidateWeblogEvictsOnlyIt() throws Exception {
+
+        JPAPersistenceStrategy strategy = mock(JPAPersistenceStrategy.class);
+        new JPACacheHandler(strategy).invalidate(testWeblog);
+
+        verify(strategy).evict(Weblog.class, testWeblog.getId());
+        verify(strategy, never()).clearQueryCache(anyString());
+    }
+
+    /**
+     * Test that a weblog changed behind JPA's back is read afresh, when
+     * looked up by its handle, once it has been invalidated.
+     */
+    @Test
+    public void testInvalidatedWeblogIsReadAfresh() throws Exception {
+
+        WeblogManager mgr = WebloggerFactory.getWeblogger().getWeblogManager();
+        String handle = testWeblog.getHandle();
+        String name = mgr.getWeblogByHandle(handle).getName();
+        TestUtils.endSession(false);
+
+        try (Connection con = WebloggerStartup.getDatabaseProvider().getConnection();
+             PreparedStatement ps = con.prepareStatement("UPDATE weblog SET name = ? WHERE id = ?")) {
+            ps.setString(1, "changed elsewhere");
+            ps.setString(2, testWeblog.getId());
+            assertEquals(1, ps.executeUpdate());
+            if (!con.getAutoCommit()) {
+                con.commit();
+            }
+        }
+
+        // still the shared cache's copy
+        assertEquals(name, mgr.getWeblogByHandle(handle).getName());
+        TestUtils.endSession(false);
+
+        CacheManager.invalidate(testWeblog);
+        assertEquals("changed elsewhere", mgr.getWeblogByHandle(handle).getName());
+        TestUtils.endSession(false);
+    }
+
+}
@@ -88,12 +88,12 @@ public class IndexManagerTest {
 
         try {
             SearchResultList result = indexManager.search("Enterprise",
-                testWeblog.getHandle(), null, testWeblog.getLocale(), 0, RESULTS_PER_PAGE,
+                testWeblog.getHandle(), null, testWeblog.getLocale(), 0, RESULTS_PER_PAGE, null, null,
                 WebloggerFactory.getWeblogger().getUrlStrategy());
             assertEquals(2, result.getResults().size());
 
             result = indexManager.search("Tholian",
-                testWeblog.getHandle(), null, testWeblog.getLocale(), 0, RESULTS_PER_PAGE,
+                testWeblog.getHandle(), null, testWeblog.getLocale(), 0, RESULTS_PER_PAGE, null, null,
                 WebloggerFactory.getWeblogger().getUrlStrategy());
             assertEquals(1, result.getResults().size());
 
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test the queue of index operations, against an index manager which only
+ * hands out the write lock.
+ */
+public class IndexOperationQueueTest {
+
+    private LuceneIndexManager manager;
+
+    // names of the operations in the order they were applied
+    private final List<String> applied = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void setUp() {
+        manager = mock(LuceneIndexManager.class);
+        when(manager.getWriteLock()).thenReturn(new ReentrantLock());
+    }
+
+    @Test
+    public void testLatestOperationOfKeyIsApplied() {
+        IndexOperationQueue queue = new IndexOperationQueue(manager, 60000, 100);
+        queue.add("a", new Recording("a1"));
+        queue.add("b", new Recording("b1"));
+        queue.add("a", new Recording("a2"));
+
+        assertTrue(queue.shutdown(1000));
+
+        // the key keeps the place it was first queued in
+        assertEquals(List.of("a2", "b1"), applied);
+        Map<String, Object> stats = queue.getStats();
+        assertEquals(3L, stats.get("queued"));
+        assertEquals(1L, stats.get("coalesced"));
+        assertEquals(2L, stats.get("applied"));
+    }
+
+    @Test
+    public void testBatchSize() throws Exception {
+        IndexOperationQueue queue = new IndexOperationQueue(manager, 0, 2);
+        for (int i = 0; i < 5; i++) {
+            queue.add("op" + i, new Recording("op" + i));
+        }
+        queue.start();
+        try {
+            awaitApplied(queue, 5);
+        } finally {
+            queue.shutdown(1000);
+        }
+
+        assertEquals(List.of("op0", "op1", "op2", "op3", "op4"), applied);
+        assertEquals(3L, queue.getStats().get("batches"));
+        // each batch is made searchable once
+        verify(manager, times(3)).refreshSearcher();
+    }
+
+    @Test
+    public void testRemove() {
+        IndexOperationQueue queue = new IndexOperationQueue(manager, 60000, 100);
+        queue.add("a", new Recording("a1"));
+        queue.add("b", new Recording("b1"));
+        queue.remove("a");
+        queue.remove("c");
+
+        assertTrue(queue.shutdown(1000));
+
+        assertEquals(List.of("b1"), applied);
+        assertEquals(1L, queue.getStats().get("removed"));
+    }
+
+    @Test
+    public void testShutdownAppliesWaitingOperations() {
+        // operations wait far longer than the test, so only shutdown applies them
+        IndexOperationQueue queue = new IndexOperationQueue(manager, 60000, 2);
+        queue.start();
+        for (int i = 0; i < 5; i++) {
+            queue.add("op" + i, new Recording("op" + i));
+        }
+        assertEquals(5, queue.getStats().get("depth"));
+
+        assertTrue(queue.shutdown(1000));
+
+        // in one batch, whatever the batch size
+        assertEquals(List.of("op0", "op1", "op2", "op3", "op4"), applied);
+        assertEquals(0, queue.getStats().get("depth"));
+        assertEquals(1L, queue.getStats().get("batches"));
+    }
+
+    @Test
+    public void testFailingOperationDoesNotStopBatch() {
+        IndexOperationQueue queue = new IndexOperationQueue(manager, 60000, 100);
+        queue.add("a", new Recording("a1"));
+        queue.add("b", new WriteToIndexOperation(manager) {
+            @Override
+            protected void doRun() {
+                throw new IllegalStateException("failed");
+            }
+        });
+        queue.add("c", new Recording("c1"));
+
+        assertTrue(queue.shutdown(1000));
+
+        assertEquals(List.of("a1", "c1"), applied);
+        assertEquals(3L, queue.getStats().get("applied"));
+        assertFalse(((ReentrantLock) manager.getWriteLock()).isLocked());
+    }
+
+    private static void awaitApplied(IndexOperationQueue queue, long count)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (((Number) queue.getStats().get("applied")).longValue() < count
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Operation which only records that it was applied.
+     */
+    private class Recording extends WriteToIndexOperation {
+
+        private final String name;
+
+        Recording(String name) {
+            super(IndexOperationQueueTest.this.manager);
+            this.name = name;
+        }
+
+        @Override
+        protected void doRun() {
+            applied.add(name);
+        }
+    }
+
+}
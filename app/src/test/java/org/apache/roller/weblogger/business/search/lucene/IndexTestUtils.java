@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.util.Map;
+
+/**
+ * Helpers for tests which write documents straight to the index.
+ */
+final class IndexTestUtils {
+
+    private IndexTestUtils() {
+    }
+
+    /**
+     * Wait until every queued index operation has been applied, so that none,
+     * such as the rebuild queued when the index is found inconsistent at
+     * startup, can overwrite the documents a test writes.
+     */
+    static void awaitIndexQueue(LuceneIndexManager manager) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60000;
+        while (System.currentTimeMillis() < deadline) {
+            Map<String, Object> stats = manager.getQueueStats();
+            long done = count(stats, "coalesced") + count(stats, "removed") + count(stats, "applied");
+            if (count(stats, "depth") == 0 && done >= count(stats, "queued")) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        // the last batch may still be holding the lock to be made searchable
+        manager.getWriteLock().lock();
+        manager.getWriteLock().unlock();
+    }
+
+    private static long count(Map<String, Object> stats, String name) {
+        return ((Number) stats.get(name)).longValue();
+    }
+
+}
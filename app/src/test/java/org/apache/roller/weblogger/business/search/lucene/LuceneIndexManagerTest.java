@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.business.URLStrategy;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.search.SearchResultList;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test the caches of the index manager, with documents written straight to
+ * the index rather than through the database.
+ */
+public class LuceneIndexManagerTest {
+
+    private static final String HANDLE = "luceneindexmanagertest";
+
+    private LuceneIndexManager manager;
+    private URLStrategy urlStrategy;
+    private Weblog weblog;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        TestUtils.setupWeblogger();
+        manager = (LuceneIndexManager) WebloggerFactory.getWeblogger().getIndexManager();
+        IndexTestUtils.awaitIndexQueue(manager);
+        urlStrategy = WebloggerFactory.getWeblogger().getUrlStrategy();
+
+        weblog = new Weblog();
+        weblog.setHandle(HANDLE);
+        for (int i = 0; i < 3; i++) {
+            addEntry(i);
+        }
+        manager.refreshSearcher();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        manager.getSharedIndexWriter().deleteDocuments(
+                new Term(FieldConstants.WEBSITE_HANDLE, HANDLE));
+        manager.refreshSearcher();
+    }
+
+    @Test
+    public void testNormalizeTerm() {
+        assertEquals("warp drive", LuceneIndexManager.normalizeTerm("  warp \t drive\n"));
+        assertEquals("Warp OR drive", LuceneIndexManager.normalizeTerm("Warp  OR drive"));
+        assertNull(LuceneIndexManager.normalizeTerm(null));
+    }
+
+    @Test
+    public void testParsedQueryIsShared() throws Exception {
+        assertSame(manager.parseQuery("warp drive"), manager.parseQuery(" warp\tdrive "));
+        assertNotSame(manager.parseQuery("warp drive"), manager.parseQuery("warp OR drive"));
+    }
+
+    @Test
+    public void testResultPageIsCached() throws Exception {
+        double hits = cacheHits();
+        SearchResultList first = search(0);
+        assertEquals(3, first.getTotalHits());
+        assertEquals(hits, cacheHits());
+
+        // the same search differing only in whitespace
+        SearchResultList again = manager.search("  warp   drive ", HANDLE, null, null,
+                0, 2, null, null, urlStrategy);
+        assertEquals(3, again.getTotalHits());
+        assertEquals(first.getNextCursor(), again.getNextCursor());
+        assertEquals(hits + 1, cacheHits());
+
+        // another page is another search
+        search(1);
+        assertEquals(hits + 1, cacheHits());
+    }
+
+    @Test
+    public void testResultPageExpiresWhenIndexChanges() throws Exception {
+        assertEquals(3, search(0).getTotalHits());
+        long generation = manager.getGeneration();
+
+        addEntry(3);
+        manager.refreshSearcher();
+        assertTrue(manager.getGeneration() > generation);
+
+        // the page cached before the change is not used
+        assertEquals(4, search(0).getTotalHits());
+    }
+
+    @Test
+    public void testFacetStateIsKeptUntilRefresh() throws Exception {
+        IndexSearcher searcher = manager.acquireSearcher();
+        try {
+            SortedSetDocValuesReaderState state = manager.getFacetState(searcher);
+            assertSame(searcher.getIndexReader(), state.getReader());
+            assertSame(state, manager.getFacetState(searcher));
+        } finally {
+            manager.releaseSearcher(searcher);
+        }
+
+        addEntry(3);
+        manager.refreshSearcher();
+
+        searcher = manager.acquireSearcher();
+        try {
+            SortedSetDocValuesReaderState state = manager.getFacetState(searcher);
+            assertSame(searcher.getIndexReader(), state.getReader());
+            assertSame(state, manager.getFacetState(searcher));
+        } finally {
+            manager.releaseSearcher(searcher);
+        }
+    }
+
+    @Test
+    public void testPrevPagePastMaxResults() throws Exception {
+        int count = 100;
+        int maxResults = WebloggerConfig.getIntProperty("search.maxResults", 500);
+        int lastPage = (maxResults + count - 1) / count;
+        for (int i = 3; i < lastPage * count + 10; i++) {
+            addEntry(i);
+        }
+        manager.refreshSearcher();
+
+        // down to a page too deep to find by offset, following the cursors
+        List<String> nextCursors = new ArrayList<>();
+        SearchResultList page = search(0, count, null, null);
+        for (int pageNum = 1; pageNum <= lastPage; pageNum++) {
+            nextCursors.add(page.getNextCursor());
+            page = search(pageNum, count, page.getNextCursor(), null);
+            assertEquals(pageNum * count, page.getOffset());
+        }
+        assertEquals(10, page.getLimit());
+        assertNull(page.getNextCursor());
+
+        // without a cursor the page is empty, rather than the first one
+        SearchResultList byOffset = search(lastPage, count, null, null);
+        assertEquals(lastPage * count, byOffset.getOffset());
+        assertEquals(0, byOffset.getLimit());
+        assertNull(byOffset.getNextCursor());
+        assertNull(byOffset.getPrevCursor());
+
+        // and back up again to the same pages
+        for (int pageNum = lastPage - 1; pageNum >= 0; pageNum--) {
+            assertNotNull(page.getPrevCursor());
+            page = search(pageNum, count, null, page.getPrevCursor());
+            assertEquals(pageNum * count, page.getOffset());
+            assertEquals(count, page.getLimit());
+            assertEquals(nextCursors.get(pageNum), page.getNextCursor());
+        }
+        assertNull(page.getPrevCursor());
+    }
+
+    private SearchResultList search(int pageNum) throws Exception {
+        return search(pageNum, 2, null, null);
+    }
+
+    private SearchResultList search(int pageNum, int count, String after, String before)
+            throws Exception {
+        return manager.search("warp drive", HANDLE, null, null, pageNum, count, after, before,
+                urlStrategy);
+    }
+
+    private static double cacheHits() {
+        return ((Number) CacheManager.getStats().get("cache.searchresults").get("hits"))
+                .doubleValue();
+    }
+
+    private void addEntry(int i) throws Exception {
+        WeblogEntry entry = new WeblogEntry();
+        entry.setWebsite(weblog);
+        entry.setTitle("Entry " + i);
+        entry.setText("Engineering is out of warp drive");
+        entry.setLocale("en_US");
+        entry.setPubTime(new Timestamp(1700000000000L + i * 1000L));
+        entry.setUpdateTime(entry.getPubTime());
+        manager.getSharedIndexWriter().addDocuments(IndexOperation.getDocuments(entry, null, null));
+    }
+
+}
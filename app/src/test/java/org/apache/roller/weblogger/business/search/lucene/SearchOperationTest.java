@@ -0,0 +1,393 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogEntryTag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test searching the index, with documents written straight to it rather
+ * than through the database.
+ */
+public class SearchOperationTest {
+
+    private static final String HANDLE = "searchoperationtest";
+
+    private static final long PUBLISHED = 1700000000000L;
+
+    private LuceneIndexManager manager;
+    private Weblog weblog;
+
+    // ids of the entries, newest first as searches sort them
+    private final List<String> ids = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        TestUtils.setupWeblogger();
+        manager = (LuceneIndexManager) WebloggerFactory.getWeblogger().getIndexManager();
+        IndexTestUtils.awaitIndexQueue(manager);
+
+        weblog = new Weblog();
+        weblog.setHandle(HANDLE);
+
+        IndexWriter writer = manager.getSharedIndexWriter();
+        for (int i = 0; i < 5; i++) {
+            // three even entries and two odd, all about trek and the first
+            // two about tos too
+            WeblogCategory category = new WeblogCategory();
+            category.setName(i % 2 == 0 ? "Even" : "Odd");
+            Set<WeblogEntryTag> tags = new HashSet<>();
+            tags.add(tag("trek"));
+            if (i < 2) {
+                tags.add(tag("tos"));
+            }
+
+            WeblogEntry entry = newEntry("Entry " + i, PUBLISHED + i * 1000L);
+            entry.setCategory(category);
+            entry.setTags(tags);
+            writer.addDocuments(IndexOperation.getDocuments(entry, null, null));
+            ids.add(0, entry.getId());
+        }
+        manager.refreshSearcher();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        manager.getSharedIndexWriter().deleteDocuments(
+                new Term(FieldConstants.WEBSITE_HANDLE, HANDLE));
+        manager.refreshSearcher();
+    }
+
+    @Test
+    public void testFirstPage() throws Exception {
+        SearchOperation search = search(0, 2, null);
+        try {
+            assertNull(search.getParseError());
+            assertFalse(search.isFromCursor());
+            assertEquals(0, search.getPageStart());
+            assertEquals(5, search.getTotalHits());
+            assertEquals(ids.subList(0, 2), idsOf(search, 0));
+        } finally {
+            search.release();
+        }
+    }
+
+    @Test
+    public void testNextPageFromCursor() throws Exception {
+        String cursor;
+        SearchOperation search = search(0, 2, null);
+        try {
+            ScoreDoc[] hits = search.getResults().scoreDocs;
+            cursor = SearchOperation.getCursor(hits[1]);
+        } finally {
+            search.release();
+        }
+
+        search = search(2, 2, cursor);
+        try {
+            assertTrue(search.isFromCursor());
+            assertEquals(0, search.getPageStart());
+            assertEquals(5, search.getTotalHits());
+            assertEquals(ids.subList(2, 4), idsOf(search, 0));
+        } finally {
+            search.release();
+        }
+    }
+
+    @Test
+    public void testPrevPageFromCursor() throws Exception {
+        String cursor;
+        SearchOperation search = search(0, 5, null);
+        try {
+            ScoreDoc[] hits = search.getResults().scoreDocs;
+            cursor = SearchOperation.getCursor(hits[3]);
+        } finally {
+            search.release();
+        }
+
+        // the page before a hit, in the same order as any other page
+        search = newSearch(1, 2, null);
+        search.setBefore(cursor);
+        search.doRun();
+        try {
+            assertTrue(search.isFromCursor());
+            assertEquals(0, search.getPageStart());
+            assertEquals(5, search.getTotalHits());
+            assertEquals(ids.subList(1, 3), idsOf(search, 0));
+        } finally {
+            search.release();
+        }
+    }
+
+    @Test
+    public void testStaleCursor() throws Exception {
+        // a cursor from a bigger index than the current one
+        String cursor = SearchOperation.getCursor(new FieldDoc(Integer.MAX_VALUE, Float.NaN,
+                new Object[] { PUBLISHED + 3000L }));
+
+        SearchOperation search = search(2, 2, cursor);
+        try {
+            assertNull(search.getParseError());
+            assertFalse(search.isFromCursor());
+            assertEquals(2, search.getPageStart());
+            assertEquals(ids.subList(2, 4), idsOf(search, 2));
+        } finally {
+            search.release();
+        }
+    }
+
+    @Test
+    public void testGarbageCursor() throws Exception {
+        String negative = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                ("-1 " + PUBLISHED).getBytes(StandardCharsets.UTF_8));
+
+        for (String cursor : new String[] { "not a cursor", "bm9zcGFjZQ", negative }) {
+            SearchOperation search = search(2, 2, cursor);
+            try {
+                assertNull(search.getParseError(), cursor);
+                assertFalse(search.isFromCursor(), cursor);
+                assertEquals(ids.subList(2, 4), idsOf(search, 2), cursor);
+            } finally {
+                search.release();
+            }
+        }
+    }
+
+    @Test
+    public void testFacetCounts() throws Exception {
+        SearchOperation search = newSearch(0, 2, null);
+        search.setCountFacets(true);
+        search.doRun();
+        try {
+            assertEquals(5, search.getTotalHits());
+            assertEquals(2, search.getResults().scoreDocs.length);
+
+            // counted over all hits, not just the page
+            Map<String, Map<String, Integer>> facets = search.getFacets();
+            assertEquals(Map.of("Even", 3, "Odd", 2), facets.get(FieldConstants.FACET_CATEGORY));
+            assertEquals(Map.of("trek", 5, "tos", 2), facets.get(FieldConstants.FACET_TAG));
+            assertEquals(Map.of(HANDLE, 5), facets.get(FieldConstants.FACET_HANDLE));
+
+            // most common first
+            assertEquals("Even", facets.get(FieldConstants.FACET_CATEGORY).keySet().iterator().next());
+        } finally {
+            search.release();
+        }
+    }
+
+    @Test
+    public void testFacetCountsOfFilteredHits() throws Exception {
+        SearchOperation search = newSearch(0, 10, null);
+        search.setCategory("Odd");
+        search.setCountFacets(true);
+        search.doRun();
+        try {
+            assertEquals(2, search.getTotalHits());
+            Map<String, Map<String, Integer>> facets = search.getFacets();
+            assertEquals(Map.of("Odd", 2), facets.get(FieldConstants.FACET_CATEGORY));
+            assertEquals(Map.of("trek", 2, "tos", 1), facets.get(FieldConstants.FACET_TAG));
+        } finally {
+            search.release();
+        }
+    }
+
+    @Test
+    public void testPublishedRange() throws Exception {
+        SearchOperation search = newSearch(0, 10, null);
+        search.setPublishedRange(new Date(PUBLISHED + 1000L), new Date(PUBLISHED + 3000L));
+        search.doRun();
+        try {
+            assertEquals(3, search.getTotalHits());
+            assertEquals(ids.subList(1, 4), idsOf(search, 0));
+        } finally {
+            search.release();
+        }
+    }
+
+    @Test
+    public void testEntryFoundByItsComments() throws Exception {
+        WeblogEntry entry = newEntry("Entry with comments", PUBLISHED - 1000L);
+        List<WeblogEntryComment> comments = new ArrayList<>();
+        List<String> commentIds = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            WeblogEntryComment comment = new WeblogEntryComment();
+            comment.setContent("What about the Klingons?");
+            comments.add(comment);
+            commentIds.add(comment.getId());
+        }
+        manager.getSharedIndexWriter().addDocuments(
+                IndexOperation.getDocuments(entry, null, comments));
+        manager.refreshSearcher();
+
+        SearchOperation search = newSearch(0, 10, null);
+        search.setTerm("klingons");
+        search.doRun();
+        try {
+            assertEquals(List.of(entry.getId()), idsOf(search, 0));
+            Map<String, List<String>> matching = search.getMatchingComments();
+            assertEquals(1, matching.size());
+            assertEquals(5, matching.get(entry.getId()).size());
+            assertTrue(commentIds.containsAll(matching.get(entry.getId())));
+        } finally {
+            search.release();
+        }
+    }
+
+    @Test
+    public void testMatchingCommentsAreBounded() throws Exception {
+        // comments alone, of more entries than are looked at
+        IndexWriter writer = manager.getSharedIndexWriter();
+        for (int i = 0; i < SearchOperation.MAX_MATCHING_COMMENTS + 10; i++) {
+            WeblogEntryComment comment = new WeblogEntryComment();
+            comment.setContent("Romulans everywhere");
+            writer.addDocument(IndexOperation.getCommentDocument(
+                    newEntry("Entry " + i, PUBLISHED), comment));
+        }
+        manager.refreshSearcher();
+
+        SearchOperation search = newSearch(0, 10, null);
+        search.setTerm("romulans");
+        search.doRun();
+        try {
+            assertNull(search.getParseError());
+            assertEquals(SearchOperation.MAX_MATCHING_COMMENTS, search.getMatchingComments().size());
+        } finally {
+            search.release();
+        }
+    }
+
+    @Test
+    public void testGivenUpBeforeStart() throws Exception {
+        LuceneIndexManager mgr = mock(LuceneIndexManager.class);
+
+        SearchOperation search = new SearchOperation(mgr);
+        search.setTerm("enterprise");
+        search.release();
+        search.doRun();
+        assertEquals(-1, search.getResultsCount());
+
+        // or when its thread was interrupted by a caller who gave up
+        search = new SearchOperation(mgr);
+        search.setTerm("enterprise");
+        Thread.currentThread().interrupt();
+        try {
+            search.doRun();
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(-1, search.getResultsCount());
+        search.release();
+
+        verify(mgr, never()).acquireSearcher();
+    }
+
+    @Test
+    public void testGivenUpWhileRunning() throws Exception {
+        IndexSearcher searcher = manager.acquireSearcher();
+        try {
+            LuceneIndexManager mgr = mock(LuceneIndexManager.class);
+            when(mgr.acquireSearcher()).thenReturn(searcher);
+
+            SearchOperation search = new SearchOperation(mgr);
+            search.setTerm("enterprise");
+            when(mgr.parseQuery("enterprise")).thenAnswer(invocation -> {
+                // the caller gives up while the search is running, and the
+                // searcher stays with the search
+                search.release();
+                verify(mgr, never()).releaseSearcher(any());
+                return manager.parseQuery("enterprise");
+            });
+
+            search.doRun();
+            verify(mgr, times(1)).releaseSearcher(searcher);
+            assertNull(search.getSearcher());
+        } finally {
+            manager.releaseSearcher(searcher);
+        }
+    }
+
+    private SearchOperation search(int offset, int count, String cursor) {
+        SearchOperation search = newSearch(offset, count, cursor);
+        search.doRun();
+        return search;
+    }
+
+    private SearchOperation newSearch(int offset, int count, String cursor) {
+        SearchOperation search = new SearchOperation(manager);
+        search.setTerm("enterprise");
+        search.setWeblogHandle(HANDLE);
+        search.setPage(offset, count);
+        search.setAfter(cursor);
+        return search;
+    }
+
+    private WeblogEntry newEntry(String title, long published) {
+        WeblogEntry entry = new WeblogEntry();
+        entry.setWebsite(weblog);
+        entry.setTitle(title);
+        entry.setText("The Enterprise goes where no one has gone before");
+        entry.setLocale("en_US");
+        entry.setPubTime(new Timestamp(published));
+        entry.setUpdateTime(entry.getPubTime());
+        return entry;
+    }
+
+    private static WeblogEntryTag tag(String name) {
+        WeblogEntryTag tag = new WeblogEntryTag();
+        tag.setName(name);
+        return tag;
+    }
+
+    private static List<String> idsOf(SearchOperation search, int start) throws Exception {
+        List<String> found = new ArrayList<>();
+        ScoreDoc[] hits = search.getResults().scoreDocs;
+        for (int i = start; i < hits.length; i++) {
+            found.add(search.getSearcher().storedFields().document(hits[i].doc)
+                    .get(FieldConstants.ID));
+        }
+        return found;
+    }
+
+}
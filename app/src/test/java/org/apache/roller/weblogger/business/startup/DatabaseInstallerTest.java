@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.startup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.business.DatabaseProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test creating and upgrading the database, in an in-memory database of
+ * its own.
+ */
+public class DatabaseInstallerTest {
+
+    private static final String URL = "jdbc:derby:memory:databaseinstallertest";
+
+    private DatabaseInstaller installer;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        // the database engine is started as for other tests, so that it
+        // keeps its files in the same place
+        TestUtils.setupWeblogger();
+
+        DriverManager.getConnection(URL + ";create=true").close();
+        DatabaseProvider db = mock(DatabaseProvider.class);
+        when(db.getConnection()).thenAnswer(invocation -> DriverManager.getConnection(URL));
+
+        installer = new DatabaseInstaller(db, new ClasspathDatabaseScriptProvider());
+        installer.createDatabase();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        try {
+            DriverManager.getConnection(URL + ";drop=true");
+        } catch (SQLException expected) {
+            // dropping a database is always reported as an error
+        }
+    }
+
+    @Test
+    public void testNewDatabaseIsCurrent() throws Exception {
+        assertFalse(installer.isCreationRequired());
+        assertFalse(installer.isUpgradeRequired());
+        assertEquals(Map.of("weblogs", 0L, "users", 0L), counters());
+    }
+
+    @Test
+    public void testUpgradeFrom615WithoutCounts() throws Exception {
+        // as made by 6.1.5 before it kept running counts, with two users of
+        // which one is enabled
+        execute("drop table roller_counter");
+        addUser("enabled", 1);
+        addUser("disabled", 0);
+        String version = databaseVersion();
+
+        assertTrue(installer.isUpgradeRequired());
+        installer.upgradeDatabase(true);
+
+        assertFalse(installer.isUpgradeRequired());
+        assertEquals(version, databaseVersion());
+        assertEquals(Map.of("weblogs", 0L, "users", 1L), counters());
+    }
+
+    @Test
+    public void testManualUpgradeFrom615WithoutCounts() throws Exception {
+        execute("drop table roller_counter");
+
+        // the scripts are left to the administrator, who is told to run them
+        installer.upgradeDatabase(false);
+
+        assertTrue(installer.isUpgradeRequired());
+        assertTrue(installer.getMessages().stream().anyMatch(m -> m.contains("roller_counter")));
+    }
+
+    private void addUser(String userName, int enabled) throws SQLException {
+        execute("insert into roller_user (id, username, passphrase, screenname, fullname,"
+                + " emailaddress, datecreated, isenabled) values ('" + userName + "', '"
+                + userName + "', 'secret', 'User', 'User', 'user@dev.null', current_timestamp, "
+                + enabled + ")");
+    }
+
+    private String databaseVersion() throws SQLException {
+        try (Connection con = DriverManager.getConnection(URL);
+             Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "select value from roller_properties where name = 'roller.database.version'")) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private Map<String, Long> counters() throws SQLException {
+        Map<String, Long> counters = new HashMap<>();
+        try (Connection con = DriverManager.getConnection(URL);
+             Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("select name, total from roller_counter")) {
+            while (rs.next()) {
+                counters.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return counters;
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection con = DriverManager.getConnection(URL);
+             Statement stmt = con.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+}
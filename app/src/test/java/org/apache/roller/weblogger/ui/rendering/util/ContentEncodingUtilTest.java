@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test ContentEncodingUtil along with compressed and hashed CachedContent.
+ */
+public class ContentEncodingUtilTest {
+
+    @Test
+    public void testAcceptsGzip() {
+        assertTrue(ContentEncodingUtil.acceptsGzip(withAcceptEncoding("gzip, deflate, br")));
+        assertTrue(ContentEncodingUtil.acceptsGzip(withAcceptEncoding("deflate;q=1.0, *;q=0.5")));
+        assertFalse(ContentEncodingUtil.acceptsGzip(withAcceptEncoding("gzip;q=0, *")));
+        assertFalse(ContentEncodingUtil.acceptsGzip(withAcceptEncoding("identity")));
+        assertFalse(ContentEncodingUtil.acceptsGzip(withAcceptEncoding(null)));
+    }
+
+    @Test
+    public void testCompress() throws Exception {
+        CachedContent content = new CachedContent(4096);
+        for (int i = 0; i < 200; i++) {
+            content.getCachedWriter().write("<p>Hello Roller</p>\n");
+        }
+        content.close();
+        content.compress();
+
+        byte[] gzipped = content.getGzippedContent();
+        assertNotNull(gzipped);
+        assertTrue(gzipped.length < content.getContent().length);
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertArrayEquals(content.getContent(), in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testMatchesETag() {
+        assertTrue(ContentEncodingUtil.matchesETag("\"abc\"", "\"abc\""));
+        assertTrue(ContentEncodingUtil.matchesETag("\"xyz\", W/\"abc\"", "\"abc\""));
+        assertTrue(ContentEncodingUtil.matchesETag("*", "\"abc\""));
+        assertFalse(ContentEncodingUtil.matchesETag("\"abc-gzip\"", "\"abc\""));
+        assertFalse(ContentEncodingUtil.matchesETag(null, "\"abc\""));
+    }
+
+    @Test
+    public void testNotModified() throws Exception {
+        CachedContent content = new CachedContent(0);
+        content.getCachedWriter().write("<p>Hello Roller</p>");
+        content.close();
+        assertNotNull(content.getContentHash());
+
+        HttpServletRequest request = withAcceptEncoding(null);
+        when(request.getHeader("If-None-Match")).thenReturn("\"" + content.getContentHash() + "\"");
+        HttpServletResponse response = mock(HttpServletResponse.class);
+
+        ContentEncodingUtil.sendContent(request, response, content);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(response, never()).getOutputStream();
+    }
+
+    private static HttpServletRequest withAcceptEncoding(String header) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("Accept-Encoding")).thenReturn(header);
+        return request;
+    }
+
+}
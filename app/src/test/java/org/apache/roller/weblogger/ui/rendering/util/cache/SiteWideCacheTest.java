@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.util.List;
+import java.util.Set;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogEntryTag;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test that site-wide content is served until one of the CacheDependencies
+ * it was rendered from is invalidated.
+ */
+public class SiteWideCacheTest {
+
+    private final SiteWideCache cache = SiteWideCache.getInstance();
+
+    @BeforeEach
+    public void setUp() {
+        cache.clear();
+    }
+
+    @Test
+    public void testExpiredByEntry() throws Exception {
+        CacheDependencies dependencies = new CacheDependencies();
+        dependencies.addWeblog("a");
+        dependencies.addEntries(List.of("java"));
+        put("page", dependencies);
+
+        // nothing this page was rendered from
+        cache.invalidate(comment("b"));
+        cache.invalidate(entry("b", "roller"));
+        assertEquals("page", cache.get("page"));
+
+        // a change to an entry with one of its tags
+        cache.invalidate(entry("b", "java"));
+        assertNull(cache.get("page"));
+    }
+
+    @Test
+    public void testTagsExpiredByWeblogAndCategory() throws Exception {
+        CacheDependencies dependencies = new CacheDependencies();
+        dependencies.addEntries(List.of("java"));
+        put("page", dependencies);
+
+        // a hidden weblog takes its tagged entries with it
+        cache.invalidate(weblog("b"));
+        assertNull(cache.get("page"));
+
+        dependencies = new CacheDependencies();
+        dependencies.addEntries(List.of("java"));
+        put("page", dependencies);
+
+        Weblog weblog = weblog("b");
+        WeblogCategory category = mock(WeblogCategory.class);
+        when(category.getWeblog()).thenReturn(weblog);
+        cache.invalidate(category);
+        assertNull(cache.get("page"));
+    }
+
+    @Test
+    public void testExpiredByWeblog() throws Exception {
+        CacheDependencies dependencies = new CacheDependencies();
+        dependencies.addCategory("a", "News");
+        put("page", dependencies);
+
+        cache.invalidate(weblog("b"));
+        assertEquals("page", cache.get("page"));
+
+        // a category expires along with its weblog
+        cache.invalidate(weblog("a"));
+        assertNull(cache.get("page"));
+    }
+
+    @Test
+    public void testWeblogChangeKeepsSiteWideLists() throws Exception {
+        CacheDependencies dependencies = new CacheDependencies();
+        dependencies.addEntries(null);
+        dependencies.addComments();
+        put("page", dependencies);
+
+        cache.invalidate(weblog("a"));
+        assertEquals("page", cache.get("page"));
+
+        cache.invalidate(comment("a"));
+        assertNull(cache.get("page"));
+    }
+
+    @Test
+    public void testWeblogChangeExpiresDirectories() throws Exception {
+        CacheDependencies dependencies = new CacheDependencies();
+        dependencies.addWeblogs();
+        put("page", dependencies);
+
+        cache.invalidate(comment("a"));
+        assertEquals("page", cache.get("page"));
+
+        cache.invalidate(weblog("a"));
+        assertNull(cache.get("page"));
+    }
+
+    @Test
+    public void testContentWithoutDependencies() throws Exception {
+        cache.put("page", "page");
+        Thread.sleep(5);
+
+        // content stored without dependencies expires on any change
+        cache.invalidate(comment("a"));
+        assertNull(cache.get("page"));
+    }
+
+    @Test
+    public void testRenderedAfterInvalidation() throws Exception {
+        cache.invalidate(weblog("a"));
+        Thread.sleep(5);
+
+        CacheDependencies dependencies = new CacheDependencies();
+        dependencies.addWeblog("a");
+        cache.put("page", "page", dependencies);
+        assertEquals("page", cache.get("page"));
+    }
+
+    private void put(String key, CacheDependencies dependencies) throws InterruptedException {
+        cache.put(key, key, dependencies);
+        assertEquals(key, cache.get(key));
+
+        // make sure invalidations are later than the content
+        Thread.sleep(5);
+    }
+
+    private static Weblog weblog(String handle) {
+        Weblog weblog = mock(Weblog.class);
+        when(weblog.getHandle()).thenReturn(handle);
+        return weblog;
+    }
+
+    private static WeblogEntry entry(String handle, String tag) {
+        WeblogEntryTag entryTag = new WeblogEntryTag();
+        entryTag.setName(tag);
+        Weblog weblog = weblog(handle);
+        WeblogEntry entry = mock(WeblogEntry.class);
+        when(entry.getWebsite()).thenReturn(weblog);
+        when(entry.getTags()).thenReturn(Set.of(entryTag));
+        when(entry.getRemovedTags()).thenReturn(Set.of());
+        return entry;
+    }
+
+    private static WeblogEntryComment comment(String handle) {
+        WeblogEntry entry = entry(handle, "roller");
+        WeblogEntryComment comment = mock(WeblogEntryComment.class);
+        when(comment.getWeblogEntry()).thenReturn(entry);
+        return comment;
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import javax.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test which requests are taken for cache warmups and not counted as hits.
+ */
+public class WeblogCacheWarmupJobTest {
+
+    @Test
+    public void testWithoutSecret() {
+        // the header alone isn't enough, even from this host
+        assertFalse(WeblogCacheWarmupJob.isWarmupRequest(request("127.0.0.1", null), null));
+        assertFalse(WeblogCacheWarmupJob.isWarmupRequest(request("127.0.0.1", "true"), null));
+        assertFalse(WeblogCacheWarmupJob.isWarmupRequest(request("0:0:0:0:0:0:0:1", ""), ""));
+
+        // without a configured secret warmups carry this JVM's token
+        String token = WeblogCacheWarmupJob.getSecret();
+        assertTrue(token.length() >= 32);
+        assertTrue(WeblogCacheWarmupJob.isWarmupRequest(request("127.0.0.1", token)));
+        assertFalse(WeblogCacheWarmupJob.isWarmupRequest(request("127.0.0.1", "true")));
+    }
+
+    @Test
+    public void testWithSecret() {
+        assertTrue(WeblogCacheWarmupJob.isWarmupRequest(request("192.0.2.10", "s3cret"), "s3cret"));
+        assertFalse(WeblogCacheWarmupJob.isWarmupRequest(request("192.0.2.10", "true"), "s3cret"));
+        assertFalse(WeblogCacheWarmupJob.isWarmupRequest(request("127.0.0.1", "true"), "s3cret"));
+    }
+
+    private static HttpServletRequest request(String remoteAddr, String header) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getRemoteAddr()).thenReturn(remoteAddr);
+        when(request.getHeader(WeblogCacheWarmupJob.WARMUP_HEADER)).thenReturn(header);
+        return request;
+    }
+
+}
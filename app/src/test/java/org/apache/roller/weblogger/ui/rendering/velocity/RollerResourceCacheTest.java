@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.velocity;
+
+import org.apache.roller.weblogger.pojos.Theme;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.velocity.Template;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.resource.Resource;
+import org.apache.velocity.runtime.resource.ResourceManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test that compiled templates are served from the RollerResourceCache until
+ * their weblog template or theme is invalidated.
+ */
+public class RollerResourceCacheTest {
+
+    private RollerResourceCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new RollerResourceCache();
+        cache.initialize(new RuntimeInstance());
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        Resource page = put("abc123|standard");
+
+        assertSame(page, cache.get(key("abc123|standard")));
+        assertNull(cache.get(key("abc123|mobile")));
+        assertNull(cache.get(key("xyz789|standard")));
+    }
+
+    @Test
+    public void testInvalidateWeblogTemplate() {
+        put("abc123|standard");
+        put("abc123|mobile");
+        Resource other = put("abc1234|standard");
+
+        WeblogTemplate template = new WeblogTemplate();
+        template.setId("abc123");
+        cache.invalidate(template);
+
+        assertNull(cache.get(key("abc123|standard")));
+        assertNull(cache.get(key("abc123|mobile")));
+        assertSame(other, cache.get(key("abc1234|standard")));
+    }
+
+    @Test
+    public void testInvalidateTheme() {
+        put("basic:Weblog|standard");
+        put("basic:_day|standard");
+        Resource other = put("basicmobile:Weblog|standard");
+        Resource custom = put("basic|standard");
+
+        Theme theme = mock(Theme.class);
+        when(theme.getId()).thenReturn("basic");
+        CacheManager.invalidate(theme);
+
+        assertNull(cache.get(key("basic:Weblog|standard")));
+        assertNull(cache.get(key("basic:_day|standard")));
+        assertSame(other, cache.get(key("basicmobile:Weblog|standard")));
+        assertSame(custom, cache.get(key("basic|standard")));
+    }
+
+    private Resource put(String name) {
+        Resource resource = new Template();
+        resource.setName(name);
+        cache.put(key(name), resource);
+        return resource;
+    }
+
+    private static String key(String name) {
+        return ResourceManager.RESOURCE_TEMPLATE + name;
+    }
+
+}
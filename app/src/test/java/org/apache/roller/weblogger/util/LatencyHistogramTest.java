@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(0.99));
+
+        // 98 fast operations and 2 slow ones
+        for (int i = 0; i < 98; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(500));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(600));
+
+        assertEquals(100, histogram.getCount());
+
+        // percentiles are within a factor of two of the real time
+        long p50 = histogram.getPercentile(0.50);
+        assertTrue(p50 >= 1000 && p50 <= 2000, "p50 was " + p50);
+        long p99 = histogram.getPercentile(0.99);
+        assertTrue(p99 >= 500000 && p99 <= 600000, "p99 was " + p99);
+        assertEquals(600000, histogram.getPercentile(1.0));
+
+        Map<String, Object> stats = histogram.getStats();
+        assertEquals(100L, stats.get("count"));
+        assertEquals(600.0, stats.get("max"));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0.5));
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test ConcurrentLRUCacheImpl.
+ */
+public class ConcurrentLRUCacheTest {
+
+    @Test
+    public void testPutGetRemove() {
+        Cache cache = new ConcurrentLRUCacheImpl("test", 100, 0, 60);
+
+        cache.put("key1", "string1");
+        cache.put("key2", "string2");
+        assertEquals("string1", cache.get("key1"));
+        assertEquals("string2", cache.get("key2"));
+        assertNull(cache.get("key3"));
+
+        cache.remove("key1");
+        assertNull(cache.get("key1"));
+
+        cache.clear();
+        assertNull(cache.get("key2"));
+    }
+
+    @Test
+    public void testEntryLimit() {
+        // Create cache with 3 item limit
+        Cache cache = new ConcurrentLRUCacheImpl("test", 3, 0, 60);
+
+        cache.put("key1", "string1");
+        cache.put("key2", "string2");
+        cache.put("key3", "string3");
+        cache.put("key4", "string4");
+
+        assertEquals(3, cache.getStats().get("size"));
+        assertEquals(1L, cache.getStats().get("evictions"));
+    }
+
+    @Test
+    public void testByteLimit() throws Exception {
+        // Create cache with room for two 1K entries
+        Cache cache = new ConcurrentLRUCacheImpl("test", 100, 2048, 60);
+
+        CachedContent page = new CachedContent(1024);
+        page.getCachedWriter().write("x".repeat(1024));
+        page.close();
+
+        cache.put("key1", new LazyExpiringCacheEntry(page));
+        cache.put("key2", new LazyExpiringCacheEntry(page));
+        assertEquals(2048L, cache.getStats().get("bytes"));
+
+        cache.put("key3", new LazyExpiringCacheEntry(page));
+        assertEquals(2, cache.getStats().get("size"));
+        assertEquals(2048L, cache.getStats().get("bytes"));
+
+        cache.remove("key3");
+        cache.clear();
+        assertEquals(0L, cache.getStats().get("bytes"));
+    }
+
+    @Test
+    public void testStaleAfterTimeout() throws Exception {
+        // Create cache with a 1 second timeout
+        Cache cache = new ConcurrentLRUCacheImpl("test", 100, 0, 1);
+
+        cache.put("key1", "string1");
+        Thread.sleep(1100);
+
+        // timed out, but kept to serve while a fresh copy is made
+        assertNull(cache.get("key1"));
+        assertEquals("string1", cache.getStale("key1"));
+        assertEquals(1, cache.getStats().get("size"));
+
+        cache.put("key1", "string2");
+        assertEquals("string2", cache.get("key1"));
+        assertNull(cache.getStale("key2"));
+    }
+
+    @Test
+    public void testStats() {
+        Cache cache = new ConcurrentLRUCacheImpl("test", 100, 0, 60);
+
+        cache.put("key1", "string1");
+        cache.get("key1");
+        cache.get("key1");
+        cache.get("key2");
+
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(2L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(1L, stats.get("puts"));
+        assertNotNull(stats.get("efficiency"));
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.roller.util.RollerConstants;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogPageCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test ContentSnapshot along with finding the hottest cache entries and
+ * restoring them.
+ */
+public class ContentSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testWriteRead() throws Exception {
+        CachedContent page = new CachedContent(0, "text/html");
+        page.getCachedWriter().write("<p>Hello Roller</p>");
+        page.close();
+        page.compress();
+
+        CachedContent feed = new CachedContent(0);
+        feed.getCachedWriter().write("<feed/>");
+        feed.close();
+
+        Map<String, LazyExpiringCacheEntry> entries = new LinkedHashMap<>();
+        entries.put("page", new LazyExpiringCacheEntry(page, 1234));
+        entries.put("feed", new LazyExpiringCacheEntry(feed, 5678));
+        entries.put("other", new LazyExpiringCacheEntry("not content"));
+
+        Path file = tempDir.resolve("test.snapshot");
+        assertEquals(2, ContentSnapshot.write(file, entries));
+
+        Map<String, LazyExpiringCacheEntry> restored = ContentSnapshot.read(file);
+        assertEquals(List.of("page", "feed"), new ArrayList<>(restored.keySet()));
+        assertEquals(1234, restored.get("page").getTimeCached());
+
+        CachedContent copy = (CachedContent) restored.get("page").getValue(0);
+        assertArrayEquals(page.getContent(), copy.getContent());
+        assertArrayEquals(page.getGzippedContent(), copy.getGzippedContent());
+        assertEquals(page.getContentHash(), copy.getContentHash());
+        assertEquals("text/html", copy.getContentType());
+
+        copy = (CachedContent) restored.get("feed").getValue(0);
+        assertNull(copy.getGzippedContent());
+        assertNull(copy.getContentType());
+
+        assertTrue(ContentSnapshot.read(tempDir.resolve("missing.snapshot")).isEmpty());
+    }
+
+    @Test
+    public void testRestoreKeepsTimeCached() throws Exception {
+        WeblogPageCache cache = WeblogPageCache.getInstance();
+        cache.clear();
+
+        CachedContent page = new CachedContent(0, "text/html");
+        page.getCachedWriter().write("<p>Hello Roller</p>");
+        page.close();
+
+        // one page just short of timing out, one already timed out
+        long timeout = WebloggerConfig.getIntProperty(WeblogPageCache.CACHE_ID + ".timeout")
+                * RollerConstants.SEC_IN_MS;
+        long now = System.currentTimeMillis();
+        Map<String, LazyExpiringCacheEntry> entries = new LinkedHashMap<>();
+        entries.put("fresh", new LazyExpiringCacheEntry(page, now - timeout + 1000));
+        entries.put("old", new LazyExpiringCacheEntry(page, now - timeout - 1000));
+        ContentSnapshot.write(tempDir.resolve(WeblogPageCache.CACHE_ID + ".snapshot"), entries);
+
+        try {
+            assertEquals(1, cache.restoreSnapshot(tempDir));
+            assertNotNull(cache.get("fresh", 0));
+            assertNull(cache.get("old", 0));
+
+            // times out when it would have without the restart
+            Thread.sleep(1100);
+            assertNull(cache.get("fresh", 0));
+        } finally {
+            cache.clear();
+        }
+    }
+
+    @Test
+    public void testHottest() {
+        Cache cache = new LRUCacheImpl("test", 10);
+        cache.put("key1", "a");
+        cache.put("key2", "b");
+        cache.put("key3", "c");
+        cache.get("key1");
+
+        assertEquals(List.of("key1", "key3"), new ArrayList<>(cache.getHottest(2).keySet()));
+
+        cache = new ConcurrentLRUCacheImpl("test", 10, 0, 0);
+        cache.put("key1", "a");
+        cache.put("key2", "b");
+        cache.get("key2");
+
+        assertEquals(List.of("key2", "key1"), new ArrayList<>(cache.getHottest(5).keySet()));
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test ExpiringLRUCacheImpl byte budget and timeout.
+ */
+public class LRUCacheTest {
+
+    @Test
+    public void testByteLimit() throws Exception {
+        // Create cache with room for two 1K pages
+        Cache cache = new ExpiringLRUCacheImpl("test", 100, 2048, 60);
+
+        CachedContent page = new CachedContent(1024);
+        page.getCachedWriter().write("x".repeat(1024));
+        page.close();
+
+        cache.put("key1", new LazyExpiringCacheEntry(page));
+        cache.put("key2", new LazyExpiringCacheEntry(page));
+        assertEquals(2048L, cache.getStats().get("bytes"));
+
+        // accessing key1 will make key2 LRU
+        assertNotNull(cache.get("key1"));
+
+        cache.put("key3", new LazyExpiringCacheEntry(page));
+        assertNull(cache.get("key2"));
+        assertNotNull(cache.get("key1"));
+        assertNotNull(cache.get("key3"));
+        assertEquals(2048L, cache.getStats().get("bytes"));
+
+        cache.remove("key1");
+        assertEquals(1024L, cache.getStats().get("bytes"));
+
+        cache.clear();
+        assertEquals(0L, cache.getStats().get("bytes"));
+    }
+
+    @Test
+    public void testEntryLimitKeepsByteCount() throws Exception {
+        // Create cache with 2 item limit and no byte limit
+        Cache cache = new ExpiringLRUCacheImpl("test", 2, 0, 60);
+
+        CachedContent page = new CachedContent(100);
+        page.getCachedWriter().write("x".repeat(100));
+        page.close();
+
+        cache.put("key1", new LazyExpiringCacheEntry(page));
+        cache.put("key2", new LazyExpiringCacheEntry(page));
+        cache.put("key3", new LazyExpiringCacheEntry(page));
+        assertEquals(200L, cache.getStats().get("bytes"));
+        assertNull(cache.getStats().get("maxBytes"));
+    }
+
+    @Test
+    public void testStaleAfterTimeout() throws Exception {
+        // Create cache with a 1 second timeout
+        Cache cache = new ExpiringLRUCacheImpl("test", 100, 0, 1);
+
+        LazyExpiringCacheEntry entry = new LazyExpiringCacheEntry("page");
+        cache.put("key1", entry);
+        Thread.sleep(1100);
+
+        // timed out, but kept to serve while a fresh copy is made
+        assertNull(cache.get("key1"));
+        assertSame(entry, cache.getStale("key1"));
+
+        cache.put("key1", new LazyExpiringCacheEntry("fresh page"));
+        assertNotNull(cache.get("key1"));
+        assertNull(cache.getStale("key2"));
+    }
+
+}
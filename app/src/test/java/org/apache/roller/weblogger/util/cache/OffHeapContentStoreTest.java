@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test OffHeapContentStore and demotion from an LRU cache.
+ */
+public class OffHeapContentStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testPutTake() throws Exception {
+        OffHeapContentStore store = new OffHeapContentStore("test", 4096, null);
+
+        CachedContent content = new CachedContent(1000);
+        content.getCachedWriter().write("a".repeat(1000));
+        content.close();
+        content.compress();
+        store.put("key1", content, 1234, 0);
+
+        LazyExpiringCacheEntry entry = store.take("key1");
+        assertNotNull(entry);
+        assertEquals(1234, entry.getTimeCached());
+
+        CachedContent copy = (CachedContent) entry.getValue(0);
+        assertArrayEquals(content.getContent(), copy.getContent());
+        assertArrayEquals(content.getGzippedContent(), copy.getGzippedContent());
+        assertEquals(content.getContentHash(), copy.getContentHash());
+
+        // taking content removes it
+        assertNull(store.take("key1"));
+    }
+
+    @Test
+    public void testOverwrite() throws Exception {
+        // a mapped region with room for three 1K pages
+        OffHeapContentStore store = new OffHeapContentStore("test", 3072, tempDir.toString());
+
+        for (char c = 'a'; c <= 'd'; c++) {
+            CachedContent content = new CachedContent(1024);
+            content.getCachedWriter().write(String.valueOf(c).repeat(1024));
+            content.close();
+            store.put("key" + (c - 'a' + 1), content, 0, 0);
+        }
+
+        // oldest content got overwritten
+        assertNull(store.take("key1"));
+        CachedContent copy = (CachedContent) store.take("key4").getValue(0);
+        assertEquals('d', copy.getContent()[0]);
+        assertNotNull(store.take("key2"));
+    }
+
+    @Test
+    public void testExpired() throws Exception {
+        OffHeapContentStore store = new OffHeapContentStore("test", 4096, null);
+
+        CachedContent content = new CachedContent(100);
+        content.getCachedWriter().write("a".repeat(100));
+        content.close();
+
+        store.put("key1", content, 0, System.currentTimeMillis() - 1);
+        assertNull(store.take("key1"));
+    }
+
+    @Test
+    public void testDemotion() throws Exception {
+        OffHeapContentStore store = new OffHeapContentStore("test", 4096, null);
+        Cache cache = new LRUCacheImpl("test", 1);
+        cache.setEvictionListener((key, value) ->
+                store.put(key, (CachedContent) ((LazyExpiringCacheEntry) value).getValue(0), 0, 0));
+
+        CachedContent content = new CachedContent(100);
+        content.getCachedWriter().write("a".repeat(100));
+        content.close();
+
+        cache.put("key1", new LazyExpiringCacheEntry(content));
+        cache.put("key2", new LazyExpiringCacheEntry(content));
+
+        assertNull(cache.get("key1"));
+        assertNotNull(store.take("key1"));
+    }
+
+}
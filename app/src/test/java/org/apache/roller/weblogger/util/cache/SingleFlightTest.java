@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test SingleFlight.
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void testFollowerGetsLeaderValue() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+
+        SingleFlight.Flight<String> leader = singleFlight.join("key");
+        assertTrue(leader.isLeader());
+
+        SingleFlight.Flight<String> follower = singleFlight.join("key");
+        assertFalse(follower.isLeader());
+
+        CompletableFuture<String> waiting = CompletableFuture.supplyAsync(
+                () -> follower.await(10, TimeUnit.SECONDS));
+
+        leader.complete("rendered");
+        assertEquals("rendered", waiting.get(10, TimeUnit.SECONDS));
+        assertEquals(0, singleFlight.size());
+
+        // a new flight starts once the last one is done
+        assertTrue(singleFlight.join("key").isLeader());
+    }
+
+    @Test
+    public void testFollowerTimesOut() {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+
+        SingleFlight.Flight<String> leader = singleFlight.join("key");
+        SingleFlight.Flight<String> follower = singleFlight.join("key");
+
+        assertNull(follower.await(10, TimeUnit.MILLISECONDS));
+
+        // followers can't complete a flight
+        follower.complete("ignored");
+        assertEquals(1, singleFlight.size());
+
+        leader.complete(null);
+        assertEquals(0, singleFlight.size());
+    }
+
+}